@@ -0,0 +1,129 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.changes.UserChangeLog;
+import com.example.rest_api.config.UserLoggingConfig;
+import com.example.rest_api.config.UserQueryConfig;
+import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.config.UserStatsConfig;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.handler.AppExceptionHandler;
+import com.example.rest_api.handler.ClientErrorLog;
+import com.example.rest_api.mapper.UserMapperImpl;
+import com.example.rest_api.monitoring.UserMetrics;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.service.UserQueryPlanner;
+import com.example.rest_api.service.UserService;
+import com.example.rest_api.service.UserStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the client-error paths, from the exception thrown in {@link UserService} to the
+ * response built by {@link AppExceptionHandler}. {@code missingUserWithStackTrace} is the baseline:
+ * the same 404, but with a stack-capturing {@link ResponseStatusException} as thrown before the
+ * stackless exceptions. Real request threads are far deeper than a JMH thread, so the gap in
+ * production is larger than shown here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+    private static final long MISSING_ID = 42L;
+
+    private UserService userService;
+    private UserService stackTraceUserService;
+    private AppExceptionHandler exceptionHandler;
+    private WebRequest request;
+    private UserDto minor;
+
+    @Setup
+    public void setUp() throws IOException {
+        UserRegistrationConfig userRegistrationConfig = new UserRegistrationConfig();
+        ReflectionTestUtils.setField(userRegistrationConfig, "minAge", 18);
+        UserLoggingConfig userLoggingConfig = new UserLoggingConfig();
+        ReflectionTestUtils.setField(userLoggingConfig, "clientErrorsPerSecond", 10);
+        UserMetrics userMetrics = new UserMetrics(new SimpleMeterRegistry());
+
+        userService = new UserService(repository(false), new UserMapperImpl(), userRegistrationConfig, userMetrics,
+                UserSearchBenchmark.inMemoryIndex(repository(false), Duration.ofSeconds(1)),
+                new UserQueryPlanner(repository(false), new UserQueryConfig()),
+                new UserStatsService(repository(false), new UserStatsConfig(), userRegistrationConfig, null,
+                        Optional.empty()),
+                new UserChangeLog(null), Optional.empty());
+        stackTraceUserService = new UserService(repository(true), new UserMapperImpl(), userRegistrationConfig,
+                userMetrics, UserSearchBenchmark.inMemoryIndex(repository(true), Duration.ofSeconds(1)),
+                new UserQueryPlanner(repository(true), new UserQueryConfig()),
+                new UserStatsService(repository(true), new UserStatsConfig(), userRegistrationConfig, null,
+                        Optional.empty()),
+                new UserChangeLog(null), Optional.empty());
+        exceptionHandler = new AppExceptionHandler(userMetrics, new ClientErrorLog(userLoggingConfig));
+        request = new ServletWebRequest(new MockHttpServletRequest("GET", "/users/" + MISSING_ID));
+        minor = new UserDto(null, "minor@example.com", "First", "Last",
+                LocalDate.now().minusYears(10), "Street", "+15550001", null);
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> missingUser() {
+        try {
+            userService.getUser(MISSING_ID);
+            throw new IllegalStateException("User " + MISSING_ID + " should be missing");
+        } catch (ResponseStatusException exception) {
+            return exceptionHandler.handleResponseStatusException(exception, request);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> missingUserWithStackTrace() {
+        try {
+            stackTraceUserService.getUser(MISSING_ID);
+            throw new IllegalStateException("User " + MISSING_ID + " should be missing");
+        } catch (ResponseStatusException exception) {
+            return exceptionHandler.handleResponseStatusException(exception, request);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<Object> underAgeUser() {
+        try {
+            userService.createUser(minor);
+            throw new IllegalStateException("User should be under age");
+        } catch (IllegalArgumentException exception) {
+            return exceptionHandler.handleInvalidAge(exception, request);
+        }
+    }
+
+    /**
+     * A repository that finds no user. With {@code stackTrace}, {@code findById} throws the
+     * stack-capturing 404 itself instead.
+     */
+    private static UserRepository repository(boolean stackTrace) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("findById")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (stackTrace) {
+                        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + args[0]);
+                    }
+                    return Optional.empty();
+                });
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.RestApiApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request with the persistent profile: from starting the application on an existing
+ * database file until {@code GET /users/1} has been answered. Each fork measures a single, cold start.
+ * <p>
+ * The database files are seeded once per row count under {@code target/startup-db-<rows>} and reused
+ * by later forks and runs; delete them to re-seed. Seeding 10M rows takes several minutes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 5, jvmArgsAppend = "-Xmx2g")
+public class StartupBenchmark {
+
+    private static final int SEED_CHUNK = 1_000_000;
+
+    @Param({"0", "10000000"})
+    private int rows;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        directory = Path.of("target", "startup-db-" + rows).toAbsolutePath();
+        if (Files.exists(directory.resolve("users-db.mv.db"))) {
+            return;
+        }
+        try (ConfigurableApplicationContext seeding = startApplication(WebApplicationType.NONE)) {
+            JdbcTemplate jdbcTemplate = seeding.getBean(JdbcTemplate.class);
+            for (long firstId = 1; firstId <= rows; firstId += SEED_CHUNK) {
+                UserRepositoryBenchmark.seedUsers(jdbcTemplate, firstId, Math.min(rows, firstId + SEED_CHUNK - 1));
+            }
+            jdbcTemplate.execute("ALTER SEQUENCE users_seq RESTART WITH " + (rows + 1));
+            jdbcTemplate.execute("ANALYZE");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws IOException, InterruptedException {
+        context = startApplication(WebApplicationType.SERVLET);
+        String port = context.getEnvironment().getProperty("local.server.port");
+        HttpResponse<Void> response = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users/1")).build(),
+                HttpResponse.BodyHandlers.discarding());
+        int expected = rows == 0 ? 404 : 200;
+        if (response.statusCode() != expected) {
+            throw new IllegalStateException("GET /users/1 returned " + response.statusCode() + ", expected " + expected);
+        }
+        return response.statusCode();
+    }
+
+    /**
+     * Settings are passed as command line arguments so that they win over the test
+     * application.properties, which shadows the main one on the benchmark classpath.
+     */
+    private ConfigurableApplicationContext startApplication(WebApplicationType webApplicationType) {
+        return new SpringApplicationBuilder(RestApiApplication.class)
+                .web(webApplicationType)
+                .profiles("persistent")
+                .run("--user.persistence.directory=" + directory,
+                        "--server.port=0",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.rest_api.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.rest_api.benchmark.UserRepositoryBenchmark.BIRTH_DATE_SPREAD_DAYS;
+import static com.example.rest_api.benchmark.UserRepositoryBenchmark.FIRST_BIRTH_DATE;
+
+/**
+ * Closed-loop HTTP load test comparing the request execution models side by side: the default
+ * platform-thread Tomcat pool, the {@code virtual-threads} profile and the WebFlux/R2DBC
+ * {@code reactive} profile. Each mode gets its own application on a random port and a seeded
+ * database; {@code concurrency} requests for a keyset page of a random birth-date week are kept
+ * in flight, and throughput and latency percentiles are printed per mode. The
+ * {@code admission-control} mode runs the default one with the adaptive concurrency limit on, which
+ * the others leave off: its errors are the requests it shed, and its percentiles show what that
+ * buys the rest.
+ * <p>
+ * Usage: {@code ThreadingLoadTest [concurrency=1000] [requests=50000] [rows=100000]}. This is not a
+ * JMH benchmark because the interesting numbers are server-side saturation under many concurrent
+ * clients rather than the cost of one call. Virtual threads need Java 21; on older runtimes that
+ * mode uses platform threads. An in-memory H2 has no network round trips, so the gap is smaller
+ * than against a remote database, where requests spend most of their time waiting.
+ */
+public class ThreadingLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+
+        StringBuilder report = new StringBuilder(String.format("%-17s %12s %10s %10s %10s %10s %8s%n",
+                "Mode", "Requests/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "Errors"));
+        for (String mode : List.of("default", "admission-control", "virtual-threads", "reactive")) {
+            String databaseName = "users-load-" + mode;
+            boolean reactive = mode.equals("reactive");
+            boolean admissionControl = mode.equals("admission-control");
+            ConfigurableApplicationContext context = UserRepositoryBenchmark.startApplication(
+                    reactive ? WebApplicationType.REACTIVE : WebApplicationType.SERVLET, databaseName,
+                    "--spring.profiles.active=" + (admissionControl ? "default" : mode), "--server.port=0",
+                    "--spring.r2dbc.url=r2dbc:h2:mem:///" + databaseName + ";DB_CLOSE_DELAY=-1",
+                    // All requests come from one client, so only the concurrency limit applies
+                    "--user.admission.enabled=" + admissionControl,
+                    "--user.admission.requests-per-second=1000000", "--user.admission.burst=1000000");
+            try {
+                // Seeded over a separate JDBC connection, as the reactive mode has no DataSource
+                UserRepositoryBenchmark.seedUsers(new JdbcTemplate(new DriverManagerDataSource(
+                        "jdbc:h2:mem:" + databaseName, "username", "password")), rows);
+                String baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                run(baseUri, concurrency, Math.max(1, requests / 10));
+                Result result = run(baseUri, concurrency, requests);
+                report.append(String.format("%-17s %12.0f %10.1f %10.1f %10.1f %10.1f %8d%n", mode, result.throughput(),
+                        result.percentile(50), result.percentile(99), result.percentile(99.9),
+                        result.percentile(100), result.errors()));
+            } finally {
+                context.close();
+            }
+        }
+        System.out.print(report);
+    }
+
+    private static Result run(String baseUri, int concurrency, int requests) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[requests];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            LocalDate from = FIRST_BIRTH_DATE.plusDays(ThreadLocalRandom.current().nextInt(BIRTH_DATE_SPREAD_DAYS));
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create(baseUri + "/users?from=" + from + "&to=" + from.plusDays(7) + "&limit=50")).build();
+            int index = i;
+            long sent = System.nanoTime();
+            calls[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (failure != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        CompletableFuture.allOf(calls).exceptionally(failure -> null).join();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new Result(latencies, requests / (elapsed / 1e9), errors.get());
+    }
+
+    private record Result(long[] sortedLatencies, double throughput, int errors) {
+
+        double percentile(double percentile) {
+            int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.dto.UserDto;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode cost of a {@code List<UserDto>} response per negotiated format and content encoding.
+ * The encoded payload size of each combination is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserFormatBenchmark {
+
+    @Param({"json", "json-blackbird", "smile", "cbor"})
+    private String format;
+
+    @Param({"identity", "gzip", "zstd"})
+    private String encoding;
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<UserDto> users;
+
+    @Setup
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        switch (format) {
+            case "json" -> {
+            }
+            case "json-blackbird" -> builder.modulesToInstall(new BlackbirdModule());
+            case "smile" -> builder.factory(new SmileFactory()).modulesToInstall(new BlackbirdModule());
+            case "cbor" -> builder.factory(new CBORFactory()).modulesToInstall(new BlackbirdModule());
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        }
+        objectMapper = builder.build();
+        users = UserJsonBenchmark.createUsers(size);
+        System.out.printf("%n%s/%s/%d: %d bytes%n", format, encoding, size, encode().length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = switch (encoding) {
+            case "gzip" -> new GZIPOutputStream(bytes);
+            case "zstd" -> new ZstdOutputStream(bytes);
+            default -> bytes;
+        }) {
+            objectMapper.writeValue(out, users);
+        }
+        return bytes.toByteArray();
+    }
+}
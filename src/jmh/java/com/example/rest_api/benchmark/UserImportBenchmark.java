@@ -0,0 +1,74 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.service.UserImportService;
+import com.example.rest_api.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of {@link UserService#createUser} called once per user, as
+ * {@code POST /users} does, against {@link UserImportService} importing the same number of
+ * users from one NDJSON body. Scores are users per second. Both keep speeding up for several
+ * iterations while the JIT compiles them, hence the long warmup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserImportBenchmark {
+
+    private static final int USERS_PER_INVOCATION = 1000;
+    private static final int BATCH_SIZE = 500;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserImportService userImportService;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = UserRepositoryBenchmark.startApplication("users-import-bench",
+                "--user.import.batch-size=" + BATCH_SIZE,
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + BATCH_SIZE,
+                "--spring.jpa.properties.hibernate.order_inserts=true");
+        userService = context.getBean(UserService.class);
+        userImportService = context.getBean(UserImportService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USERS_PER_INVOCATION)
+    public void createUserOneByOne() {
+        for (int i = 0; i < USERS_PER_INVOCATION; i++) {
+            long id = ++sequence;
+            userService.createUser(new UserDto(null, "user" + id + "@example.com", "First", "Last",
+                    LocalDate.of(1980, 1, 1), "Street " + id, "+1555" + id, null));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USERS_PER_INVOCATION)
+    public Object importUsers() throws IOException {
+        StringBuilder body = new StringBuilder(USERS_PER_INVOCATION * 160);
+        for (int i = 0; i < USERS_PER_INVOCATION; i++) {
+            long id = ++sequence;
+            body.append("{\"email\":\"user").append(id).append("@example.com\",\"firstName\":\"First\",")
+                    .append("\"lastName\":\"Last\",\"birthDate\":\"1980-01-01\",\"address\":\"Street ").append(id)
+                    .append("\",\"phoneNumber\":\"+1555").append(id).append("\"}\n");
+        }
+        return userImportService.importUsers(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
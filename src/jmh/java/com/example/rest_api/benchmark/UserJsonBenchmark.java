@@ -0,0 +1,51 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.dto.UserDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost of {@code List<UserDto>} responses with the same Jackson defaults
+ * Spring Boot applies to the application's {@link ObjectMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserJsonBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<UserDto> users;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        users = createUsers(size);
+    }
+
+    @Benchmark
+    public byte[] serializeUserList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    static List<UserDto> createUsers(int size) {
+        List<UserDto> users = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            users.add(new UserDto(id, "user" + id + "@example.com", "First" + id, "Last" + id,
+                    LocalDate.of(1950, 1, 1).plusDays(id % 20000), "Street " + id, "+1555" + id, null));
+        }
+        return users;
+    }
+}
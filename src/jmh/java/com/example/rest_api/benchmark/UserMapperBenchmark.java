@@ -0,0 +1,72 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.config.MapperConfig;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserUpdateDto;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.mapper.UserMapper;
+import com.example.rest_api.mapper.UserMapperImpl;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-object conversion cost of the generated {@link UserMapper} against the reflective
+ * {@link ModelMapper} bean from {@link MapperConfig}. Run with {@code -prof gc} to compare
+ * allocation per operation as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMapperBenchmark {
+
+    private ModelMapper modelMapper;
+    private UserMapper userMapper;
+    private UserEntity userEntity;
+    private UserDto userDto;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new MapperConfig().modelMapper();
+        userMapper = new UserMapperImpl();
+        userEntity = new UserEntity(1L, "email@gmail.com", "firstName", "lastName",
+                LocalDate.of(2000, 1, 1), "address", "phoneNumber", 0L, null, null, null);
+        userDto = new UserDto(1L, "email@gmail.com", "firstName", "lastName",
+                LocalDate.of(2000, 1, 1), "address", "phoneNumber", 0L);
+    }
+
+    @Benchmark
+    public UserDto modelMapperToDto() {
+        return modelMapper.map(userEntity, UserDto.class);
+    }
+
+    @Benchmark
+    public UserDto userMapperToDto() {
+        return userMapper.toDto(userEntity);
+    }
+
+    @Benchmark
+    public UserUpdateDto modelMapperToUpdateDto() {
+        return modelMapper.map(userEntity, UserUpdateDto.class);
+    }
+
+    @Benchmark
+    public UserUpdateDto userMapperToUpdateDto() {
+        return userMapper.toUpdateDto(userEntity);
+    }
+
+    @Benchmark
+    public UserEntity modelMapperToEntity() {
+        return modelMapper.map(userDto, UserEntity.class);
+    }
+
+    @Benchmark
+    public UserEntity userMapperToEntity() {
+        return userMapper.toEntity(userDto);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.RestApiApplication;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Birth-date range query latency against a seeded in-memory H2 database.
+ * <p>
+ * {@code indexed=false} drops {@code idx_users_birth_date_id} after seeding to reproduce the
+ * schema before the index was declared; {@code findByBirthDateBetween} is the managed-entity
+ * query the search endpoint used before it switched to {@code findDtoByBirthDateBetween}.
+ * The 10M row case needs roughly 6 GB of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class UserRepositoryBenchmark {
+
+    static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1925, 1, 1);
+    static final int BIRTH_DATE_SPREAD_DAYS = 36500;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int rows;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    @Param({"30"})
+    private int rangeDays;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+    private TransactionTemplate readOnlyTransaction;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = startApplication("users-bench-" + rows + "-" + indexed);
+        seedUsers(context.getBean(JdbcTemplate.class), rows);
+        if (!indexed) {
+            context.getBean(JdbcTemplate.class).execute("DROP INDEX idx_users_birth_date_id");
+        }
+        userRepository = context.getBean(UserRepository.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+        fromDate = FIRST_BIRTH_DATE.plusDays(BIRTH_DATE_SPREAD_DAYS / 2);
+        toDate = fromDate.plusDays(rangeDays);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<UserEntity> findByBirthDateBetween() {
+        return readOnlyTransaction.execute(status -> userRepository.findByBirthDateBetween(fromDate, toDate));
+    }
+
+    @Benchmark
+    public List<UserDto> findDtoByBirthDateBetween() {
+        return readOnlyTransaction.execute(status -> userRepository.findDtoByBirthDateBetween(fromDate, toDate));
+    }
+
+    /**
+     * Settings are passed as command line arguments so that they win over the test
+     * application.properties, which shadows the main one on the benchmark classpath.
+     * H2 result reuse is switched off, otherwise repeated identical queries are served from
+     * the last result set and never touch the table or the index.
+     */
+    static ConfigurableApplicationContext startApplication(String databaseName, String... arguments) {
+        return startApplication(WebApplicationType.NONE, databaseName, arguments);
+    }
+
+    static ConfigurableApplicationContext startApplication(WebApplicationType webApplicationType,
+                                                           String databaseName, String... arguments) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";OPTIMIZE_REUSE_RESULTS=FALSE",
+                "--spring.jpa.hibernate.naming.physical-strategy=" +
+                        "org.hibernate.boot.model.naming.PhysicalNamingStrategyStandardImpl",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(arguments));
+        return new SpringApplicationBuilder(RestApiApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Bulk-loads {@code rows} users with birth dates spread evenly over a century, using a
+     * single set-based INSERT so that seeding 10M rows stays in the order of a minute.
+     */
+    static void seedUsers(JdbcTemplate jdbcTemplate, int rows) {
+        seedUsers(jdbcTemplate, 1, rows);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    /**
+     * Inserts the users with ids {@code firstId} to {@code lastId}, as {@link #seedUsers(JdbcTemplate, int)}
+     * would, so that large seeds can be split into several transactions.
+     */
+    static void seedUsers(JdbcTemplate jdbcTemplate, long firstId, long lastId) {
+        jdbcTemplate.update("INSERT INTO users (id, email, firstName, lastName, birthDate, address, phoneNumber, version) " +
+                        "SELECT X, 'user' || X || '@example.com', 'First' || X, 'Last' || X, " +
+                        "DATEADD(DAY, MOD(X * 7919, CAST(? AS INT)), CAST(? AS DATE)), 'Street ' || X, '+1555' || X, 0 " +
+                        "FROM SYSTEM_RANGE(CAST(? AS BIGINT), CAST(? AS BIGINT))",
+                BIRTH_DATE_SPREAD_DAYS, FIRST_BIRTH_DATE, firstId, lastId);
+    }
+}
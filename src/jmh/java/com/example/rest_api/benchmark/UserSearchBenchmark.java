@@ -0,0 +1,127 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.config.UserSearchConfig;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.search.UserSearchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of {@link UserSearchIndex#search} over synthetic users, for the p99 of
+ * {@code GET /users/search} without the final lookup of the matched ids. First names, a tenth of
+ * the last names and streets come from small pools, so that every query matches many users and
+ * ranking does real work. The 10M user case needs roughly 4 GB of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserSearchBenchmark {
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson"};
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ro", "sa", "ti", "vu", "ber", "dan",
+            "fel", "gor", "hal", "jen", "kur", "lin", "mar", "nor", "per", "ston"};
+    private static final String[] STREETS = {"Elm Street", "Oak Avenue", "Maple Road", "Cedar Lane", "Pine Court",
+            "Birch Way", "Walnut Drive", "Chestnut Boulevard"};
+
+    @Param({"1000000", "10000000"})
+    private int users;
+
+    @Param({"smi", "johnsen", "mary smith", "maple road", "marston"})
+    private String query;
+
+    private UserSearchIndex userSearchIndex;
+
+    /**
+     * Builds the index on disk once per size through the startup rebuild, closing it so that all
+     * merges are done before measuring, and then reopens it the way a restart would.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String directory = "target/search-bench-" + users;
+        try (UserSearchIndex builder = searchIndex(syntheticRepository(users), directory, Duration.ZERO)) {
+            builder.rebuildIfStale();
+        }
+        userSearchIndex = searchIndex(syntheticRepository(users), directory, Duration.ZERO);
+        userSearchIndex.rebuildIfStale();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        userSearchIndex.close();
+    }
+
+    @Benchmark
+    public UserSearchIndex.Hits search() {
+        return userSearchIndex.search(query, 0, 20);
+    }
+
+    /**
+     * One of 8000 made-up last names, so that the vocabulary is closer to real data than the pools alone.
+     */
+    private static String lastName(Random random) {
+        String name = SYLLABLES[random.nextInt(SYLLABLES.length)] + SYLLABLES[random.nextInt(SYLLABLES.length)]
+                + SYLLABLES[random.nextInt(SYLLABLES.length)];
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * An index kept in memory, as in the default profile, without the startup rebuild.
+     */
+    static UserSearchIndex inMemoryIndex(UserRepository userRepository, Duration maxStaleness) throws IOException {
+        return searchIndex(userRepository, "", maxStaleness);
+    }
+
+    private static UserSearchIndex searchIndex(UserRepository userRepository, String directory,
+                                               Duration maxStaleness) throws IOException {
+        UserSearchConfig userSearchConfig = new UserSearchConfig();
+        ReflectionTestUtils.setField(userSearchConfig, "directory", directory);
+        ReflectionTestUtils.setField(userSearchConfig, "maxStaleness", maxStaleness);
+        ReflectionTestUtils.setField(userSearchConfig, "maxResults", 1000);
+        return new UserSearchIndex(userSearchConfig, userRepository, Optional.empty());
+    }
+
+    /**
+     * A repository of {@code users} made-up users with ids from 1, as read by the startup rebuild.
+     */
+    private static UserRepository syntheticRepository(int users) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "count" -> (long) users;
+                    case "findDtoPageAfterId" -> {
+                        long afterId = Math.max((long) args[0], 0);
+                        long lastId = Math.min(afterId + ((Pageable) args[1]).getPageSize(), users);
+                        List<UserDto> page = new ArrayList<>();
+                        for (long id = afterId + 1; id <= lastId; id++) {
+                            page.add(user(id));
+                        }
+                        yield page;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static UserDto user(long id) {
+        Random random = new Random(id);
+        return new UserDto(id, null,
+                FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                random.nextInt(10) == 0 ? LAST_NAMES[random.nextInt(LAST_NAMES.length)] : lastName(random),
+                null, (1 + random.nextInt(999)) + " " + STREETS[random.nextInt(STREETS.length)], null, 0L);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.changes.UserChangeLog;
+import com.example.rest_api.config.UserQueryConfig;
+import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.config.UserStatsConfig;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.mapper.UserMapperImpl;
+import com.example.rest_api.monitoring.UserMetrics;
+import com.example.rest_api.repository.UserChangeRepository;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.service.UserQueryPlanner;
+import com.example.rest_api.service.UserService;
+import com.example.rest_api.service.UserStatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UserService#createUser} in isolation: the minimum age check, mapping in both
+ * directions, the search index update and the calls into the repositories, which are stubbed so
+ * that database time does not drown out the service's own cost ({@link UserRepositoryBenchmark}
+ * covers that).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private UserService userService;
+    private UserDto adult;
+    private UserDto minor;
+
+    @Setup
+    public void setUp() throws IOException {
+        UserRegistrationConfig userRegistrationConfig = new UserRegistrationConfig();
+        ReflectionTestUtils.setField(userRegistrationConfig, "minAge", 18);
+        UserRepository userRepository = savingRepository();
+        userService = new UserService(userRepository, new UserMapperImpl(), userRegistrationConfig,
+                new UserMetrics(new SimpleMeterRegistry()), UserSearchBenchmark.inMemoryIndex(userRepository, Duration.ofSeconds(1)),
+                new UserQueryPlanner(userRepository, new UserQueryConfig()),
+                new UserStatsService(userRepository, new UserStatsConfig(), userRegistrationConfig, null, Optional.empty()),
+                new UserChangeLog(savingChangeRepository()), Optional.empty());
+        adult = new UserDto(null, "adult@example.com", "First", "Last",
+                LocalDate.of(1980, 1, 1), "Street", "+15550000", null);
+        minor = new UserDto(null, "minor@example.com", "First", "Last",
+                LocalDate.now().minusYears(10), "Street", "+15550001", null);
+    }
+
+    @Benchmark
+    public UserDto createUser() {
+        return userService.createUser(adult);
+    }
+
+    @Benchmark
+    public Object createUnderAgeUser() {
+        try {
+            return userService.createUser(minor);
+        } catch (IllegalArgumentException exception) {
+            return exception;
+        }
+    }
+
+    /**
+     * A repository whose {@code save} assigns an id and returns the entity, as a fresh insert would.
+     */
+    private static UserRepository savingRepository() {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("save")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    UserEntity userEntity = (UserEntity) args[0];
+                    userEntity.setId(1L);
+                    return userEntity;
+                });
+    }
+
+    /**
+     * An outbox repository whose {@code save} returns the change unchanged.
+     */
+    private static UserChangeRepository savingChangeRepository() {
+        return (UserChangeRepository) Proxy.newProxyInstance(UserChangeRepository.class.getClassLoader(),
+                new Class<?>[]{UserChangeRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("save")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return args[0];
+                });
+    }
+}
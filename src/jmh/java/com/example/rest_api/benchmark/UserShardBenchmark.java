@@ -0,0 +1,119 @@
+package com.example.rest_api.benchmark;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.service.UserCursor;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.example.rest_api.benchmark.UserRepositoryBenchmark.BIRTH_DATE_SPREAD_DAYS;
+import static com.example.rest_api.benchmark.UserRepositoryBenchmark.FIRST_BIRTH_DATE;
+
+/**
+ * {@link ShardedUserRepository} by shard count, each shard a separate in-memory H2 database holding
+ * an equal part of {@code rows} users. Four threads call each operation concurrently, so throughput
+ * is four divided by the average time. Lookups by id touch one shard; range searches query every
+ * shard in parallel and merge, so they only gain from more shards while there are idle cores.
+ * <p>
+ * Users are seeded by id, as {@code UserRepositoryBenchmark} does, rather than by email hash, and
+ * without email claims, since none of the operations looks a user up by email.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserShardBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int shards;
+
+    @Param({"1000000"})
+    private int rows;
+
+    @Param({"30"})
+    private int rangeDays;
+
+    @Param({"100"})
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private ShardedUserRepository repository;
+    private int rowsPerShard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> urls = IntStream.rangeClosed(1, shards)
+                .mapToObj(shard -> "jdbc:h2:mem:users-shard-bench-" + shards + "-" + shard
+                        + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE")
+                .toList();
+        context = UserRepositoryBenchmark.startApplication("users-shard-bench-" + shards,
+                "--user.shards.enabled=true",
+                "--user.shards.urls=" + String.join(",", urls),
+                "--user.shards.pool-size=8");
+        repository = context.getBean(ShardedUserRepository.class);
+
+        rowsPerShard = rows / shards;
+        for (int shard = 0; shard < shards; shard++) {
+            seedShard(new JdbcTemplate(new DriverManagerDataSource(urls.get(shard), "username", "password")), shard);
+        }
+    }
+
+    /**
+     * Ids {@code x * shards + shard} for x from 1 to {@code rowsPerShard}, with the birth dates and other
+     * values {@code UserRepositoryBenchmark} gives the same id, and the shard's sequence moved past them.
+     */
+    private void seedShard(JdbcTemplate jdbcTemplate, int shard) {
+        jdbcTemplate.update("INSERT INTO users (id, email, firstName, lastName, birthDate, address, phoneNumber, version) " +
+                        "SELECT ID, 'user' || ID || '@example.com', 'First' || ID, 'Last' || ID, " +
+                        "DATEADD(DAY, MOD(ID * 7919, CAST(? AS INT)), CAST(? AS DATE)), 'Street ' || ID, '+1555' || ID, 0 " +
+                        "FROM (SELECT X * CAST(? AS BIGINT) + CAST(? AS BIGINT) AS ID FROM SYSTEM_RANGE(1, CAST(? AS BIGINT)))",
+                BIRTH_DATE_SPREAD_DAYS, FIRST_BIRTH_DATE, shards, shard, rowsPerShard);
+        jdbcTemplate.execute("ALTER SEQUENCE users_seq RESTART WITH " + (rowsPerShard + 1));
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private long randomId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return (random.nextLong(rowsPerShard) + 1) * shards + random.nextInt(shards);
+    }
+
+    private LocalDate randomFromDate() {
+        return FIRST_BIRTH_DATE.plusDays(ThreadLocalRandom.current().nextInt(BIRTH_DATE_SPREAD_DAYS - rangeDays));
+    }
+
+    @Benchmark
+    public Optional<UserDto> findById() {
+        return repository.findById(randomId());
+    }
+
+    @Benchmark
+    public List<UserDto> findPageByBirthDateAfter() {
+        UserCursor cursor = UserCursor.start(randomFromDate());
+        return repository.findPageByBirthDateAfter(cursor.birthDate(), cursor.id(),
+                cursor.birthDate().plusDays(rangeDays), pageSize);
+    }
+
+    @Benchmark
+    public void streamByBirthDateBetween(Blackhole blackhole) {
+        LocalDate fromDate = randomFromDate();
+        repository.streamByBirthDateBetween(fromDate, fromDate.plusDays(rangeDays), blackhole::consume);
+    }
+}
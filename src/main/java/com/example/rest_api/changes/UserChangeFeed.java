@@ -0,0 +1,337 @@
+package com.example.rest_api.changes;
+
+import com.example.rest_api.config.UserChangeConfig;
+import com.example.rest_api.datasource.ReplicaRoutingDataSource;
+import com.example.rest_api.dto.UserChangeDto;
+import com.example.rest_api.repository.UserChangeRepository;
+import com.example.rest_api.service.StacklessResponseStatusException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tails the {@code user_changes} outbox and fans every change out to the subscribers of
+ * {@code /users/changes}. A single reader thread polls the outbox and offers each change to every
+ * subscriber's bounded buffer without waiting: a subscriber whose buffer is full is dropped, so a slow
+ * consumer holds back neither the other subscribers nor the writers. A pool of sender threads drains the
+ * buffers. A subscriber resuming from an offset first reads the changes it missed from the outbox itself.
+ * <p>
+ * Outbox ids are assigned at insert but become visible at commit, so a higher id can be read before a lower
+ * one. The reader therefore numbers the committed changes it has not seen yet with consecutive feed
+ * positions, which are published as the changes' ids. A change committed late by a long transaction simply
+ * takes a later position, so none is skipped and a position once published never gains a predecessor.
+ */
+@Component
+@Profile("!reactive")
+@Slf4j
+public class UserChangeFeed implements Closeable {
+
+    private static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+    /**
+     * Sent through a subscriber's buffer in place of a change, when the feed has been idle.
+     */
+    private static final UserChangeDto HEARTBEAT = new UserChangeDto();
+
+    /**
+     * Where a subscriber's changes are written, by one sender thread at a time.
+     */
+    public interface Sink {
+
+        void send(UserChangeDto change) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        /**
+         * Ends the subscription, once it is cancelled, dropped or the feed closes.
+         */
+        void close();
+    }
+
+    public interface Subscription {
+
+        void cancel();
+    }
+
+    private final UserChangeConfig config;
+    private final UserChangeRepository userChangeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ScheduledExecutorService reader;
+    private final ExecutorService senders;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Feed position of the last change published; every change up to it has been offered to the subscribers,
+     * if there were any.
+     */
+    private volatile long position;
+    private volatile long lastPublished = System.nanoTime();
+
+    public UserChangeFeed(UserChangeConfig config, UserChangeRepository userChangeRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.config = config;
+        this.userChangeRepository = userChangeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.reader = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("user-changes-reader-"));
+        this.senders = Executors.newFixedThreadPool(config.getSenderThreads(),
+                new CustomizableThreadFactory("user-changes-sender-"));
+    }
+
+    @PostConstruct
+    public void start() {
+        position = readOutbox(status -> userChangeRepository.findMaxPosition());
+        long pollInterval = config.getPollInterval().toMillis();
+        reader.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+        long heartbeatInterval = config.getHeartbeatInterval().toMillis();
+        reader.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        reader.scheduleWithFixedDelay(this::prune, 0, PRUNE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Sends the changes after {@code afterId} to the sink, or those from now on when it is null.
+     */
+    public Subscription subscribe(Long afterId, Sink sink) {
+        long lastSent = afterId == null ? position : afterId;
+        if (afterId != null) {
+            if (afterId < 0) {
+                throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "After must not be negative");
+            }
+            Long oldest = readOutbox(status -> userChangeRepository.findMinPosition());
+            if (afterId < (oldest == null ? position : oldest - 1)) {
+                throw new StacklessResponseStatusException(HttpStatus.GONE,
+                        "Changes after " + afterId + " are no longer kept; subscribe without an offset and reload the users");
+            }
+        }
+        Subscriber subscriber = new Subscriber(sink, lastSent);
+        senders.execute(subscriber::start);
+        return subscriber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.drop("the feed closed"));
+        senders.shutdown();
+        try {
+            // A poll still running would read the outbox while the data source closes under it.
+            reader.awaitTermination(5, TimeUnit.SECONDS);
+            senders.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        senders.shutdownNow();
+    }
+
+    /**
+     * Reads the outbox on the primary: a lagging replica may not have the positions assigned there yet.
+     */
+    private <T> T readOutbox(TransactionCallback<T> action) {
+        return ReplicaRoutingDataSource.onPrimary(() -> readOnlyTransaction.execute(action));
+    }
+
+    /**
+     * Numbers a batch of new changes, then publishes everything numbered after {@link #position}, which
+     * includes batches another instance numbered, until no new changes are left.
+     */
+    private void poll() {
+        try {
+            int numbered;
+            do {
+                numbered = transactionTemplate.execute(status -> userChangeRepository.assignPositions(config.getBatchSize()));
+                publishNumbered();
+            } while (numbered == config.getBatchSize());
+        } catch (RuntimeException exception) {
+            log.warn("Reading the user change outbox failed", exception);
+        }
+    }
+
+    /**
+     * Publishes the changes numbered after {@link #position}. Without subscribers, the position moves
+     * straight to the last numbered change instead: a subscriber added from then on catches up to it from
+     * the outbox, and one added before is published the skipped changes here.
+     */
+    private void publishNumbered() {
+        long afterPosition = position;
+        long toPosition = Long.MAX_VALUE;
+        if (subscribers.isEmpty()) {
+            toPosition = readOutbox(status -> userChangeRepository.findMaxPosition());
+            position = toPosition;
+            if (subscribers.isEmpty()) {
+                return;
+            }
+        }
+        List<UserChangeDto> changes;
+        do {
+            long fromPosition = afterPosition;
+            long untilPosition = toPosition;
+            changes = readOutbox(status -> userChangeRepository.findDtoPage(
+                    fromPosition, untilPosition, PageRequest.ofSize(config.getBatchSize())));
+            for (UserChangeDto change : changes) {
+                afterPosition = change.getId();
+                position = Math.max(position, afterPosition);
+                lastPublished = System.nanoTime();
+                subscribers.forEach(subscriber -> subscriber.offer(change));
+            }
+        } while (changes.size() == config.getBatchSize());
+    }
+
+    private void heartbeat() {
+        if (System.nanoTime() - lastPublished >= config.getHeartbeatInterval().toNanos()) {
+            subscribers.forEach(subscriber -> subscriber.offer(HEARTBEAT));
+        }
+    }
+
+    private void prune() {
+        try {
+            Instant before = Instant.now().minus(config.getRetention());
+            int pruned = transactionTemplate.execute(status -> userChangeRepository.deleteByChangedAtBefore(before));
+            if (pruned > 0) {
+                log.info("Pruned {} user changes older than {}", pruned, before);
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Pruning the user change outbox failed", exception);
+        }
+    }
+
+    /**
+     * Runs on at most one sender thread at a time, guarded by {@code scheduled}.
+     */
+    private final class Subscriber implements Subscription, Runnable {
+
+        private final Sink sink;
+        private final BlockingQueue<UserChangeDto> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean(true);
+        private final AtomicBoolean dropped = new AtomicBoolean();
+        private long lastSent;
+
+        private Subscriber(Sink sink, long lastSent) {
+            this.sink = sink;
+            this.buffer = new ArrayBlockingQueue<>(config.getBufferSize());
+            this.lastSent = lastSent;
+        }
+
+        /**
+         * Catches up from the outbox before joining the live feed, then once more for the changes
+         * published in between; those also buffered are skipped by id.
+         */
+        private void start() {
+            try {
+                catchUp();
+                subscribers.add(this);
+                catchUp();
+            } catch (IOException | RuntimeException exception) {
+                drop(exception.toString());
+            }
+            run();
+        }
+
+        private void catchUp() throws IOException {
+            List<UserChangeDto> changes;
+            do {
+                long afterPosition = lastSent;
+                long toPosition = position;
+                changes = readOutbox(status -> userChangeRepository.findDtoPage(
+                        afterPosition, toPosition, PageRequest.ofSize(config.getBatchSize())));
+                for (UserChangeDto change : changes) {
+                    sink.send(change);
+                    lastSent = change.getId();
+                }
+            } while (!changes.isEmpty() && !dropped.get());
+        }
+
+        private void offer(UserChangeDto change) {
+            if (buffer.offer(change)) {
+                schedule();
+            } else if (change != HEARTBEAT) {
+                drop("its buffer of " + config.getBufferSize() + " changes is full");
+            }
+        }
+
+        @Override
+        public void cancel() {
+            drop("it was cancelled");
+        }
+
+        /**
+         * Stops buffering changes for the subscriber. Its sink is closed on a sender thread, since the
+         * dropping thread may be the reader, which must not wait for a send in progress.
+         */
+        private void drop(String reason) {
+            if (dropped.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                buffer.clear();
+                log.info("User change subscriber dropped at {} because {}", lastSent, reason);
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                UserChangeDto change;
+                while (!dropped.get() && (change = buffer.poll()) != null) {
+                    if (change == HEARTBEAT) {
+                        sink.heartbeat();
+                    } else if (change.getId() > lastSent) {
+                        sink.send(change);
+                        lastSent = change.getId();
+                    }
+                }
+            } catch (IOException | RuntimeException exception) {
+                drop(exception.toString());
+            }
+            if (dropped.get()) {
+                // Leaves scheduled set, so that nothing runs for this subscriber again
+                try {
+                    sink.close();
+                } catch (RuntimeException exception) {
+                    log.debug("Closing a user change subscriber failed", exception);
+                }
+                return;
+            }
+            scheduled.set(false);
+            if (!buffer.isEmpty() || dropped.get()) {
+                schedule();
+            }
+        }
+    }
+}
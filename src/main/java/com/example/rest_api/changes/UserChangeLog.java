@@ -0,0 +1,41 @@
+package com.example.rest_api.changes;
+
+import com.example.rest_api.dto.UserChangeDto;
+import com.example.rest_api.entity.UserChangeEntity;
+import com.example.rest_api.repository.UserChangeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Appends user writes to the {@code user_changes} outbox in the writer's transaction, so that
+ * {@link UserChangeFeed} publishes a change if and only if its write commits.
+ */
+@Component
+@Profile("!reactive")
+@RequiredArgsConstructor
+public class UserChangeLog {
+
+    private final UserChangeRepository userChangeRepository;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(UserChangeDto.Type type, Long userId, Long version) {
+        userChangeRepository.save(new UserChangeEntity(null, userId, type, version, Instant.now(), null));
+    }
+
+    /**
+     * Records a change for each of the users that exists, with its current version: call it after
+     * creating or updating them, and before deleting them.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(UserChangeDto.Type type, Collection<Long> userIds) {
+        if (!userIds.isEmpty()) {
+            userChangeRepository.appendForUsers(userIds, type.name());
+        }
+    }
+}
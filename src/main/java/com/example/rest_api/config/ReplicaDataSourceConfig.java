@@ -0,0 +1,80 @@
+package com.example.rest_api.config;
+
+import com.example.rest_api.datasource.ReadYourWrites;
+import com.example.rest_api.datasource.ReplicaRoutingDataSource;
+import com.example.rest_api.datasource.ReplicaSet;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single {@code spring.datasource} pool when {@code user.replicas.enabled} is set.
+ * Read-write transactions use the primary; read-only ones are routed by
+ * {@link ReplicaRoutingDataSource}. The {@link LazyConnectionDataSourceProxy} defers taking a
+ * connection until the first statement, by which time the transaction has been marked read-only.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "user.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaSet replicaSet(HikariDataSource primaryDataSource, DataSourceProperties properties,
+                                 UserReplicaConfig config) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : config.getUrls()) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setMaximumPoolSize(config.getPoolSize());
+            replica.setReadOnly(true);
+            // A replica that is down must neither fail startup nor hold reads up for long
+            replica.setInitializationFailTimeout(-1);
+            replica.setConnectionTimeout(config.getConnectionTimeout().toMillis());
+            replicas.add(replica);
+        }
+        // Started as a lifecycle bean once the context is refreshed
+        return new ReplicaSet(primaryDataSource, replicas, config.getMaxLag(),
+                config.getCheckInterval(), System::nanoTime);
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(UserReplicaConfig config) {
+        // A replica serving reads holds every change the primary had max-lag plus two check intervals ago
+        return new ReadYourWrites(config.getClientHeader(),
+                config.getMaxLag().plus(config.getCheckInterval().multipliedBy(2)));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaSet replicaSet,
+                                 ReadYourWrites readYourWrites) {
+        LazyConnectionDataSourceProxy dataSource =
+                new LazyConnectionDataSourceProxy(readYourWrites.trackingWrites(primaryDataSource));
+        dataSource.setReadOnlyDataSource(new ReplicaRoutingDataSource(primaryDataSource, replicaSet, readYourWrites));
+        return dataSource;
+    }
+}
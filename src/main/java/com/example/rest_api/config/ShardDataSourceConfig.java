@@ -0,0 +1,46 @@
+package com.example.rest_api.config;
+
+import com.example.rest_api.sharding.ShardedUserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opens a pool per {@code user.shards.urls} database when {@code user.shards.enabled} is set, and
+ * creates the users table on each shard that does not have it yet.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "user.shards.enabled", havingValue = "true")
+public class ShardDataSourceConfig {
+
+    static final String SHARD_SCHEMA = "db/shard/users.sql";
+
+    @Bean
+    public ShardedUserRepository shardedUserRepository(UserShardConfig config, DataSourceProperties properties) {
+        List<DataSource> shards = new ArrayList<>();
+        for (String url : config.getUrls()) {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            shard.setPoolName("shard-" + (shards.size() + 1));
+            shard.setMaximumPoolSize(config.getPoolSize());
+            new ResourceDatabasePopulator(new ClassPathResource(SHARD_SCHEMA)).execute(shard);
+            shards.add(shard);
+        }
+        return new ShardedUserRepository(shards);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+public class UserAdmissionConfig {
+
+    @Value("${user.admission.enabled}")
+    private boolean enabled;
+
+    @Value("${user.admission.client-header}")
+    private String clientHeader;
+
+    @Value("${user.admission.trusted-proxies}")
+    private List<String> trustedProxies;
+
+    @Value("${user.admission.requests-per-second}")
+    private double requestsPerSecond;
+
+    @Value("${user.admission.burst}")
+    private int burst;
+
+    @Value("${user.admission.search-days-per-token}")
+    private int searchDaysPerToken;
+
+    @Value("${user.admission.bulk-cost}")
+    private int bulkCost;
+
+    @Value("${user.admission.import-bytes-per-token}")
+    private long importBytesPerToken;
+
+    @Value("${user.admission.max-clients}")
+    private long maxClients;
+
+    @Value("${user.admission.initial-concurrency}")
+    private int initialConcurrency;
+
+    @Value("${user.admission.min-concurrency}")
+    private int minConcurrency;
+
+    @Value("${user.admission.max-concurrency}")
+    private int maxConcurrency;
+
+    @Value("${user.admission.sample-window}")
+    private Duration sampleWindow;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Request header identifying the client behind one of the trusted proxies. Any other request is
+     * keyed by remote address, since a client could otherwise send a new value for a full bucket.
+     */
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    /**
+     * Remote addresses whose client header is trusted.
+     */
+    public List<String> getTrustedProxies() {
+        return trustedProxies;
+    }
+
+    /**
+     * Sustained rate of tokens refilled per client. Most requests cost one token.
+     */
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    /**
+     * Tokens a client's bucket holds, and so the most a single request can cost.
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Birth date span that an unpaged range search is charged one extra token for.
+     */
+    public int getSearchDaysPerToken() {
+        return searchDaysPerToken;
+    }
+
+    /**
+     * Tokens a bulk delete or patch, an import or an export costs.
+     */
+    public int getBulkCost() {
+        return bulkCost;
+    }
+
+    /**
+     * Import body size that is charged one token on top of the bulk cost.
+     */
+    public long getImportBytesPerToken() {
+        return importBytesPerToken;
+    }
+
+    /**
+     * Client buckets kept at most; the least recently used are dropped first.
+     */
+    public long getMaxClients() {
+        return maxClients;
+    }
+
+    /**
+     * Concurrent requests admitted before the first latency samples adjust the limit.
+     */
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * How often the concurrency limit is recomputed from the latencies observed since.
+     */
+    public Duration getSampleWindow() {
+        return sampleWindow;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserBulkConfig {
+
+    @Value("${user.bulk.chunk-size}")
+    private int chunkSize;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+public class UserChangeConfig {
+
+    @Value("${user.changes.poll-interval}")
+    private Duration pollInterval;
+
+    @Value("${user.changes.batch-size}")
+    private int batchSize;
+
+    @Value("${user.changes.buffer-size}")
+    private int bufferSize;
+
+    @Value("${user.changes.heartbeat-interval}")
+    private Duration heartbeatInterval;
+
+    @Value("${user.changes.retention}")
+    private Duration retention;
+
+    @Value("${user.changes.sender-threads}")
+    private int senderThreads;
+
+    /**
+     * How often the feed reads the outbox for committed changes.
+     */
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * Changes read from the outbox per query.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Changes buffered per subscriber; a subscriber that falls further behind is disconnected.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Idle time after which subscribers are sent a keep-alive, which also detects those that left.
+     */
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    /**
+     * How long changes are kept in the outbox, and so how far back subscribers can resume.
+     */
+    public Duration getRetention() {
+        return retention;
+    }
+
+    /**
+     * Threads writing changes to subscribers, shared by all of them.
+     */
+    public int getSenderThreads() {
+        return senderThreads;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserExportConfig {
+
+    @Value("${user.export.directory}")
+    private String directory;
+
+    @Value("${user.export.chunk-size}")
+    private int chunkSize;
+
+    @Value("${user.export.max-rows-per-second}")
+    private int maxRowsPerSecond;
+
+    @Value("${user.export.threads:0}")
+    private int threads;
+
+    /**
+     * Where each export keeps its files and progress, in a directory named after its id.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Users read per query, and written per checkpoint that an interrupted export resumes from.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Most users an export reads per second, across its partitions; 0 does not throttle.
+     */
+    public int getMaxRowsPerSecond() {
+        return maxRowsPerSecond;
+    }
+
+    /**
+     * Partitions exported at the same time across all exports; 0 uses one per core.
+     */
+    public int getThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserImportConfig {
+
+    @Value("${user.import.batch-size}")
+    private int batchSize;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+public class UserLoggingConfig {
+
+    @Value("${user.logging.access-sample-rate}")
+    private double accessSampleRate;
+
+    @Value("${user.logging.slow-request-threshold}")
+    private Duration slowRequestThreshold;
+
+    @Value("${user.logging.client-errors-per-second}")
+    private int clientErrorsPerSecond;
+
+    public double getAccessSampleRate() {
+        return accessSampleRate;
+    }
+
+    public Duration getSlowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    public int getClientErrorsPerSecond() {
+        return clientErrorsPerSecond;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserQueryConfig {
+
+    @Value("${user.query.max-scan-rows}")
+    private int maxScanRows;
+
+    /**
+     * Most rows a filtered page may read beyond the page itself; filters that cannot be answered within
+     * it from an index are rejected.
+     */
+    public int getMaxScanRows() {
+        return maxScanRows;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+public class UserReplicaConfig {
+
+    @Value("${user.replicas.enabled}")
+    private boolean enabled;
+
+    @Value("${user.replicas.urls}")
+    private List<String> urls;
+
+    @Value("${user.replicas.pool-size}")
+    private int poolSize;
+
+    @Value("${user.replicas.connection-timeout}")
+    private Duration connectionTimeout;
+
+    @Value("${user.replicas.max-lag}")
+    private Duration maxLag;
+
+    @Value("${user.replicas.check-interval}")
+    private Duration checkInterval;
+
+    @Value("${user.replicas.client-header}")
+    private String clientHeader;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * JDBC URLs of the read replicas, which use the primary's credentials.
+     */
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    /**
+     * Connections per replica.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Longest a read waits for a replica connection before it goes to the primary instead.
+     */
+    public Duration getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    /**
+     * How far a replica may trail the primary and still serve reads.
+     */
+    public Duration getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * How often the replicas' positions are compared with the primary's.
+     */
+    public Duration getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Request header identifying the client whose own writes it must read back; requests without it
+     * are keyed by remote address.
+     */
+    public String getClientHeader() {
+        return clientHeader;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+public class UserSearchConfig {
+
+    @Value("${user.search.directory:}")
+    private String directory;
+
+    @Value("${user.search.max-staleness}")
+    private Duration maxStaleness;
+
+    @Value("${user.search.max-results}")
+    private int maxResults;
+
+    /**
+     * Where the index is kept on disk; blank keeps it in memory and rebuilds it at every startup.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    public Duration getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+}
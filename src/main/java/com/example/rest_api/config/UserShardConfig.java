@@ -0,0 +1,38 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class UserShardConfig {
+
+    @Value("${user.shards.enabled}")
+    private boolean enabled;
+
+    @Value("${user.shards.urls}")
+    private List<String> urls;
+
+    @Value("${user.shards.pool-size}")
+    private int poolSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * JDBC URLs of the shard databases, which use the primary's credentials. Their order places the
+     * users, so it must not change once users are stored.
+     */
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    /**
+     * Connections per shard.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.rest_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserStatsConfig {
+
+    @Value("${user.stats.summary-enabled}")
+    private boolean summaryEnabled;
+
+    /**
+     * Whether user writes maintain the summary counts that statistics are read from. Without it, every
+     * statistics request groups the whole users table.
+     */
+    public boolean isSummaryEnabled() {
+        return summaryEnabled;
+    }
+}
@@ -1,8 +1,29 @@
 package com.example.rest_api.controller;
 
+import com.example.rest_api.changes.UserChangeFeed;
+import com.example.rest_api.dto.UserBulkReportDto;
+import com.example.rest_api.dto.UserBulkRequestDto;
+import com.example.rest_api.dto.UserChangeDto;
 import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserExportDto;
+import com.example.rest_api.dto.UserExportRequestDto;
+import com.example.rest_api.dto.UserFilterPageDto;
+import com.example.rest_api.dto.UserImportReportDto;
+import com.example.rest_api.dto.UserPageDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserSearchPageDto;
+import com.example.rest_api.dto.UserStatsDto;
 import com.example.rest_api.dto.UserUpdateDto;
+import com.example.rest_api.export.UserExportService;
+import com.example.rest_api.service.UserBulkService;
+import com.example.rest_api.service.UserFilter;
+import com.example.rest_api.service.UserImportService;
 import com.example.rest_api.service.UserService;
+import com.example.rest_api.service.UserStatsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,21 +31,44 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/users")
 @Tag(name = "Users", description = "User management endpoints.")
 @ApiResponse(responseCode = "401", content = {@Content})
 @AllArgsConstructor
 public class UserController {
 
+    public static final String QUERY_PLAN_HEADER = "X-Query-Plan";
+
     private UserService userService;
+    private UserImportService userImportService;
+    private UserBulkService userBulkService;
+    private UserStatsService userStatsService;
+    private UserExportService userExportService;
+    private UserChangeFeed userChangeFeed;
+    private ObjectMapper objectMapper;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -32,26 +76,232 @@ public class UserController {
     @ApiResponse(responseCode = "201", description = "User created successfully",
             content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserDto.class))})
     @ApiResponse(responseCode = "400", description = "Invalid user data", content = {@Content})
+    @ApiResponse(responseCode = "409", description = "Email already registered", content = {@Content})
     public UserDto createUser(@Valid @RequestBody UserDto userDto) {
         return userService.createUser(userDto);
     }
 
-    @Operation(summary = "Update user", description = "Update user")
+    @Operation(summary = "Import users", description = "Import users from a JSON array or newline-delimited JSON. " +
+            "Each record is validated like Create user; the report lists the outcome per record in input order")
+    @ApiResponse(responseCode = "200", description = "Import finished",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserImportReportDto.class))})
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public UserImportReportDto importUsers(InputStream body) throws IOException {
+        return userImportService.importUsers(body);
+    }
+
+    @Operation(summary = "Delete users in bulk", description = "Delete the users selected by ids or by a birth date range, " +
+            "in chunks of one transaction each. Repeating an interrupted request, or resuming it with afterId, is safe")
+    @ApiResponse(responseCode = "200", description = "Users deleted",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserBulkReportDto.class))})
+    @ApiResponse(responseCode = "400", description = "Invalid selection", content = {@Content})
+    @PostMapping("/bulk/delete")
+    public UserBulkReportDto deleteUsers(@RequestBody UserBulkRequestDto request) {
+        return userBulkService.deleteUsers(request);
+    }
+
+    @Operation(summary = "Patch users in bulk", description = "Apply a JSON Merge Patch to the users selected by ids or by " +
+            "a birth date range, in chunks of one transaction each. Users that already match the patch are not counted")
+    @ApiResponse(responseCode = "200", description = "Users patched",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserBulkReportDto.class))})
+    @ApiResponse(responseCode = "400", description = "Invalid selection or patch", content = {@Content})
+    @PostMapping("/bulk/patch")
+    public UserBulkReportDto patchUsers(@Valid @RequestBody UserBulkRequestDto request) {
+        return userBulkService.patchUsers(request);
+    }
+
+    @Operation(summary = "Get user by id", description = "Get user by id")
+    @ApiResponse(responseCode = "200", description = "User found",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserDto.class))})
+    @ApiResponse(responseCode = "304", description = "User not modified since the If-None-Match ETag", content = {@Content})
+    @ApiResponse(responseCode = "404", description = "User not found", content = {@Content})
+    @GetMapping("/{userId}")
+    public ResponseEntity<UserDto> getUser(@PathVariable("userId") Long userId, WebRequest request) {
+        UserDto user = userService.getUser(userId);
+        String eTag = UserETags.strong(user.getVersion());
+        if (eTag != null && request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(user);
+    }
+
+    @Operation(summary = "Search users", description = "Search users by first name, last name or address words, " +
+            "matching exactly, by prefix or with a typo, best matches first")
+    @ApiResponse(responseCode = "200", description = "Users found",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserSearchPageDto.class))})
+    @ApiResponse(responseCode = "400", description = "Blank query or page out of range", content = {@Content})
+    @GetMapping("/search")
+    public UserSearchPageDto searchUsers(@RequestParam("q") String query,
+                                         @RequestParam(value = "page", defaultValue = "0") int page,
+                                         @RequestParam(value = "size", defaultValue = "" + UserService.DEFAULT_SEARCH_PAGE_SIZE) int size) {
+        return userService.searchUsers(query, page, size);
+    }
+
+    @Operation(summary = "Get user statistics", description = "Count users grouped by ageBracket (from the minimum " +
+            "registration age up in decades), birthYear, birthMonth or emailDomain (the limit domains with the most users)")
+    @ApiResponse(responseCode = "200", description = "Statistics computed",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserStatsDto.class))})
+    @ApiResponse(responseCode = "400", description = "Unknown grouping or invalid limit", content = {@Content})
+    @GetMapping("/stats")
+    public UserStatsDto getStats(@RequestParam("groupBy") String groupBy,
+                                 @RequestParam(value = "limit", required = false) Integer limit) {
+        return userStatsService.getStats(groupBy, limit);
+    }
+
+    @Operation(summary = "Export users", description = "Start exporting the users, optionally those born between from " +
+            "and to, to a gzip-compressed CSV file. The users are read in parallel id partitions at a throttled rate")
+    @ApiResponse(responseCode = "202", description = "Export started",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserExportDto.class))})
+    @ApiResponse(responseCode = "400", description = "Unsupported format or invalid partitions", content = {@Content})
+    @PostMapping("/exports")
+    public ResponseEntity<UserExportDto> exportUsers(@RequestBody(required = false) UserExportRequestDto request) {
+        UserExportDto export = userExportService.submit(request == null ? new UserExportRequestDto() : request);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{exportId}").build(export.getId()))
+                .body(export);
+    }
+
+    @Operation(summary = "Get export", description = "Get the progress of an export")
+    @ApiResponse(responseCode = "200", description = "Export found",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserExportDto.class))})
+    @ApiResponse(responseCode = "404", description = "Export not found", content = {@Content})
+    @GetMapping("/exports/{exportId}")
+    public UserExportDto getExport(@PathVariable("exportId") String exportId) {
+        return userExportService.getExport(exportId);
+    }
+
+    @Operation(summary = "Resume export", description = "Resume a failed or interrupted export after the last users it wrote")
+    @ApiResponse(responseCode = "202", description = "Export resumed",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserExportDto.class))})
+    @ApiResponse(responseCode = "404", description = "Export not found", content = {@Content})
+    @ApiResponse(responseCode = "409", description = "Export has not failed", content = {@Content})
+    @PostMapping("/exports/{exportId}/resume")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public UserExportDto resumeExport(@PathVariable("exportId") String exportId) {
+        return userExportService.resume(exportId);
+    }
+
+    @Operation(summary = "Download export", description = "Download the gzip-compressed CSV file of a completed export")
+    @ApiResponse(responseCode = "200", description = "Export file", content = {@Content(mediaType = "application/gzip")})
+    @ApiResponse(responseCode = "404", description = "Export not found", content = {@Content})
+    @ApiResponse(responseCode = "409", description = "Export not completed", content = {@Content})
+    @GetMapping("/exports/{exportId}/file")
+    public ResponseEntity<FileSystemResource> getExportFile(@PathVariable("exportId") String exportId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("users-" + exportId + ".csv.gz").build().toString())
+                .body(new FileSystemResource(userExportService.getFile(exportId)));
+    }
+
+    @Operation(summary = "Follow user changes", description = "Stream every user creation, update and deletion as " +
+            "server-sent events, or as newline-delimited JSON when only that is accepted. Resume after a change with " +
+            "after or the Last-Event-ID header. A consumer that falls too far behind is disconnected and should resume")
+    @ApiResponse(responseCode = "200", description = "Changes streamed until the consumer disconnects",
+            content = {@Content(mediaType = "text/event-stream", schema = @Schema(implementation = UserChangeDto.class))})
+    @ApiResponse(responseCode = "410", description = "Changes after the offset are no longer kept", content = {@Content})
+    @GetMapping(value = "/changes", produces = {MediaType.TEXT_EVENT_STREAM_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ResponseBodyEmitter> followChanges(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        boolean ndjson = accept != null && !accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE)
+                && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+        // Never times out; heartbeats find the consumers that have gone away
+        ResponseBodyEmitter emitter = ndjson ? new ResponseBodyEmitter(0L) : new SseEmitter(0L);
+        UserChangeFeed.Subscription subscription = userChangeFeed.subscribe(lastEventId != null ? lastEventId : after,
+                ndjson ? ndjsonSink(emitter) : sseSink((SseEmitter) emitter));
+        emitter.onCompletion(subscription::cancel);
+        emitter.onError(exception -> subscription.cancel());
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.TEXT_EVENT_STREAM)
+                .body(emitter);
+    }
+
+    private static UserChangeFeed.Sink sseSink(SseEmitter emitter) {
+        return new UserChangeFeed.Sink() {
+            @Override
+            public void send(UserChangeDto change) throws IOException {
+                emitter.send(SseEmitter.event().id(String.valueOf(change.getId())).data(change, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        };
+    }
+
+    private UserChangeFeed.Sink ndjsonSink(ResponseBodyEmitter emitter) {
+        return new UserChangeFeed.Sink() {
+            @Override
+            public void send(UserChangeDto change) throws IOException {
+                emitter.send(objectMapper.writeValueAsString(change) + "\n", MediaType.APPLICATION_NDJSON);
+            }
+
+            /**
+             * A blank line, which NDJSON readers skip.
+             */
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send("\n", MediaType.APPLICATION_NDJSON);
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        };
+    }
+
+    @Operation(summary = "Get user by email", description = "Get user by email, compared case-insensitively")
+    @ApiResponse(responseCode = "200", description = "User found",
+            content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserDto.class))})
+    @ApiResponse(responseCode = "304", description = "User not modified since the If-None-Match ETag", content = {@Content})
+    @ApiResponse(responseCode = "404", description = "User not found", content = {@Content})
+    @GetMapping("/by-email")
+    public ResponseEntity<UserDto> getUserByEmail(@RequestParam("email") String email, WebRequest request) {
+        UserDto user = userService.getUserByEmail(email);
+        String eTag = UserETags.strong(user.getVersion());
+        if (eTag != null && request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(user);
+    }
+
+    @Operation(summary = "Update user", description = "Update user with a JSON Merge Patch: missing fields are kept, null fields are cleared")
     @ApiResponse(responseCode = "200", description = "User updated successfully",
             content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserUpdateDto.class))})
     @ApiResponse(responseCode = "400", description = "Invalid user data", content = {@Content})
-    @PatchMapping ("/{userId}")
-    public UserUpdateDto updateUser(@PathVariable("userId") Long userId, @Valid @RequestBody UserUpdateDto userUpdateDto) {
-        return userService.updateUser(userId, userUpdateDto);
+    @ApiResponse(responseCode = "409", description = "Email already registered", content = {@Content})
+    @ApiResponse(responseCode = "412", description = "User modified since the If-Match ETag", content = {@Content})
+    @PatchMapping(value = "/{userId}", consumes = {MediaType.APPLICATION_JSON_VALUE, UserPatchDto.MEDIA_TYPE})
+    public ResponseEntity<UserUpdateDto> updateUser(@PathVariable("userId") Long userId,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                    @Valid @RequestBody UserPatchDto userPatchDto) {
+        userPatchDto.setVersion(UserETags.expectedVersion(ifMatch));
+        UserUpdateDto updated = userService.updateUser(userId, userPatchDto);
+        return ResponseEntity.ok().eTag(UserETags.strong(updated.getVersion())).body(updated);
     }
 
     @Operation(summary = "Update user (all data)", description = "Update user (all data)")
     @ApiResponse(responseCode = "200", description = "User updated successfully",
             content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserDto.class))})
     @ApiResponse(responseCode = "400", description = "Invalid user data", content = {@Content})
+    @ApiResponse(responseCode = "409", description = "Email already registered", content = {@Content})
+    @ApiResponse(responseCode = "412", description = "User modified since the If-Match ETag", content = {@Content})
     @PutMapping("/{userId}")
-    public UserDto updateAllFields(@PathVariable("userId") Long userId, @Valid @RequestBody UserDto userDto) {
-        return userService.updateAllFields(userId, userDto);
+    public ResponseEntity<UserDto> updateAllFields(@PathVariable("userId") Long userId,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @Valid @RequestBody UserDto userDto) {
+        userDto.setVersion(UserETags.expectedVersion(ifMatch));
+        UserDto updated = userService.updateAllFields(userId, userDto);
+        return ResponseEntity.ok().eTag(UserETags.strong(updated.getVersion())).body(updated);
     }
 
         @Operation(summary = "Delete user by id", description = "Delete user by id")
@@ -63,13 +313,82 @@ public class UserController {
         userService.deleteUser(userId);
     }
 
-    @Operation(summary = "Get users by birth date range", description = "Get users by birth date range")
+    @Operation(summary = "Get users by birth date range", description = "Get users by birth date range. " +
+            "When limit or next is given, returns one keyset page and a Link header (rel=\"next\") to the following page, " +
+            "otherwise the whole range, when it matches at most user.query.max-scan-rows users, with a weak ETag. With lastName, emailDomain, hasPhone, hasAddress or sort, " +
+            "or without a full range, always returns keyset pages and reports the chosen index and the most rows " +
+            "a page reads in the X-Query-Plan header")
     @ApiResponse(responseCode = "200", description = "Users found by birth date range successfully",
             content = {@Content(mediaType = "application/json", schema = @Schema(implementation = UserDto.class))})
+    @ApiResponse(responseCode = "304", description = "Range not modified since the If-None-Match ETag", content = {@Content})
+    @ApiResponse(responseCode = "400", description = "Invalid limit, cursor or sort, filters too broad for any index, " +
+            "or an unpaged range matching too many users", content = {@Content})
     @GetMapping
-    public List<UserDto> searchUsersByBirthDateRange(
+    public ResponseEntity<List<UserDto>> searchUsersByBirthDateRange(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(value = "lastName", required = false) String lastName,
+            @RequestParam(value = "emailDomain", required = false) String emailDomain,
+            @RequestParam(value = "hasPhone", required = false) Boolean hasPhone,
+            @RequestParam(value = "hasAddress", required = false) Boolean hasAddress,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "next", required = false) String next,
+            WebRequest request) {
+        boolean rangeOnly = lastName == null && emailDomain == null && hasPhone == null && hasAddress == null && sort == null;
+        if (fromDate == null || toDate == null || !rangeOnly) {
+            UserFilter filter = new UserFilter(fromDate, toDate, lastName, emailDomain, hasPhone, hasAddress, sort);
+            UserFilterPageDto page = userService.filterUsers(filter, limit, next);
+            return withNextLink(ResponseEntity.ok().header(QUERY_PLAN_HEADER, page.getPlan()), page.getNext())
+                    .body(page.getUsers());
+        }
+        if (limit == null && next == null) {
+            userService.requireBoundedBirthDateRange(fromDate, toDate);
+            String eTag = UserETags.weak(userService.getBirthDateRangeVersion(fromDate, toDate));
+            if (eTag != null && request.checkNotModified(eTag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(eTag).body(userService.searchUsersByBirthDateRange(fromDate, toDate));
+        }
+        UserPageDto page = userService.searchUsersByBirthDateRange(fromDate, toDate, limit, next);
+        return withNextLink(ResponseEntity.ok(), page.getNext()).body(page.getUsers());
+    }
+
+    private static ResponseEntity.BodyBuilder withNextLink(ResponseEntity.BodyBuilder response, String next) {
+        if (next != null) {
+            String nextUri = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("next", next)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + nextUri + ">; rel=\"next\"");
+        }
+        return response;
+    }
+
+    @Operation(summary = "Stream users by birth date range",
+            description = "Stream users by birth date range as newline-delimited JSON, ordered by birth date and id")
+    @ApiResponse(responseCode = "200", description = "Users streamed successfully",
+            content = {@Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = UserDto.class))})
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsersByBirthDateRange(
             @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
             @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
-        return userService.searchUsersByBirthDateRange(fromDate, toDate);
+        ObjectWriter writer = objectMapper.writerFor(UserDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = writer.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                userService.streamUsersByBirthDateRange(fromDate, toDate, user -> {
+                    try {
+                        writer.writeValue(generator, user);
+                        generator.writeRaw('\n');
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 }
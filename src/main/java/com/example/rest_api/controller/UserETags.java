@@ -0,0 +1,41 @@
+package com.example.rest_api.controller;
+
+import com.example.rest_api.service.StacklessResponseStatusException;
+import org.springframework.http.HttpStatus;
+
+/**
+ * ETag conventions shared by the servlet and reactive user controllers: a user's strong ETag is
+ * its entity version, a range search gets a weak ETag of the range fingerprint.
+ */
+public final class UserETags {
+
+    private UserETags() {
+    }
+
+    public static String strong(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    public static String weak(String rangeVersion) {
+        return rangeVersion == null ? null : "W/\"" + rangeVersion + "\"";
+    }
+
+    /**
+     * Version required by an If-Match header, or null when any version will do. A tag that can
+     * never match a user version (weak or malformed) fails the precondition straight away.
+     */
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.valueOf(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // falls through to the precondition failure below
+            }
+        }
+        throw new StacklessResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match any user version: " + ifMatch);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.rest_api.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Remembers the clients that have just written, so that their reads go to the primary until every
+ * replica that still serves reads has their writes. The client is that of the current request, by
+ * header or else remote address; work outside a request has no client and is never pinned.
+ */
+public class ReadYourWrites {
+
+    // Past this many recent writers, the oldest ones may read from a replica a little early
+    private static final long MAX_CLIENTS = 100_000;
+
+    private final String clientHeader;
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(String clientHeader, Duration window) {
+        this.clientHeader = clientHeader;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    /**
+     * The primary, recording the current client as a writer once a read-write transaction that used
+     * one of its connections commits.
+     */
+    public DataSource trackingWrites(DataSource primary) {
+        return new DelegatingDataSource(primary) {
+
+            @Override
+            public Connection getConnection() throws SQLException {
+                trackWrite();
+                return super.getConnection();
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                trackWrite();
+                return super.getConnection(username, password);
+            }
+        };
+    }
+
+    public boolean mustReadFromPrimary() {
+        String client = currentClient();
+        return client != null && recentWriters.getIfPresent(client) != null;
+    }
+
+    private void trackWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        String client = currentClient();
+        if (client != null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentWriters.put(client, Boolean.TRUE);
+                }
+            });
+        }
+    }
+
+    private String currentClient() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        String client = request.getHeader(clientHeader);
+        return client != null && !client.isBlank() ? client : request.getRemoteAddr();
+    }
+}
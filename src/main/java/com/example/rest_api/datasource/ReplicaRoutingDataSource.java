@@ -0,0 +1,77 @@
+package com.example.rest_api.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Connections for read-only transactions: from a caught-up replica in the {@link ReplicaSet}, or
+ * from the primary when there is none, when the current client has just written
+ * ({@link ReadYourWrites}), or inside {@link #onPrimary} for readers that must see the latest commit.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final ReplicaSet replicaSet;
+    private final ReadYourWrites readYourWrites;
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaSet replicaSet, ReadYourWrites readYourWrites) {
+        this.primary = primary;
+        this.replicaSet = replicaSet;
+        this.readYourWrites = readYourWrites;
+    }
+
+    /**
+     * Runs reads against the primary even where replicas are configured, such as those following
+     * the change outbox, for which a replica's lag would look like rolled back transactions.
+     */
+    public static <T> T onPrimary(Supplier<T> reads) {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_ONLY.remove();
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource replica = replica();
+        if (replica != null) {
+            try {
+                return replica.getConnection();
+            } catch (SQLException exception) {
+                replicaSet.markUnavailable(replica, exception);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DataSource replica = replica();
+        if (replica != null) {
+            try {
+                return replica.getConnection(username, password);
+            } catch (SQLException exception) {
+                replicaSet.markUnavailable(replica, exception);
+            }
+        }
+        return primary.getConnection(username, password);
+    }
+
+    private DataSource replica() {
+        if (PRIMARY_ONLY.get() != null || readYourWrites.mustReadFromPrimary()) {
+            return null;
+        }
+        return replicaSet.next();
+    }
+}
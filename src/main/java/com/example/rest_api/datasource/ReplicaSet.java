@@ -0,0 +1,174 @@
+package com.example.rest_api.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * The read replicas and which of them are caught up. Replication progress is measured by the last
+ * id in the {@code user_changes} outbox, which every write appends to: a replica may serve reads
+ * while it holds every change the primary had {@code max-lag} ago. Replicas that are behind or
+ * unreachable are skipped until a later check finds them caught up again. Checks start once the
+ * context is refreshed, after the schema holding the outbox exists, and stop before it closes.
+ */
+@Slf4j
+public class ReplicaSet implements Closeable, SmartLifecycle {
+
+    static final String POSITION_QUERY = "SELECT COALESCE(MAX(id), 0) FROM user_changes";
+
+    private final JdbcTemplate primary;
+    private final List<DataSource> replicas;
+    private final List<JdbcTemplate> replicaTemplates;
+    private final long maxLagNanos;
+    private final Duration checkInterval;
+    private final LongSupplier nanoClock;
+    private final ScheduledExecutorService checker;
+    private final AtomicInteger next = new AtomicInteger();
+    // Only used by check(), which the checker thread runs one at a time
+    private final Deque<Position> primaryPositions = new ArrayDeque<>();
+    // Null until the first check
+    private final Boolean[] caughtUp;
+    private volatile List<DataSource> available = List.of();
+    private volatile boolean running;
+
+    public ReplicaSet(DataSource primary, List<DataSource> replicas, Duration maxLag, Duration checkInterval,
+                      LongSupplier nanoClock) {
+        this.primary = new JdbcTemplate(primary);
+        this.replicas = List.copyOf(replicas);
+        this.replicaTemplates = replicas.stream().map(JdbcTemplate::new).toList();
+        this.maxLagNanos = maxLag.toNanos();
+        this.checkInterval = checkInterval;
+        this.nanoClock = nanoClock;
+        this.caughtUp = new Boolean[replicas.size()];
+        this.checker = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("user-replicas-checker-"));
+    }
+
+    @Override
+    public void start() {
+        checker.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        checker.shutdownNow();
+        try {
+            checker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * One of the caught-up replicas in turn, or null when there is none.
+     */
+    public DataSource next() {
+        List<DataSource> candidates = available;
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    /**
+     * Skips a replica that failed to hand out a connection until the next check.
+     */
+    public void markUnavailable(DataSource replica, SQLException exception) {
+        log.warn("Replica {} is unavailable, reading from the primary instead: {}",
+                replicas.indexOf(replica) + 1, exception.getMessage());
+        available = available.stream().filter(candidate -> candidate != replica).toList();
+    }
+
+    void check() {
+        long now = nanoClock.getAsLong();
+        long primaryPosition;
+        try {
+            primaryPosition = position(primary);
+        } catch (DataAccessException exception) {
+            log.warn("Reading the primary's replication position failed: {}", exception.getMostSpecificCause().getMessage());
+            return;
+        }
+        primaryPositions.addLast(new Position(now, primaryPosition));
+        // Keep the newest position that is at least max-lag old; until there is one, the oldest known
+        while (primaryPositions.size() > 1) {
+            Iterator<Position> positions = primaryPositions.iterator();
+            positions.next();
+            if (now - positions.next().atNanos() < maxLagNanos) {
+                break;
+            }
+            primaryPositions.removeFirst();
+        }
+        long required = primaryPositions.getFirst().id();
+
+        List<DataSource> caughtUpReplicas = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            long position;
+            String failure = null;
+            try {
+                position = position(replicaTemplates.get(i));
+            } catch (DataAccessException exception) {
+                position = -1;
+                failure = exception.getMostSpecificCause().getMessage();
+            }
+            boolean isCaughtUp = position >= required;
+            if (isCaughtUp) {
+                caughtUpReplicas.add(replicas.get(i));
+            }
+            if (Boolean.valueOf(isCaughtUp).equals(caughtUp[i])) {
+                continue;
+            }
+            caughtUp[i] = isCaughtUp;
+            if (isCaughtUp) {
+                log.info("Replica {} caught up with the primary and serves reads", i + 1);
+            } else if (failure != null) {
+                log.warn("Replica {} is unavailable, reading from the primary instead: {}", i + 1, failure);
+            } else {
+                log.warn("Replica {} is at change {}, more than {} behind the primary's {}; reading from the primary instead",
+                        i + 1, position, Duration.ofNanos(maxLagNanos), required);
+            }
+        }
+        available = List.copyOf(caughtUpReplicas);
+    }
+
+    private static long position(JdbcTemplate jdbcTemplate) {
+        Long position = jdbcTemplate.queryForObject(POSITION_QUERY, Long.class);
+        return position == null ? 0 : position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private record Position(long atNanos, long id) {
+    }
+}
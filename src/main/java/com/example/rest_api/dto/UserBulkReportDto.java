@@ -0,0 +1,18 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBulkReportDto {
+
+    private int chunks;
+
+    private long affected;
+
+    /** Highest id of the last committed chunk, null when nothing was selected. */
+    private Long lastId;
+}
@@ -0,0 +1,30 @@
+package com.example.rest_api.dto;
+
+import jakarta.validation.Valid;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Selects the users of a bulk delete or patch, either by {@code ids} or by the birth date range
+ * {@code from} to {@code to}.
+ */
+@Data
+@NoArgsConstructor
+public class UserBulkRequestDto {
+
+    private List<Long> ids;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+    /** Skips users with ids up to this one, e.g. the {@code lastId} reported before an interruption. */
+    private Long afterId;
+
+    /** The merge patch applied to every selected user; bulk patch only. */
+    @Valid
+    private UserPatchDto patch;
+}
@@ -0,0 +1,36 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One user write, as published by the change feed. Consumers read the user itself when they need it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserChangeDto {
+
+    /**
+     * Position in the feed, increasing with every change; resume after it to receive the next ones.
+     */
+    private Long id;
+
+    private Long userId;
+
+    private Type type;
+
+    /**
+     * The user's version after the change, or the deleted user's last version.
+     */
+    private Long version;
+
+    private Instant changedAt;
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.rest_api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -37,4 +38,8 @@ public class UserDto {
     private String address;
 
     private String phoneNumber;
+
+    /** Sent as the ETag header rather than in the body. */
+    @JsonIgnore
+    private Long version;
 }
@@ -0,0 +1,47 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * An export job's state, also kept next to its files so that it survives a restart.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserExportDto {
+
+    private String id;
+
+    private Status status;
+
+    private String format;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+    private long rows;
+
+    /**
+     * Size of the finished file.
+     */
+    private long bytes;
+
+    private String error;
+
+    private Instant createdAt;
+
+    private Instant completedAt;
+
+    private List<UserExportPartitionDto> partitions;
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserExportPartitionDto {
+
+    /**
+     * The partition holds the users with ids above {@code afterId} up to and including {@code toId}.
+     */
+    private long afterId;
+
+    private long toId;
+
+    /**
+     * Id of the last user written, from which an interrupted export resumes.
+     */
+    private long lastId;
+
+    private long rows;
+
+    /**
+     * Length of the partition's file up to the last checkpoint.
+     */
+    private long bytes;
+
+    private boolean done;
+}
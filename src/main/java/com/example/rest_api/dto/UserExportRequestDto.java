@@ -0,0 +1,30 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserExportRequestDto {
+
+    /**
+     * Only {@code csv}, written gzip-compressed, is supported.
+     */
+    private String format;
+
+    /**
+     * Optional birth date range; both bounds are inclusive.
+     */
+    private LocalDate from;
+
+    private LocalDate to;
+
+    /**
+     * Id ranges exported in parallel; one per export thread when not given.
+     */
+    private Integer partitions;
+}
@@ -0,0 +1,22 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserFilterPageDto {
+
+    private List<UserDto> users;
+
+    private String next;
+
+    /**
+     * The query plan the page was read with, as {@code index=<name>; estimated-rows=<n>}.
+     */
+    private String plan;
+}
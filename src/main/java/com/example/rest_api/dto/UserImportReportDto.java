@@ -0,0 +1,21 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportReportDto {
+
+    private int total;
+
+    private int imported;
+
+    private int failed;
+
+    private List<UserImportResultDto> results;
+}
@@ -0,0 +1,22 @@
+package com.example.rest_api.dto;
+
+import com.example.rest_api.handler.dto.InvalidFieldDto;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserImportResultDto {
+
+    private int index;
+
+    private Long id;
+
+    private List<InvalidFieldDto> errors;
+}
@@ -0,0 +1,52 @@
+package com.example.rest_api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * JSON Merge Patch (RFC 7396) of a user. Each property is null when it is missing from the document
+ * (left unchanged), empty when it is an explicit null (cleared) and present otherwise (replaced).
+ */
+@Data
+@NoArgsConstructor
+public class UserPatchDto {
+
+    public static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    private Optional<@NotBlank(message = "Email is required")
+            @Email(message = "Invalid email format")
+            @Pattern(regexp = "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$", message = "Invalid email pattern") String> email;
+
+    private Optional<String> address;
+
+    private Optional<String> phoneNumber;
+
+    /** The version required by If-Match, if any. */
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * New values of the properties present in the patch, by property name; null clears the property.
+     */
+    public Map<String, String> changedFields() {
+        Map<String, String> changes = new LinkedHashMap<>();
+        put(changes, "email", email);
+        put(changes, "address", address);
+        put(changes, "phoneNumber", phoneNumber);
+        return changes;
+    }
+
+    private static void put(Map<String, String> changes, String field, Optional<String> value) {
+        if (value != null) {
+            changes.put(field, value.orElse(null));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchPageDto {
+
+    private List<UserDto> users;
+
+    /**
+     * Number of matching users, counted exactly up to 1000 and a lower bound beyond that.
+     */
+    private long total;
+}
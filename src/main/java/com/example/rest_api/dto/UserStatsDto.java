@@ -0,0 +1,22 @@
+package com.example.rest_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatsDto {
+
+    private String groupBy;
+
+    /**
+     * Number of users, including those in email domains beyond the returned ones.
+     */
+    private long total;
+
+    private List<UserStatsBucketDto> buckets;
+}
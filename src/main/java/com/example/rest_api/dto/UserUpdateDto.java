@@ -1,10 +1,10 @@
 package com.example.rest_api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -22,4 +22,8 @@ public class UserUpdateDto {
     private String address;
 
     private String phoneNumber;
+
+    /** Sent as the ETag header rather than in the body; on updates, the version required by If-Match. */
+    @JsonIgnore
+    private Long version;
 }
@@ -0,0 +1,29 @@
+package com.example.rest_api.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Number of users born on a date, maintained alongside user writes so that birth date statistics read
+ * one row per date rather than one per user.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "user_birth_date_counts")
+public class UserBirthDateCountEntity {
+
+    @Id
+    private LocalDate birthDate;
+
+    private long userCount;
+}
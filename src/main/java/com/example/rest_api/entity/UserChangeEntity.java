@@ -0,0 +1,65 @@
+package com.example.rest_api.entity;
+
+import com.example.rest_api.dto.UserChangeDto;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * Outbox row appended in the same transaction as the user write it records. Ids are assigned at insert,
+ * but rows become visible at commit, in another order; the change feed numbers committed rows with feed
+ * positions and publishes them in that order.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "user_changes", indexes = {
+        @Index(name = "idx_user_changes_changed_at", columnList = "changedAt"),
+        @Index(name = "uk_user_changes_feed_position", columnList = "feedPosition", unique = true),
+        @Index(name = UserChangeEntity.UNNUMBERED_INDEX, columnList = "feedPosition, id")
+})
+public class UserChangeEntity {
+    /**
+     * Orders the rows without a feed position by id, so that the feed reads the next ones to number
+     * without sorting all of them.
+     */
+    public static final String UNNUMBERED_INDEX = "idx_user_changes_unnumbered";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(nullable = false, length = 16)
+    private UserChangeDto.Type type;
+
+    private Long userVersion;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+
+    /**
+     * Null until the change feed has read the committed row.
+     */
+    private Long feedPosition;
+}
@@ -0,0 +1,26 @@
+package com.example.rest_api.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Number of users per {@link UserEntity#getEmailDomain() email domain}, maintained alongside user writes.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "user_email_domain_counts")
+public class UserEmailDomainCountEntity {
+
+    @Id
+    private String emailDomain;
+
+    private long userCount;
+}
@@ -11,10 +11,19 @@ import java.time.LocalDate;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_birth_date_id", columnList = "birthDate, id"),
+        @Index(name = "idx_users_last_name_id", columnList = "lastNameNormalized, id"),
+        @Index(name = "idx_users_email_domain_id", columnList = "emailDomain, id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = UserEntity.EMAIL_UNIQUE_CONSTRAINT, columnNames = "emailNormalized")
+})
 public class UserEntity {
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_users_email_normalized";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @NotNull(message = "Email is required")
@@ -39,4 +48,27 @@ public class UserEntity {
 
     private String phoneNumber;
 
+    @Version
+    private Long version;
+
+    /**
+     * Lower-cased email computed by the database, so that every write path keeps it in sync. Its unique
+     * constraint makes emails case-insensitively unique and backs lookups by email. Not read back after
+     * writes; query it rather than this field.
+     */
+    @Column(columnDefinition = "VARCHAR(255) GENERATED ALWAYS AS (LOWER(email))", insertable = false, updatable = false)
+    private String emailNormalized;
+
+    /**
+     * Lower-cased last name computed by the database, backing case-insensitive last name filters.
+     */
+    @Column(columnDefinition = "VARCHAR(255) GENERATED ALWAYS AS (LOWER(lastName))", insertable = false, updatable = false)
+    private String lastNameNormalized;
+
+    /**
+     * Lower-cased part of the email after its '@', backing email domain filters.
+     */
+    @Column(columnDefinition = "VARCHAR(255) GENERATED ALWAYS AS (SUBSTRING(LOWER(email), LOCATE('@', email) + 1))",
+            insertable = false, updatable = false)
+    private String emailDomain;
 }
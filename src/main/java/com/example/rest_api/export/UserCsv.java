@@ -0,0 +1,55 @@
+package com.example.rest_api.export;
+
+import com.example.rest_api.dto.UserDto;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * RFC 4180 rows of users: fields containing a comma, quote or line break are quoted, and nulls are empty.
+ */
+final class UserCsv {
+
+    static final String HEADER = "id,email,firstName,lastName,birthDate,address,phoneNumber,version";
+
+    private UserCsv() {
+    }
+
+    static void writeHeader(Writer writer) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+    }
+
+    static void writeRow(Writer writer, UserDto user) throws IOException {
+        writeField(writer, user.getId());
+        writer.write(',');
+        writeField(writer, user.getEmail());
+        writer.write(',');
+        writeField(writer, user.getFirstName());
+        writer.write(',');
+        writeField(writer, user.getLastName());
+        writer.write(',');
+        writeField(writer, user.getBirthDate());
+        writer.write(',');
+        writeField(writer, user.getAddress());
+        writer.write(',');
+        writeField(writer, user.getPhoneNumber());
+        writer.write(',');
+        writeField(writer, user.getVersion());
+        writer.write('\n');
+    }
+
+    private static void writeField(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
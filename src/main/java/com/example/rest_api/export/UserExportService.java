@@ -0,0 +1,416 @@
+package com.example.rest_api.export;
+
+import com.example.rest_api.config.UserExportConfig;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserExportDto;
+import com.example.rest_api.dto.UserExportPartitionDto;
+import com.example.rest_api.dto.UserExportRequestDto;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.service.StacklessResponseStatusException;
+import com.example.rest_api.service.UserService;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.criteria.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports users to gzip-compressed CSV files in the background: an export is submitted, polled, then
+ * its file downloaded. The ids existing at submission are split into ranges exported in parallel on
+ * {@code user.export.threads} threads. Each range is read in keyset chunks, one short read-only
+ * transaction each, throttled to {@code user.export.max-rows-per-second} per export, so memory stays at
+ * one chunk per thread and no transaction spans the export.
+ * <p>
+ * Every chunk is appended to its range's file as a gzip member of its own and checkpointed in the
+ * export's state file, so that a failed or interrupted export resumes after the last user it wrote. Once
+ * all ranges are done their files are concatenated, which is still one valid gzip file.
+ */
+@Service
+@Profile("!reactive")
+@Slf4j
+public class UserExportService implements Closeable {
+
+    public static final String CSV = "csv";
+    public static final int MAX_PARTITIONS = 64;
+    static final String STATE_FILE = "export.json";
+    static final String FILE = "users.csv.gz";
+
+    private static final Sort ID_ORDER = Sort.by("id");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UserExportConfig config;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final ExecutorService executor;
+    private final Optional<ShardedUserRepository> shardedUserRepository;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public UserExportService(UserExportConfig config, UserRepository userRepository,
+                             PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                             Optional<ShardedUserRepository> shardedUserRepository) throws IOException {
+        this.config = config;
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.directory = Files.createDirectories(Path.of(config.getDirectory()));
+        this.executor = Executors.newFixedThreadPool(config.getThreads(), new CustomizableThreadFactory("user-export-"));
+        this.shardedUserRepository = shardedUserRepository;
+    }
+
+    /**
+     * An export in progress, guarded by its own monitor.
+     */
+    private static final class Job {
+        private final UserExportDto export;
+        private final Path directory;
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong nextRead = new AtomicLong(System.nanoTime());
+
+        private Job(UserExportDto export, Path directory) {
+            this.export = export;
+            this.directory = directory;
+        }
+    }
+
+    public UserExportDto submit(UserExportRequestDto request) {
+        UserService.requireUnsharded(shardedUserRepository, "Exports");
+        String format = request.getFormat() == null ? CSV : request.getFormat();
+        if (!CSV.equals(format)) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Only " + CSV + " exports are supported");
+        }
+        if (request.getFrom() != null && request.getTo() != null && request.getFrom().isAfter(request.getTo())) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "From must not be after to");
+        }
+        int partitions = request.getPartitions() == null ? config.getThreads() : request.getPartitions();
+        if (partitions < 1 || partitions > MAX_PARTITIONS) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Partitions must be between 1 and " + MAX_PARTITIONS);
+        }
+
+        long firstAfterId = userRepository.findMinId() - 1;
+        long span = userRepository.findMaxId() - firstAfterId;
+        List<UserExportPartitionDto> ranges = new ArrayList<>();
+        long afterId = firstAfterId;
+        for (int i = 1; i <= partitions; i++) {
+            long toId = firstAfterId + span * i / partitions;
+            if (toId > afterId) {
+                ranges.add(new UserExportPartitionDto(afterId, toId, afterId, 0, 0, false));
+                afterId = toId;
+            }
+        }
+        String id = UUID.randomUUID().toString();
+        UserExportDto export = new UserExportDto(id, UserExportDto.Status.RUNNING, format, request.getFrom(),
+                request.getTo(), 0, 0, null, Instant.now(), null, ranges);
+        Job job;
+        try {
+            job = new Job(export, Files.createDirectories(directory.resolve(id)));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        jobs.put(id, job);
+        start(job);
+        log.info("Export {} started with {} partitions", id, ranges.size());
+        return snapshot(job);
+    }
+
+    public UserExportDto getExport(String exportId) {
+        return snapshot(job(exportId));
+    }
+
+    /**
+     * Restarts the unfinished partitions of a failed export from their last checkpoints.
+     */
+    public UserExportDto resume(String exportId) {
+        Job job = job(exportId);
+        synchronized (job) {
+            if (job.export.getStatus() != UserExportDto.Status.FAILED || job.running.get() > 0) {
+                throw new StacklessResponseStatusException(HttpStatus.CONFLICT,
+                        "Only failed exports whose partitions have all stopped can be resumed");
+            }
+            start(job);
+        }
+        log.info("Export {} resumed", exportId);
+        return snapshot(job);
+    }
+
+    public Path getFile(String exportId) {
+        Job job = job(exportId);
+        synchronized (job) {
+            if (job.export.getStatus() != UserExportDto.Status.COMPLETED) {
+                throw new StacklessResponseStatusException(HttpStatus.CONFLICT, "Export " + exportId + " is not completed");
+            }
+        }
+        return job.directory.resolve(FILE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Interrupted partitions fail and keep their checkpoints, so their exports can be resumed after a restart
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void start(Job job) {
+        synchronized (job) {
+            job.export.setStatus(UserExportDto.Status.RUNNING);
+            job.export.setError(null);
+            writeState(job);
+            List<UserExportPartitionDto> partitions = job.export.getPartitions();
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < partitions.size(); i++) {
+                if (!partitions.get(i).isDone()) {
+                    pending.add(i);
+                }
+            }
+            if (pending.isEmpty()) {
+                job.running.incrementAndGet();
+                executor.execute(() -> finishIfLast(job));
+                return;
+            }
+            job.running.addAndGet(pending.size());
+            pending.forEach(index -> executor.execute(() -> exportPartition(job, index)));
+        }
+    }
+
+    private void exportPartition(Job job, int index) {
+        UserExportPartitionDto partition;
+        synchronized (job) {
+            partition = job.export.getPartitions().get(index);
+        }
+        int chunkSize = config.getChunkSize();
+        try (FileChannel channel = FileChannel.open(partFile(job, index), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Drops whatever an interrupted run wrote after its last checkpoint
+            long bytes = partition.getBytes();
+            channel.truncate(bytes);
+            channel.position(bytes);
+            OutputStream out = StreamUtils.nonClosing(Channels.newOutputStream(channel));
+            long lastId = partition.getLastId();
+            List<UserDto> users;
+            do {
+                throttle(job, chunkSize);
+                Specification<UserEntity> chunk = chunk(job.export, lastId, partition.getToId());
+                users = readOnlyTransaction.execute(status -> userRepository.findDtoPage(chunk, ID_ORDER, chunkSize));
+                if (users.isEmpty()) {
+                    break;
+                }
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(out, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                    for (UserDto user : users) {
+                        UserCsv.writeRow(writer, user);
+                    }
+                }
+                lastId = users.get(users.size() - 1).getId();
+                checkpoint(job, partition, lastId, users.size(), channel.position());
+            } while (users.size() == chunkSize);
+            synchronized (job) {
+                partition.setDone(true);
+                writeState(job);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            fail(job, "Interrupted before completion");
+        } catch (IOException | RuntimeException exception) {
+            log.warn("Export {} failed in partition {}", job.export.getId(), index, exception);
+            fail(job, exception.getMessage());
+        }
+        finishIfLast(job);
+    }
+
+    /**
+     * Concatenates the partitions' files behind a header once the last of them is done.
+     */
+    private void finishIfLast(Job job) {
+        if (job.running.decrementAndGet() > 0) {
+            return;
+        }
+        synchronized (job) {
+            if (job.export.getStatus() != UserExportDto.Status.RUNNING) {
+                return;
+            }
+        }
+        try (FileChannel target = FileChannel.open(job.directory.resolve(FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            try (Writer header = new OutputStreamWriter(new GZIPOutputStream(
+                    StreamUtils.nonClosing(Channels.newOutputStream(target))), StandardCharsets.UTF_8)) {
+                UserCsv.writeHeader(header);
+            }
+            int partitions = job.export.getPartitions().size();
+            for (int i = 0; i < partitions; i++) {
+                try (FileChannel source = FileChannel.open(partFile(job, i), StandardOpenOption.READ)) {
+                    long size = source.size();
+                    for (long position = 0; position < size; ) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                }
+            }
+            long bytes = target.size();
+            for (int i = 0; i < partitions; i++) {
+                Files.delete(partFile(job, i));
+            }
+            synchronized (job) {
+                job.export.setStatus(UserExportDto.Status.COMPLETED);
+                job.export.setBytes(bytes);
+                job.export.setCompletedAt(Instant.now());
+                writeState(job);
+            }
+            log.info("Export {} completed with {} users", job.export.getId(), job.export.getRows());
+        } catch (IOException | RuntimeException exception) {
+            log.warn("Export {} failed to assemble its file", job.export.getId(), exception);
+            fail(job, exception.getMessage());
+        }
+    }
+
+    private void checkpoint(Job job, UserExportPartitionDto partition, long lastId, int rows, long bytes) {
+        synchronized (job) {
+            partition.setLastId(lastId);
+            partition.setRows(partition.getRows() + rows);
+            partition.setBytes(bytes);
+            job.export.setRows(job.export.getRows() + rows);
+            writeState(job);
+        }
+    }
+
+    private void fail(Job job, String error) {
+        synchronized (job) {
+            if (job.export.getStatus() == UserExportDto.Status.RUNNING) {
+                job.export.setStatus(UserExportDto.Status.FAILED);
+                job.export.setError(error);
+                writeState(job);
+            }
+        }
+    }
+
+    /**
+     * Waits until the export may read {@code rows} more users, reserving their share of the rate limit.
+     */
+    private void throttle(Job job, int rows) throws InterruptedException {
+        int rowsPerSecond = config.getMaxRowsPerSecond();
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+        long cost = TimeUnit.SECONDS.toNanos(rows) / rowsPerSecond;
+        long now = System.nanoTime();
+        long start = Math.max(now, job.nextRead.getAndAccumulate(cost, (next, reserved) -> Math.max(next, now) + reserved));
+        TimeUnit.NANOSECONDS.sleep(start - now);
+    }
+
+    private static Specification<UserEntity> chunk(UserExportDto export, long afterId, long toId) {
+        return (user, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(builder.greaterThan(user.get("id"), afterId));
+            predicates.add(builder.lessThanOrEqualTo(user.get("id"), toId));
+            if (export.getFrom() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(user.get("birthDate"), export.getFrom()));
+            }
+            if (export.getTo() != null) {
+                predicates.add(builder.lessThanOrEqualTo(user.get("birthDate"), export.getTo()));
+            }
+            return builder.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    private Job job(String exportId) {
+        try {
+            UUID.fromString(exportId);
+        } catch (IllegalArgumentException exception) {
+            throw notFound(exportId);
+        }
+        Job job = jobs.computeIfAbsent(exportId, this::load);
+        if (job == null) {
+            throw notFound(exportId);
+        }
+        return job;
+    }
+
+    /**
+     * Reads the state of an export started before a restart. One that was still running was interrupted.
+     */
+    private Job load(String exportId) {
+        Path state = directory.resolve(exportId).resolve(STATE_FILE);
+        if (!Files.exists(state)) {
+            return null;
+        }
+        try {
+            UserExportDto export = objectMapper.readValue(state.toFile(), UserExportDto.class);
+            if (export.getStatus() == UserExportDto.Status.RUNNING) {
+                export.setStatus(UserExportDto.Status.FAILED);
+                export.setError("Interrupted before completion");
+            }
+            return new Job(export, state.getParent());
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Replaces the state file atomically, so that a crash leaves either the previous or the new checkpoint.
+     */
+    private void writeState(Job job) {
+        try {
+            Path temporary = job.directory.resolve(STATE_FILE + ".tmp");
+            objectMapper.writeValue(temporary.toFile(), job.export);
+            Files.move(temporary, job.directory.resolve(STATE_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private UserExportDto snapshot(Job job) {
+        synchronized (job) {
+            return objectMapper.convertValue(job.export, UserExportDto.class);
+        }
+    }
+
+    private static Path partFile(Job job, int index) {
+        return job.directory.resolve("part-" + index + ".csv.gz");
+    }
+
+    private static StacklessResponseStatusException notFound(String exportId) {
+        return new StacklessResponseStatusException(HttpStatus.NOT_FOUND, "Export not found with id: " + exportId);
+    }
+}
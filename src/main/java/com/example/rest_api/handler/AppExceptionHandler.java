@@ -1,10 +1,16 @@
 package com.example.rest_api.handler;
 
+import com.example.rest_api.entity.UserEntity;
 import com.example.rest_api.handler.dto.InvalidFieldDto;
 import com.example.rest_api.handler.dto.ResponseExceptionDto;
 import com.example.rest_api.handler.dto.ResponseValidationExceptionDto;
+import com.example.rest_api.monitoring.UserMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
@@ -17,15 +23,19 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Clock;
 import java.util.List;
+import java.util.Locale;
 
 @ControllerAdvice
+@Profile("!reactive")
 @RequiredArgsConstructor
 @Slf4j
 public class AppExceptionHandler extends ResponseEntityExceptionHandler {
-    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+    private static final ErrorTimestamp TIMESTAMP = new ErrorTimestamp(Clock.systemDefaultZone());
+
+    private final UserMetrics userMetrics;
+    private final ClientErrorLog clientErrorLog;
 
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException exception,
@@ -48,7 +58,8 @@ public class AppExceptionHandler extends ResponseEntityExceptionHandler {
                 1,
                 errors
         );
-        log.error("Validation failed - {}", errors, exception);
+        clientErrorLog.warn(log, "Validation failed - {}", errors);
+        userMetrics.recordError(responseBody.getCode());
         return handleExceptionInternal(exception, responseBody, headers, httpstatus, request);
     }
 
@@ -60,8 +71,52 @@ public class AppExceptionHandler extends ResponseEntityExceptionHandler {
                 exception.getReason(),
                 2);
 
-        log.error("{}", responseBody.getMessage(), exception);
-        return handleExceptionInternal(exception, responseBody, new HttpHeaders(), exception.getStatusCode(), request);
+        // Shed load is expected under overload, and logged as sparingly as client errors
+        if (exception.getStatusCode().is4xxClientError()
+                || exception.getStatusCode().isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE)) {
+            clientErrorLog.warn(log, "{} - {}", responseBody.getStatus(), responseBody.getMessage());
+        } else {
+            log.error("{}", responseBody.getMessage(), exception);
+        }
+        userMetrics.recordError(responseBody.getCode());
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(exception.getHeaders());
+        return handleExceptionInternal(exception, responseBody, headers, exception.getStatusCode(), request);
+    }
+
+    /**
+     * A concurrent update won the race on the {@code @Version} column: the caller's If-Match no
+     * longer holds, or, without one, the update conflicts with the current state.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailure(OptimisticLockingFailureException exception,
+                                                                 WebRequest request) {
+        HttpStatus status = request.getHeader(HttpHeaders.IF_MATCH) != null
+                ? HttpStatus.PRECONDITION_FAILED
+                : HttpStatus.CONFLICT;
+        ResponseExceptionDto responseBody = createResponseExceptionDto(
+                status.value(),
+                "User has been modified concurrently",
+                2);
+        clientErrorLog.warn(log, "{} - {}", responseBody.getStatus(), responseBody.getMessage());
+        userMetrics.recordError(responseBody.getCode());
+        return handleExceptionInternal(exception, responseBody, new HttpHeaders(), status, request);
+    }
+
+    /**
+     * A write broke a unique constraint, in practice another user's email. The database index decides
+     * rather than a SELECT beforehand, so that concurrent registrations cannot both get through.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Object> handleDataIntegrityViolation(DataIntegrityViolationException exception,
+                                                               WebRequest request) {
+        ResponseExceptionDto responseBody = createResponseExceptionDto(
+                HttpStatus.CONFLICT.value(),
+                conflictMessage(exception),
+                4);
+        clientErrorLog.warn(log, "{} - {}", responseBody.getStatus(), responseBody.getMessage());
+        userMetrics.recordError(responseBody.getCode());
+        return handleExceptionInternal(exception, responseBody, new HttpHeaders(), HttpStatus.CONFLICT, request);
     }
 
     @ExceptionHandler(Exception.class)
@@ -72,41 +127,55 @@ public class AppExceptionHandler extends ResponseEntityExceptionHandler {
                 exception.getMessage(),
                 5000);
         log.error("Unknown exception...", exception);
+        userMetrics.recordError(responseBody.getCode());
         return handleExceptionInternal(exception, responseBody, new HttpHeaders(), HttpStatus.BAD_REQUEST, request);
     }
 
-    private ResponseExceptionDto createResponseExceptionDto(int status,
-                                                            String message,
-                                                            int code) {
+    public static String conflictMessage(DataIntegrityViolationException exception) {
+        return isEmailConflict(exception) ? "Email is already registered" : "User conflicts with existing data";
+    }
+
+    /**
+     * Whether the violation is of the unique constraint on users' normalized emails.
+     */
+    public static boolean isEmailConflict(DataIntegrityViolationException exception) {
+        String cause = NestedExceptionUtils.getMostSpecificCause(exception).getMessage();
+        return cause != null && cause.toLowerCase(Locale.ROOT).contains(UserEntity.EMAIL_UNIQUE_CONSTRAINT);
+    }
+
+    static ResponseExceptionDto createResponseExceptionDto(int status,
+                                                           String message,
+                                                           int code) {
         return new ResponseExceptionDto()
                 .setCode(code)
                 .setStatus(status)
                 .setMessage(message)
-                .setTimestamp(LocalDateTime.now().format(DATE_TIME_FORMATTER));
+                .setTimestamp(TIMESTAMP.now());
     }
 
-    private ResponseValidationExceptionDto createResponseValidationExceptionDto(int status,
-                                                                                String message,
-                                                                                int code,
-                                                                                List<InvalidFieldDto> errors) {
+    static ResponseValidationExceptionDto createResponseValidationExceptionDto(int status,
+                                                                               String message,
+                                                                               int code,
+                                                                               List<InvalidFieldDto> errors) {
         return new ResponseValidationExceptionDto()
                 .setCode(code)
                 .setStatus(status)
                 .setMessage(message)
-                .setTimestamp(LocalDateTime.now().format(DATE_TIME_FORMATTER))
+                .setTimestamp(TIMESTAMP.now())
                 .setErrors(errors);
     }
 
     @ExceptionHandler(IllegalArgumentException.class)
-    protected ResponseEntity<Object> handleInvalidAge(
+    public ResponseEntity<Object> handleInvalidAge(
             IllegalArgumentException exception, WebRequest request) {
-        log.error("Illegal argument exception. User must be at least 18 years old to register.", exception);
+        clientErrorLog.warn(log, "Illegal argument exception - {}", exception.getMessage());
 
         ResponseExceptionDto responseBody = createResponseExceptionDto(
                 HttpStatus.BAD_REQUEST.value(),
                 exception.getMessage(),
                 3);
 
+        userMetrics.recordError(responseBody.getCode());
         return handleExceptionInternal(exception, responseBody, new HttpHeaders(), HttpStatus.BAD_REQUEST, request);
     }
 }
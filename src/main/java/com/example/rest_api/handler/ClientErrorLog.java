@@ -0,0 +1,57 @@
+package com.example.rest_api.handler;
+
+import com.example.rest_api.config.UserLoggingConfig;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Logs expected client errors (4xx) at WARN, without stack traces and at most
+ * {@code user.logging.client-errors-per-second} lines per second. Lines over the limit are counted
+ * and reported once the next second starts.
+ */
+@Component
+public class ClientErrorLog {
+
+    private static final long SECOND_NANOS = 1_000_000_000L;
+
+    private final int permitsPerSecond;
+    private final LongSupplier nanoClock;
+    private final AtomicLong currentSecond = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger logged = new AtomicInteger();
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    @Autowired
+    public ClientErrorLog(UserLoggingConfig config) {
+        this(config.getClientErrorsPerSecond(), System::nanoTime);
+    }
+
+    ClientErrorLog(int permitsPerSecond, LongSupplier nanoClock) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.nanoClock = nanoClock;
+    }
+
+    public void warn(Logger log, String format, Object... arguments) {
+        if (!log.isWarnEnabled()) {
+            return;
+        }
+        long second = nanoClock.getAsLong() / SECOND_NANOS;
+        long previous = currentSecond.get();
+        if (second != previous && currentSecond.compareAndSet(previous, second)) {
+            logged.set(0);
+            int dropped = suppressed.getAndSet(0);
+            if (dropped > 0) {
+                log.warn("Suppressed {} client error log lines", dropped);
+            }
+        }
+        if (logged.incrementAndGet() <= permitsPerSecond) {
+            log.warn(format, arguments);
+        } else {
+            suppressed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.rest_api.handler;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The {@code timestamp} of error responses. It has a resolution of one second, so it is formatted
+ * once per second and shared by every error response within that second.
+ */
+final class ErrorTimestamp {
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private final Clock clock;
+    private volatile Formatted latest = new Formatted(Long.MIN_VALUE, null);
+
+    ErrorTimestamp(Clock clock) {
+        this.clock = clock;
+    }
+
+    String now() {
+        long second = Math.floorDiv(clock.millis(), 1000);
+        Formatted formatted = latest;
+        if (formatted.second() != second) {
+            formatted = new Formatted(second, LocalDateTime
+                    .ofInstant(Instant.ofEpochSecond(second), clock.getZone())
+                    .format(DATE_TIME_FORMATTER));
+            latest = formatted;
+        }
+        return formatted.value();
+    }
+
+    private record Formatted(long second, String value) {
+    }
+}
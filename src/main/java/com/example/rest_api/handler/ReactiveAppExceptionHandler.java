@@ -0,0 +1,121 @@
+package com.example.rest_api.handler;
+
+import com.example.rest_api.handler.dto.InvalidFieldDto;
+import com.example.rest_api.handler.dto.ResponseExceptionDto;
+import com.example.rest_api.handler.dto.ResponseValidationExceptionDto;
+import com.example.rest_api.monitoring.UserMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.reactive.result.method.annotation.ResponseEntityExceptionHandler;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * WebFlux twin of {@link AppExceptionHandler}, producing the same error bodies and codes for the
+ * reactive profile.
+ */
+@ControllerAdvice
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveAppExceptionHandler extends ResponseEntityExceptionHandler {
+
+    private final UserMetrics userMetrics;
+    private final ClientErrorLog clientErrorLog;
+
+    @Override
+    protected Mono<ResponseEntity<Object>> handleWebExchangeBindException(WebExchangeBindException exception,
+                                                                         HttpHeaders headers,
+                                                                         HttpStatusCode status,
+                                                                         ServerWebExchange exchange) {
+        HttpStatus httpstatus = HttpStatus.BAD_REQUEST;
+        List<InvalidFieldDto> errors = exception
+                .getBindingResult()
+                .getAllErrors()
+                .stream()
+                .map(error -> new InvalidFieldDto()
+                        .setField(((FieldError) error).getField())
+                        .setMessage(error.getDefaultMessage()))
+                .toList();
+
+        ResponseValidationExceptionDto responseBody = AppExceptionHandler.createResponseValidationExceptionDto(
+                httpstatus.value(),
+                "Validation failed!",
+                1,
+                errors
+        );
+        clientErrorLog.warn(log, "Validation failed - {}", errors);
+        userMetrics.recordError(responseBody.getCode());
+        return handleExceptionInternal(exception, responseBody, headers, httpstatus, exchange);
+    }
+
+    @Override
+    protected Mono<ResponseEntity<Object>> handleResponseStatusException(ResponseStatusException exception,
+                                                                         HttpHeaders headers,
+                                                                         HttpStatusCode status,
+                                                                         ServerWebExchange exchange) {
+        ResponseExceptionDto responseBody = AppExceptionHandler.createResponseExceptionDto(
+                exception.getStatusCode().value(),
+                exception.getReason(),
+                2);
+
+        if (exception.getStatusCode().is4xxClientError()) {
+            clientErrorLog.warn(log, "{} - {}", responseBody.getStatus(), responseBody.getMessage());
+        } else {
+            log.error("{}", responseBody.getMessage(), exception);
+        }
+        userMetrics.recordError(responseBody.getCode());
+        return handleExceptionInternal(exception, responseBody, headers, status, exchange);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public Mono<ResponseEntity<Object>> handleInvalidAge(IllegalArgumentException exception,
+                                                         ServerWebExchange exchange) {
+        clientErrorLog.warn(log, "Illegal argument exception - {}", exception.getMessage());
+
+        ResponseExceptionDto responseBody = AppExceptionHandler.createResponseExceptionDto(
+                HttpStatus.BAD_REQUEST.value(),
+                exception.getMessage(),
+                3);
+
+        userMetrics.recordError(responseBody.getCode());
+        return handleExceptionInternal(exception, responseBody, new HttpHeaders(), HttpStatus.BAD_REQUEST, exchange);
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public Mono<ResponseEntity<Object>> handleDataIntegrityViolation(DataIntegrityViolationException exception,
+                                                                     ServerWebExchange exchange) {
+        ResponseExceptionDto responseBody = AppExceptionHandler.createResponseExceptionDto(
+                HttpStatus.CONFLICT.value(),
+                AppExceptionHandler.conflictMessage(exception),
+                4);
+        clientErrorLog.warn(log, "{} - {}", responseBody.getStatus(), responseBody.getMessage());
+        userMetrics.recordError(responseBody.getCode());
+        return handleExceptionInternal(exception, responseBody, new HttpHeaders(), HttpStatus.CONFLICT, exchange);
+    }
+
+    @ExceptionHandler(Exception.class)
+    public Mono<ResponseEntity<Object>> handleAllExceptions(Exception exception,
+                                                            ServerWebExchange exchange) {
+        ResponseExceptionDto responseBody = AppExceptionHandler.createResponseExceptionDto(
+                HttpStatus.BAD_REQUEST.value(),
+                exception.getMessage(),
+                5000);
+        log.error("Unknown exception...", exception);
+        userMetrics.recordError(responseBody.getCode());
+        return handleExceptionInternal(exception, responseBody, new HttpHeaders(), HttpStatus.BAD_REQUEST, exchange);
+    }
+}
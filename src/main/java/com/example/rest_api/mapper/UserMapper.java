@@ -0,0 +1,28 @@
+package com.example.rest_api.mapper;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserUpdateDto;
+import com.example.rest_api.entity.UserEntity;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+
+/**
+ * Compile-time generated replacement for the reflective {@code ModelMapper} conversions.
+ * Unmapped target properties fail the build, mirroring the STRICT matching strategy. Every method
+ * creates a new target, so null source properties are copied as null.
+ */
+@Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface UserMapper {
+
+    UserDto toDto(UserEntity userEntity);
+
+    UserUpdateDto toUpdateDto(UserEntity userEntity);
+
+    UserUpdateDto toUpdateDto(UserDto userDto);
+
+    @Mapping(target = "emailNormalized", ignore = true)
+    @Mapping(target = "lastNameNormalized", ignore = true)
+    @Mapping(target = "emailDomain", ignore = true)
+    UserEntity toEntity(UserDto userDto);
+}
@@ -0,0 +1,48 @@
+package com.example.rest_api.monitoring;
+
+import com.example.rest_api.config.UserLoggingConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampled, one-line-per-request access log on the {@code access} logger. Server errors and
+ * requests slower than the threshold are always logged, everything else at the sample rate.
+ */
+@Component
+@Slf4j(topic = "access")
+public class AccessLog {
+
+    private final double sampleRate;
+    private final long slowRequestNanos;
+
+    @Autowired
+    public AccessLog(UserLoggingConfig config) {
+        this(config.getAccessSampleRate(), config.getSlowRequestThreshold());
+    }
+
+    AccessLog(double sampleRate, Duration slowRequestThreshold) {
+        this.sampleRate = sampleRate;
+        this.slowRequestNanos = slowRequestThreshold.toNanos();
+    }
+
+    public void record(String method, String path, int status, long startNanos) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (shouldLog(status, elapsedNanos)) {
+            log.info("method={} path={} status={} duration_ms={}",
+                    method, path, status, elapsedNanos / 1_000_000);
+        }
+    }
+
+    boolean shouldLog(int status, long elapsedNanos) {
+        return status >= 500
+                || elapsedNanos >= slowRequestNanos
+                || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.rest_api.monitoring;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Feeds servlet requests to the {@link AccessLog}. Streaming responses are logged when their async
+ * processing completes, so that the duration covers the whole body.
+ */
+@Component
+@Profile("!reactive")
+@RequiredArgsConstructor
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    private final AccessLog accessLog;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (isAsyncStarted(request)) {
+                request.getAsyncContext().addListener(new CompletionListener(request, response, start));
+            } else {
+                accessLog.record(request.getMethod(), request.getRequestURI(), response.getStatus(), start);
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private class CompletionListener implements AsyncListener {
+
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final long start;
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            accessLog.record(request.getMethod(), request.getRequestURI(), response.getStatus(), start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.rest_api.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux twin of {@link AccessLogFilter}.
+ */
+@Component
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveAccessLogFilter implements WebFilter {
+
+    private final AccessLog accessLog;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            ServerHttpRequest request = exchange.getRequest();
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            accessLog.record(request.getMethod().name(), request.getPath().value(),
+                    status != null ? status.value() : 200, start);
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.rest_api.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * User-specific meters that the HTTP server, {@code @Timed} service and Spring Data repository
+ * timers do not cover: DTO mapping time, error responses per {@code AppExceptionHandler} code,
+ * range-search result sizes and admission control.
+ */
+@Component
+public class UserMetrics {
+
+    public static final String MAPPING = "user.mapping";
+    public static final String ERRORS = "user.errors";
+    public static final String RANGE_SEARCH_RESULTS = "user.search.results";
+    public static final String RANGE_SEARCH_LAST_SIZE = "user.search.results.last";
+    public static final String ADMISSION_REJECTED = "user.admission.rejected";
+    public static final String ADMISSION_LIMIT = "user.admission.limit";
+    public static final String ADMISSION_IN_FLIGHT = "user.admission.in.flight";
+    public static final String ADMISSION_CLIENTS = "user.admission.clients";
+
+    private static final int[] ERROR_CODES = {1, 2, 3, 4, 5000};
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> mappingTimers = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> errorCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectionCounters = new ConcurrentHashMap<>();
+    private final DistributionSummary rangeSearchResults;
+    private final AtomicInteger lastRangeSearchSize = new AtomicInteger();
+
+    public UserMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.rangeSearchResults = DistributionSummary.builder(RANGE_SEARCH_RESULTS)
+                .description("Users returned per range search or page")
+                .baseUnit("users")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder(RANGE_SEARCH_LAST_SIZE, lastRangeSearchSize, AtomicInteger::get)
+                .description("Users returned by the latest range search or page")
+                .baseUnit("users")
+                .register(registry);
+        // Registered up front so that every code has a series, even before its first error
+        for (int code : ERROR_CODES) {
+            errorCounter(code);
+        }
+    }
+
+    public <T> T timeMapping(String operation, Supplier<T> mapping) {
+        return mappingTimers.computeIfAbsent(operation, key -> Timer.builder(MAPPING)
+                        .description("Time spent mapping between user entities and DTOs")
+                        .tag("operation", key)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(mapping);
+    }
+
+    public void recordRangeSearch(int size) {
+        rangeSearchResults.record(size);
+        lastRangeSearchSize.set(size);
+    }
+
+    public void recordError(int code) {
+        errorCounter(code).increment();
+    }
+
+    public void recordAdmissionRejection(String reason) {
+        rejectionCounters.computeIfAbsent(reason, key -> Counter.builder(ADMISSION_REJECTED)
+                        .description("Requests rejected by admission control")
+                        .tag("reason", key)
+                        .register(registry))
+                .increment();
+    }
+
+    public void registerAdmission(Supplier<Number> limit, Supplier<Number> inFlight, Supplier<Number> clients) {
+        Gauge.builder(ADMISSION_LIMIT, limit)
+                .description("Concurrent requests currently admitted at most")
+                .baseUnit("requests")
+                .register(registry);
+        Gauge.builder(ADMISSION_IN_FLIGHT, inFlight)
+                .description("Admitted requests in progress")
+                .baseUnit("requests")
+                .register(registry);
+        Gauge.builder(ADMISSION_CLIENTS, clients)
+                .description("Clients with a rate limit bucket")
+                .baseUnit("clients")
+                .register(registry);
+    }
+
+    private Counter errorCounter(int code) {
+        return errorCounters.computeIfAbsent(code, key -> Counter.builder(ERRORS)
+                .description("Error responses by AppExceptionHandler code")
+                .tag("code", String.valueOf(key))
+                .register(registry));
+    }
+}
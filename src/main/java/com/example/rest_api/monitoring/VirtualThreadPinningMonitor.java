@@ -0,0 +1,129 @@
+package com.example.rest_api.monitoring;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier, typically while blocking inside a
+ * {@code synchronized} block or method, for longer than {@code user.virtual-threads.pinning-threshold}.
+ * Listens to the JFR {@code jdk.VirtualThreadPinned} event in-process; each new pinning site is logged
+ * once with its stack trace and then only counted. The totals are served by the {@code pinning}
+ * actuator endpoint.
+ */
+@Component
+@Endpoint(id = "pinning")
+@ConditionalOnProperty("spring.threads.virtual.enabled")
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Duration threshold;
+    private final Map<String, PinningSite> sites = new ConcurrentHashMap<>();
+    private volatile RecordingStream recording;
+
+    public VirtualThreadPinningMonitor(@Value("${user.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void start() {
+        if (Runtime.version().feature() < 21) {
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads; requests run on platform threads",
+                    Runtime.version().feature());
+            return;
+        }
+        RecordingStream stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        recording = stream;
+        log.info("Reporting virtual threads pinned for more than {} ms", threshold.toMillis());
+    }
+
+    @Override
+    public void stop() {
+        RecordingStream stream = recording;
+        recording = null;
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return recording != null;
+    }
+
+    @ReadOperation
+    public Map<String, PinningReport> report() {
+        Map<String, PinningReport> report = new TreeMap<>();
+        sites.forEach((site, stats) -> report.put(site, stats.toReport()));
+        return report;
+    }
+
+    void onPinned(RecordedEvent event) {
+        record(site(event.getStackTrace()), event.getDuration(), event);
+    }
+
+    void record(String site, Duration duration, Object details) {
+        PinningSite stats = sites.computeIfAbsent(site, key -> {
+            log.warn("Virtual thread pinned for {} ms at {}: {}", duration.toMillis(), key, details);
+            return new PinningSite();
+        });
+        stats.add(duration);
+    }
+
+    /**
+     * The first frame outside the JDK, which is where the monitor was taken in application or
+     * library code.
+     */
+    private static String site(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "jdk";
+    }
+
+    public record PinningReport(long count, long totalMillis, long maxMillis) {
+    }
+
+    private static final class PinningSite {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(Duration duration) {
+            count.increment();
+            totalNanos.add(duration.toNanos());
+            maxNanos.accumulateAndGet(duration.toNanos(), Math::max);
+        }
+
+        PinningReport toReport() {
+            return new PinningReport(count.sum(), Duration.ofNanos(totalNanos.sum()).toMillis(),
+                    Duration.ofNanos(maxNanos.get()).toMillis());
+        }
+    }
+}
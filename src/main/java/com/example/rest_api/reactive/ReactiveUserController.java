@@ -0,0 +1,126 @@
+package com.example.rest_api.reactive;
+
+import com.example.rest_api.controller.UserETags;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserImportReportDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserUpdateDto;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * WebFlux counterpart of {@code UserController} with the same endpoints, status codes, ETags
+ * and error contract. Range searches are streamed from R2DBC with backpressure.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/users")
+@AllArgsConstructor
+public class ReactiveUserController {
+
+    private ReactiveUserService userService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<UserDto> createUser(@Valid @RequestBody UserDto userDto) {
+        return userService.createUser(userDto);
+    }
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<UserImportReportDto> importUsers(@RequestBody Flux<UserDto> users) {
+        return userService.importUsers(users);
+    }
+
+    @GetMapping("/{userId}")
+    public Mono<ResponseEntity<UserDto>> getUser(@PathVariable("userId") Long userId, ServerWebExchange exchange) {
+        return userService.getUser(userId).map(user -> {
+            String eTag = UserETags.strong(user.getVersion());
+            if (eTag != null && exchange.checkNotModified(eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            return ResponseEntity.ok().eTag(eTag).body(user);
+        });
+    }
+
+    @GetMapping("/by-email")
+    public Mono<ResponseEntity<UserDto>> getUserByEmail(@RequestParam("email") String email, ServerWebExchange exchange) {
+        return userService.getUserByEmail(email).map(user -> {
+            String eTag = UserETags.strong(user.getVersion());
+            if (eTag != null && exchange.checkNotModified(eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            return ResponseEntity.ok().eTag(eTag).body(user);
+        });
+    }
+
+    @PatchMapping(value = "/{userId}", consumes = {MediaType.APPLICATION_JSON_VALUE, UserPatchDto.MEDIA_TYPE})
+    public Mono<ResponseEntity<UserUpdateDto>> updateUser(@PathVariable("userId") Long userId,
+                                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                          @Valid @RequestBody UserPatchDto userPatchDto) {
+        userPatchDto.setVersion(UserETags.expectedVersion(ifMatch));
+        return userService.updateUser(userId, userPatchDto)
+                .map(updated -> ResponseEntity.ok().eTag(UserETags.strong(updated.getVersion())).body(updated));
+    }
+
+    @PutMapping("/{userId}")
+    public Mono<ResponseEntity<UserDto>> updateAllFields(@PathVariable("userId") Long userId,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @Valid @RequestBody UserDto userDto) {
+        userDto.setVersion(UserETags.expectedVersion(ifMatch));
+        return userService.updateAllFields(userId, userDto)
+                .map(updated -> ResponseEntity.ok().eTag(UserETags.strong(updated.getVersion())).body(updated));
+    }
+
+    @DeleteMapping("/{userId}")
+    public Mono<Void> deleteUser(@PathVariable(value = "userId") Long userId) {
+        return userService.deleteUser(userId);
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<Flux<UserDto>>> searchUsersByBirthDateRange(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "next", required = false) String next,
+            ServerWebExchange exchange) {
+        if (limit == null && next == null) {
+            return userService.getBirthDateRangeVersion(fromDate, toDate).map(rangeVersion -> {
+                String eTag = UserETags.weak(rangeVersion);
+                if (exchange.checkNotModified(eTag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                }
+                return ResponseEntity.ok().eTag(eTag).body(userService.searchUsersByBirthDateRange(fromDate, toDate));
+            });
+        }
+        return userService.searchUsersByBirthDateRange(fromDate, toDate, limit, next).map(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNext() != null) {
+                String nextUri = UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+                        .replaceQueryParam("next", page.getNext())
+                        .toUriString();
+                response.header(HttpHeaders.LINK, "<" + nextUri + ">; rel=\"next\"");
+            }
+            return response.body(Flux.fromIterable(page.getUsers()));
+        });
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserDto> streamUsersByBirthDateRange(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
+        return userService.searchUsersByBirthDateRange(fromDate, toDate);
+    }
+}
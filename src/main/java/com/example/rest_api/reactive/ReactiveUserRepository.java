@@ -0,0 +1,157 @@
+package com.example.rest_api.reactive;
+
+import com.example.rest_api.dto.UserDto;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * R2DBC counterpart of {@code UserRepository}, reading straight into {@link UserDto}. Writes bump
+ * the version column like Hibernate's {@code @Version} does, so that both stacks share ETags.
+ */
+@Repository
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveUserRepository {
+
+    private static final String COLUMNS = "id, email, firstName, lastName, birthDate, address, phoneNumber, version";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<UserDto> findById(long id) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM users WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::toDto)
+                .one();
+    }
+
+    public Mono<UserDto> findByEmail(String email) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM users WHERE emailNormalized = LOWER(:email)")
+                .bind("email", email)
+                .map(ReactiveUserRepository::toDto)
+                .one();
+    }
+
+    public Flux<UserDto> findByBirthDateBetween(LocalDate fromDate, LocalDate toDate) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM users " +
+                        "WHERE birthDate BETWEEN :fromDate AND :toDate ORDER BY birthDate, id")
+                .bind("fromDate", fromDate)
+                .bind("toDate", toDate)
+                .map(ReactiveUserRepository::toDto)
+                .all();
+    }
+
+    public Flux<UserDto> findPageByBirthDateAfter(LocalDate afterBirthDate, long afterId, LocalDate toDate, int limit) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM users " +
+                        "WHERE birthDate >= :afterBirthDate AND birthDate <= :toDate " +
+                        "AND (birthDate > :afterBirthDate OR id > :afterId) " +
+                        "ORDER BY birthDate, id LIMIT :limit")
+                .bind("afterBirthDate", afterBirthDate)
+                .bind("afterId", afterId)
+                .bind("toDate", toDate)
+                .bind("limit", limit)
+                .map(ReactiveUserRepository::toDto)
+                .all();
+    }
+
+    public Mono<String> findVersionTagByBirthDateBetween(LocalDate fromDate, LocalDate toDate) {
+        return databaseClient.sql("SELECT COUNT(*) || '-' || COALESCE(SUM(id), 0) || '-' || COALESCE(SUM(version), 0) || '-' || " +
+                        "COALESCE(MAX(id), 0) AS tag FROM users " +
+                        "WHERE birthDate BETWEEN :fromDate AND :toDate")
+                .bind("fromDate", fromDate)
+                .bind("toDate", toDate)
+                .map(row -> row.get("tag", String.class))
+                .one();
+    }
+
+    /**
+     * Inserts the user with the next id from {@code users_seq} and version 0, returning the id.
+     */
+    public Mono<Long> insert(UserDto user) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("SELECT id FROM FINAL TABLE (" +
+                "INSERT INTO users (" + COLUMNS + ") VALUES (NEXT VALUE FOR users_seq, " +
+                ":email, :firstName, :lastName, :birthDate, :address, :phoneNumber, 0))");
+        spec = bind(spec, "email", user.getEmail(), String.class);
+        spec = bind(spec, "firstName", user.getFirstName(), String.class);
+        spec = bind(spec, "lastName", user.getLastName(), String.class);
+        spec = bind(spec, "birthDate", user.getBirthDate(), LocalDate.class);
+        spec = bind(spec, "address", user.getAddress(), String.class);
+        spec = bind(spec, "phoneNumber", user.getPhoneNumber(), String.class);
+        return spec.map(row -> row.get("id", Long.class)).one();
+    }
+
+    /**
+     * Sets the non-null fields of {@code changes} on user {@code id}, or all of them when
+     * {@code replaceAll} is set, if its version still equals {@code expectedVersion} (any version
+     * when null). Returns the number of updated rows.
+     */
+    public Mono<Long> update(long id, UserDto changes, boolean replaceAll, Long expectedVersion) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("email", changes.getEmail());
+        values.put("firstName", changes.getFirstName());
+        values.put("lastName", changes.getLastName());
+        values.put("birthDate", changes.getBirthDate());
+        values.put("address", changes.getAddress());
+        values.put("phoneNumber", changes.getPhoneNumber());
+        if (!replaceAll) {
+            values.values().removeIf(Objects::isNull);
+        }
+        return update(id, values, expectedVersion);
+    }
+
+    /**
+     * Sets each column in {@code values}, including to null, on user {@code id} if its version still
+     * equals {@code expectedVersion} (any version when null). Returns the number of updated rows.
+     */
+    public Mono<Long> update(long id, Map<String, ?> values, Long expectedVersion) {
+        StringBuilder sql = new StringBuilder("UPDATE users SET version = version + 1");
+        values.keySet().forEach(column -> sql.append(", ").append(column).append(" = :").append(column));
+        sql.append(" WHERE id = :id");
+        if (expectedVersion != null) {
+            sql.append(" AND version = :version");
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString()).bind("id", id);
+        if (expectedVersion != null) {
+            spec = spec.bind("version", expectedVersion);
+        }
+        for (Map.Entry<String, ?> value : values.entrySet()) {
+            Class<?> type = value.getKey().equals("birthDate") ? LocalDate.class : String.class;
+            spec = bind(spec, value.getKey(), value.getValue(), type);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    public Mono<Long> deleteById(long id) {
+        return databaseClient.sql("DELETE FROM users WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec,
+                                                          String name, Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private static UserDto toDto(Readable row) {
+        return new UserDto(
+                row.get("id", Long.class),
+                row.get("email", String.class),
+                row.get("firstName", String.class),
+                row.get("lastName", String.class),
+                row.get("birthDate", LocalDate.class),
+                row.get("address", String.class),
+                row.get("phoneNumber", String.class),
+                row.get("version", Long.class));
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.rest_api.reactive;
+
+import com.example.rest_api.config.UserImportConfig;
+import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserImportReportDto;
+import com.example.rest_api.dto.UserImportResultDto;
+import com.example.rest_api.dto.UserPageDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserUpdateDto;
+import com.example.rest_api.handler.dto.InvalidFieldDto;
+import com.example.rest_api.mapper.UserMapper;
+import com.example.rest_api.service.StacklessResponseStatusException;
+import com.example.rest_api.service.UnderAgeException;
+import com.example.rest_api.service.UserCursor;
+import com.example.rest_api.service.UserImportService;
+import com.example.rest_api.service.UserService;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link UserService} and {@code UserImportService}, with the same
+ * validation rules and error statuses.
+ */
+@Service
+@Profile("reactive")
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveUserService {
+
+    private final ReactiveUserRepository userRepository;
+    private final UserMapper mapper;
+    private final Validator validator;
+    private final TransactionalOperator transactionalOperator;
+    private final UserRegistrationConfig userRegistrationConfig;
+    private final UserImportConfig userImportConfig;
+
+    public Mono<UserDto> createUser(UserDto userDto) {
+        return checkAge(userDto)
+                .then(userRepository.insert(userDto))
+                .flatMap(this::getUser);
+    }
+
+    public Mono<UserDto> getUser(Long userId) {
+        return userRepository.findById(userId)
+                .switchIfEmpty(Mono.error(() -> new StacklessResponseStatusException(HttpStatus.NOT_FOUND,
+                        "User not found with id: " + userId)));
+    }
+
+    public Mono<UserDto> getUserByEmail(String email) {
+        return userRepository.findByEmail(email)
+                .switchIfEmpty(Mono.error(() -> new StacklessResponseStatusException(HttpStatus.NOT_FOUND,
+                        "User not found with the given email")));
+    }
+
+    public Mono<UserDto> updateAllFields(Long userId, UserDto userDto) {
+        return checkAge(userDto)
+                .then(update(userId, userDto, true, userDto.getVersion()));
+    }
+
+    public Mono<UserUpdateDto> updateUser(Long userId, UserPatchDto userPatchDto) {
+        Map<String, String> changes = userPatchDto.changedFields();
+        if (changes.isEmpty()) {
+            return getUser(userId)
+                    .flatMap(user -> userPatchDto.getVersion() == null || userPatchDto.getVersion().equals(user.getVersion())
+                            ? Mono.just(user)
+                            : Mono.error(modified(userId)))
+                    .map(mapper::toUpdateDto);
+        }
+        return userRepository.update(userId, changes, userPatchDto.getVersion())
+                .flatMap(updated -> updated == 0
+                        ? getUser(userId).then(Mono.error(() -> modified(userId)))
+                        : getUser(userId))
+                .map(mapper::toUpdateDto);
+    }
+
+    public Mono<Void> deleteUser(Long userId) {
+        return userRepository.deleteById(userId)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new StacklessResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + userId))
+                        : Mono.<Void>empty())
+                .doOnSuccess(ignored -> log.info("User deleted successfully"));
+    }
+
+    public Flux<UserDto> searchUsersByBirthDateRange(LocalDate fromDate, LocalDate toDate) {
+        return userRepository.findByBirthDateBetween(fromDate, toDate);
+    }
+
+    public Mono<String> getBirthDateRangeVersion(LocalDate fromDate, LocalDate toDate) {
+        return userRepository.findVersionTagByBirthDateBetween(fromDate, toDate);
+    }
+
+    public Mono<UserPageDto> searchUsersByBirthDateRange(LocalDate fromDate, LocalDate toDate, Integer limit, String next) {
+        return Mono.fromCallable(() -> UserService.pageSize(limit))
+                .flatMap(pageSize -> Mono.fromCallable(() -> UserCursor.resume(next, fromDate))
+                        .flatMap(cursor -> userRepository
+                                .findPageByBirthDateAfter(cursor.birthDate(), cursor.id(), toDate, pageSize)
+                                .collectList())
+                        .map(users -> new UserPageDto(users, UserService.nextToken(users, pageSize))));
+    }
+
+    /**
+     * Imports the decoded records in order, inserting valid ones in transactions of
+     * {@code user.import.batch-size}. Unlike the servlet import, a record that fails to decode
+     * ends the stream, since the decoder cannot resume after it.
+     */
+    public Mono<UserImportReportDto> importUsers(Flux<UserDto> users) {
+        int minAge = userRegistrationConfig.getMinAge();
+        List<UserImportResultDto> results = new ArrayList<>();
+        return users.index()
+                .map(indexed -> {
+                    UserDto userDto = indexed.getT2();
+                    List<InvalidFieldDto> errors = validate(userDto, minAge);
+                    UserImportResultDto result = new UserImportResultDto(indexed.getT1().intValue(), null,
+                            errors.isEmpty() ? null : errors);
+                    results.add(result);
+                    return new PendingImport(userDto, result);
+                })
+                .filter(pending -> pending.result().getErrors() == null)
+                .buffer(userImportConfig.getBatchSize())
+                .concatMap(this::persistBatch)
+                .onErrorResume(exception -> {
+                    results.add(failure(results.size(), "Malformed input: "
+                            + NestedExceptionUtils.getMostSpecificCause(exception).getMessage()));
+                    return Mono.empty();
+                })
+                .then(Mono.fromSupplier(() -> {
+                    int failed = (int) results.stream().filter(result -> result.getErrors() != null).count();
+                    log.info("Imported {} of {} users", results.size() - failed, results.size());
+                    return new UserImportReportDto(results.size(), results.size() - failed, failed, results);
+                }));
+    }
+
+    private Mono<Void> persistBatch(List<PendingImport> batch) {
+        return insert(batch)
+                .onErrorResume(DataIntegrityViolationException.class, exception -> {
+                    // Retried one at a time, so that only the records that conflict themselves fail
+                    log.warn("Batch insert of {} records conflicted, retrying them one at a time", batch.size());
+                    return Flux.fromIterable(batch)
+                            .concatMap(pending -> insert(List.of(pending))
+                                    .onErrorResume(insertException -> {
+                                        pending.result().setId(null);
+                                        pending.result().setErrors(List.of(UserImportService.insertError(insertException)));
+                                        return Mono.empty();
+                                    }))
+                            .then();
+                })
+                .onErrorResume(exception -> {
+                    String message = "Batch insert failed: " + NestedExceptionUtils.getMostSpecificCause(exception).getMessage();
+                    log.warn("{} ({} records)", message, batch.size());
+                    batch.forEach(pending -> {
+                        pending.result().setId(null);
+                        pending.result().setErrors(List.of(new InvalidFieldDto().setMessage(message)));
+                    });
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> insert(List<PendingImport> users) {
+        return Flux.fromIterable(users)
+                .concatMap(pending -> userRepository.insert(pending.user())
+                        .doOnNext(id -> pending.result().setId(id)))
+                .as(transactionalOperator::transactional)
+                .then();
+    }
+
+    private Mono<Void> checkAge(UserDto userDto) {
+        int minAge = userRegistrationConfig.getMinAge();
+        if (!UserService.isUserOldEnough(userDto.getBirthDate(), minAge)) {
+            return Mono.error(new UnderAgeException(minAge));
+        }
+        return Mono.empty();
+    }
+
+    private Mono<UserDto> update(Long userId, UserDto changes, boolean replaceAll, Long expectedVersion) {
+        return userRepository.update(userId, changes, replaceAll, expectedVersion)
+                .flatMap(updated -> updated == 0
+                        ? getUser(userId).then(Mono.error(() -> modified(userId)))
+                        : getUser(userId));
+    }
+
+    private static StacklessResponseStatusException modified(Long userId) {
+        return new StacklessResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                "User with id " + userId + " has been modified");
+    }
+
+    private List<InvalidFieldDto> validate(UserDto userDto, int minAge) {
+        List<InvalidFieldDto> errors = validator.validate(userDto).stream()
+                .map(violation -> new InvalidFieldDto()
+                        .setField(violation.getPropertyPath().toString())
+                        .setMessage(violation.getMessage()))
+                .toList();
+        if (errors.isEmpty() && !UserService.isUserOldEnough(userDto.getBirthDate(), minAge)) {
+            return List.of(new InvalidFieldDto()
+                    .setField("birthDate")
+                    .setMessage("User must be at least " + minAge + " years old to register."));
+        }
+        return errors;
+    }
+
+    private static UserImportResultDto failure(int index, String message) {
+        return new UserImportResultDto(index, null, List.of(new InvalidFieldDto().setMessage(message)));
+    }
+
+    private record PendingImport(UserDto user, UserImportResultDto result) {
+    }
+}
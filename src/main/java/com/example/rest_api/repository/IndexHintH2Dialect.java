@@ -0,0 +1,33 @@
+package com.example.rest_api.repository;
+
+import org.hibernate.dialect.H2Dialect;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * H2 dialect placing a query hint after the first table of the FROM clause, where H2 reads
+ * {@code USE INDEX}. H2 has no other way to fix a query's access path, and its optimizer may otherwise
+ * prefer an index that reads more rows than the one {@code UserQueryPlanner} chose.
+ */
+public class IndexHintH2Dialect extends H2Dialect {
+
+    private static final Pattern FIRST_TABLE = Pattern.compile("\\bfrom \\w+ \\w+", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The hint reading through {@code index}, or, when null, through no index that the conditions select,
+     * which leaves the scan in primary key order.
+     */
+    public static String useIndex(String index) {
+        return "USE INDEX (" + (index == null ? "" : index) + ")";
+    }
+
+    @Override
+    public String getQueryHintString(String query, String hints) {
+        Matcher table = FIRST_TABLE.matcher(query);
+        if (!table.find()) {
+            return query;
+        }
+        return query.substring(0, table.end()) + " " + hints + query.substring(table.end());
+    }
+}
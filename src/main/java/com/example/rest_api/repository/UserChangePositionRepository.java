@@ -0,0 +1,11 @@
+package com.example.rest_api.repository;
+
+public interface UserChangePositionRepository {
+
+    /**
+     * Numbers up to {@code limit} committed changes that have no feed position yet, in id order, with the
+     * positions following the highest one, and returns how many were numbered. Two concurrent calls may
+     * pick the same positions, in which case the unique index fails the later one.
+     */
+    int assignPositions(int limit);
+}
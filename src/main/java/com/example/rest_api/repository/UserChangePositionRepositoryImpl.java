@@ -0,0 +1,28 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.entity.UserChangeEntity;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Numbers new outbox rows with a single MERGE, whose source ranks them with {@code ROW_NUMBER()}.
+ */
+@RequiredArgsConstructor
+class UserChangePositionRepositoryImpl implements UserChangePositionRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public int assignPositions(int limit) {
+        // Ranked after the LIMIT, and read in the order of an index on (feedPosition, id), so that a backlog
+        // of unnumbered rows is neither ranked nor sorted in full on every poll
+        return entityManager.createNativeQuery("MERGE INTO user_changes c USING (" +
+                        "SELECT id, (SELECT COALESCE(MAX(feedPosition), 0) FROM user_changes) " +
+                        "+ ROW_NUMBER() OVER (ORDER BY id) AS feedPosition FROM (" +
+                        "SELECT id FROM user_changes " + IndexHintH2Dialect.useIndex(UserChangeEntity.UNNUMBERED_INDEX) +
+                        " WHERE feedPosition IS NULL ORDER BY feedPosition, id LIMIT :limit) u) p " +
+                        "ON c.id = p.id WHEN MATCHED THEN UPDATE SET feedPosition = p.feedPosition")
+                .setParameter("limit", limit)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.dto.UserChangeDto;
+import com.example.rest_api.entity.UserChangeEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UserChangeRepository extends JpaRepository<UserChangeEntity, Long>, UserChangePositionRepository {
+
+    /**
+     * Changes by feed position, published as their DTO ids.
+     */
+    @Query("select new com.example.rest_api.dto.UserChangeDto(c.feedPosition, c.userId, c.type, c.userVersion, c.changedAt) " +
+            "from UserChangeEntity c where c.feedPosition > :afterPosition and c.feedPosition <= :toPosition " +
+            "order by c.feedPosition")
+    List<UserChangeDto> findDtoPage(@Param("afterPosition") long afterPosition, @Param("toPosition") long toPosition,
+                                    Pageable pageable);
+
+    @Query("select coalesce(max(c.feedPosition), 0) from UserChangeEntity c")
+    long findMaxPosition();
+
+    @Query("select min(c.feedPosition) from UserChangeEntity c")
+    Long findMinPosition();
+
+    /**
+     * Records one change per existing user in {@code ids}, with the user's current version, in id order.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO user_changes (userId, type, userVersion, changedAt) " +
+            "SELECT id, :type, version, CURRENT_TIMESTAMP FROM users WHERE id IN (:ids) ORDER BY id", nativeQuery = true)
+    int appendForUsers(@Param("ids") Collection<Long> ids, @Param("type") String type);
+
+    @Modifying
+    @Query("delete from UserChangeEntity c where c.changedAt < :before")
+    int deleteByChangedAtBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,39 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.entity.UserEntity;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface UserFilterRepository {
+
+    /**
+     * The access path of filters that no index narrows: H2 then reads the table in primary key order.
+     */
+    String PRIMARY_KEY = "primary_key";
+
+    /**
+     * Counts the users matching the filter, but stops at {@code limit}, so that the count reads no more
+     * rows than that.
+     */
+    int countUpTo(Specification<UserEntity> where, int limit);
+
+    /**
+     * {@link #countUpTo(Specification, int)} reading through {@code index}, or {@link #PRIMARY_KEY}, whatever
+     * H2's optimizer would choose.
+     */
+    int countUpTo(Specification<UserEntity> where, String index, int limit);
+
+    /**
+     * The first {@code limit} users matching the filter in the given order, read as DTOs.
+     */
+    List<UserDto> findDtoPage(Specification<UserEntity> where, Sort sort, int limit);
+
+    /**
+     * {@link #findDtoPage(Specification, Sort, int)} reading through {@code index}, or {@link #PRIMARY_KEY},
+     * whatever H2's optimizer would choose.
+     */
+    List<UserDto> findDtoPage(Specification<UserEntity> where, String index, Sort sort, int limit);
+}
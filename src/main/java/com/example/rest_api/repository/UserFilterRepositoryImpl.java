@@ -0,0 +1,83 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.entity.UserEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.Query;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+/**
+ * Filters compiled into one parameterized Criteria query. Unlike {@code JpaSpecificationExecutor}, neither
+ * method issues an unbounded count: both stop after {@code limit} rows. A given index is passed to
+ * {@link IndexHintH2Dialect} as a query hint.
+ */
+@RequiredArgsConstructor
+class UserFilterRepositoryImpl implements UserFilterRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public int countUpTo(Specification<UserEntity> where, int limit) {
+        return countUpTo(where, null, limit);
+    }
+
+    @Override
+    public int countUpTo(Specification<UserEntity> where, String index, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<UserEntity> user = query.from(UserEntity.class);
+        query.select(user.get("id"));
+        restrict(query, user, builder, where);
+        // Only ids are read, so the count is answered from the filter's index alone
+        return createQuery(query, index)
+                .setMaxResults(limit)
+                .getResultList()
+                .size();
+    }
+
+    @Override
+    public List<UserDto> findDtoPage(Specification<UserEntity> where, Sort sort, int limit) {
+        return findDtoPage(where, null, sort, limit);
+    }
+
+    @Override
+    public List<UserDto> findDtoPage(Specification<UserEntity> where, String index, Sort sort, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserDto> query = builder.createQuery(UserDto.class);
+        Root<UserEntity> user = query.from(UserEntity.class);
+        query.select(builder.construct(UserDto.class, user.get("id"), user.get("email"), user.get("firstName"),
+                user.get("lastName"), user.get("birthDate"), user.get("address"), user.get("phoneNumber"),
+                user.get("version")));
+        restrict(query, user, builder, where);
+        query.orderBy(QueryUtils.toOrders(sort, user, builder));
+        return createQuery(query, index)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private <T> TypedQuery<T> createQuery(CriteriaQuery<T> query, String index) {
+        TypedQuery<T> typedQuery = entityManager.createQuery(query);
+        if (index != null) {
+            typedQuery.unwrap(Query.class).addQueryHint(IndexHintH2Dialect.useIndex(PRIMARY_KEY.equals(index) ? null : index));
+        }
+        return typedQuery;
+    }
+
+    private static void restrict(CriteriaQuery<?> query, Root<UserEntity> user, CriteriaBuilder builder,
+                                 Specification<UserEntity> where) {
+        Predicate predicate = where.toPredicate(user, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+}
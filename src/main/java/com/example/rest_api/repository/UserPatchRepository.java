@@ -0,0 +1,25 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserUpdateDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserPatchRepository {
+
+    /**
+     * Applies the patch's changed fields with a single UPDATE, bumping the version as {@code @Version}
+     * would, and returns the updated row. Empty when no user has the id, or when the patch's expected
+     * version is set and no longer current.
+     */
+    Optional<UserUpdateDto> patch(long userId, UserPatchDto patch);
+
+    /**
+     * Applies the patch's changed fields to the users with the given ids in a single UPDATE, skipping
+     * those that already have the patched values, so that re-applying a patch changes nothing. The
+     * patch's expected version is ignored. Returns the ids of the updated users, in ascending order.
+     */
+    List<Long> patchAll(Collection<Long> userIds, UserPatchDto patch);
+}
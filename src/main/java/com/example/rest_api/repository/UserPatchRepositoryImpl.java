@@ -0,0 +1,78 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserUpdateDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Patches as set-based UPDATEs of the changed columns only. A single-user patch reads the updated row
+ * back through H2's {@code FINAL TABLE}, so it is one round trip instead of a load followed by a
+ * full-row UPDATE; a bulk patch reads back the ids it updated the same way. Field names double as column names under the standard physical naming strategy.
+ */
+@RequiredArgsConstructor
+class UserPatchRepositoryImpl implements UserPatchRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public Optional<UserUpdateDto> patch(long userId, UserPatchDto patch) {
+        Map<String, String> changes = patch.changedFields();
+        StringBuilder sql = new StringBuilder("SELECT id, email, address, phoneNumber, version FROM FINAL TABLE (" +
+                "UPDATE users SET version = version + 1");
+        changes.keySet().forEach(column -> sql.append(", ").append(column).append(" = :").append(column));
+        sql.append(" WHERE id = :id");
+        if (patch.getVersion() != null) {
+            sql.append(" AND version = :version");
+        }
+        sql.append(')');
+
+        Query query = entityManager.createNativeQuery(sql.toString())
+                .setParameter("id", userId);
+        if (patch.getVersion() != null) {
+            query.setParameter("version", patch.getVersion());
+        }
+        changes.forEach(query::setParameter);
+
+        List<?> rows = query.getResultList();
+        return rows.stream()
+                .map(Object[].class::cast)
+                .map(row -> {
+                    UserUpdateDto updated = new UserUpdateDto();
+                    updated.setId(((Number) row[0]).longValue());
+                    updated.setEmail((String) row[1]);
+                    updated.setAddress((String) row[2]);
+                    updated.setPhoneNumber((String) row[3]);
+                    updated.setVersion(((Number) row[4]).longValue());
+                    return updated;
+                })
+                .findFirst();
+    }
+
+    @Override
+    public List<Long> patchAll(Collection<Long> userIds, UserPatchDto patch) {
+        Map<String, String> changes = patch.changedFields();
+        StringBuilder sql = new StringBuilder("SELECT id FROM FINAL TABLE (UPDATE users SET version = version + 1");
+        changes.keySet().forEach(column -> sql.append(", ").append(column).append(" = :").append(column));
+        sql.append(" WHERE id IN (:ids) AND (");
+        sql.append(changes.keySet().stream()
+                .map(column -> column + " IS DISTINCT FROM :" + column)
+                .collect(Collectors.joining(" OR ")));
+        sql.append(")) ORDER BY id");
+
+        Query query = entityManager.createNativeQuery(sql.toString())
+                .setParameter("ids", userIds);
+        changes.forEach(query::setParameter);
+        List<?> ids = query.getResultList();
+        return ids.stream()
+                .map(id -> ((Number) id).longValue())
+                .toList();
+    }
+}
@@ -1,13 +1,94 @@
 package com.example.rest_api.repository;
 
+import com.example.rest_api.dto.UserDto;
 import com.example.rest_api.entity.UserEntity;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
-public interface UserRepository extends JpaRepository<UserEntity, Long> {
+public interface UserRepository extends JpaRepository<UserEntity, Long>, UserPatchRepository, UserFilterRepository,
+        UserStatsRepository {
     List<UserEntity> findByBirthDateBetween(LocalDate fromDate, LocalDate toDate);
+
+    @Query("select new com.example.rest_api.dto.UserDto(u.id, u.email, u.firstName, u.lastName, " +
+            "u.birthDate, u.address, u.phoneNumber, u.version) from UserEntity u " +
+            "where u.emailNormalized = lower(:email)")
+    Optional<UserDto> findDtoByEmail(@Param("email") String email);
+
+    @Query("select new com.example.rest_api.dto.UserDto(u.id, u.email, u.firstName, u.lastName, " +
+            "u.birthDate, u.address, u.phoneNumber, u.version) from UserEntity u where u.id in :ids")
+    List<UserDto> findDtoByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.example.rest_api.dto.UserDto(u.id, u.email, u.firstName, u.lastName, " +
+            "u.birthDate, u.address, u.phoneNumber, u.version) from UserEntity u " +
+            "where u.id > :afterId order by u.id")
+    List<UserDto> findDtoPageAfterId(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("select new com.example.rest_api.dto.UserDto(u.id, u.email, u.firstName, u.lastName, " +
+            "u.birthDate, u.address, u.phoneNumber, u.version) from UserEntity u " +
+            "where u.birthDate between :fromDate and :toDate")
+    List<UserDto> findDtoByBirthDateBetween(@Param("fromDate") LocalDate fromDate,
+                                            @Param("toDate") LocalDate toDate);
+
+    @Query("select new com.example.rest_api.dto.UserDto(u.id, u.email, u.firstName, u.lastName, " +
+            "u.birthDate, u.address, u.phoneNumber, u.version) from UserEntity u " +
+            "where u.birthDate >= :afterBirthDate and u.birthDate <= :toDate " +
+            "and (u.birthDate > :afterBirthDate or u.id > :afterId) " +
+            "order by u.birthDate, u.id")
+    List<UserDto> findPageByBirthDateAfter(@Param("afterBirthDate") LocalDate afterBirthDate,
+                                           @Param("afterId") long afterId,
+                                           @Param("toDate") LocalDate toDate,
+                                           Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.example.rest_api.dto.UserDto(u.id, u.email, u.firstName, u.lastName, " +
+            "u.birthDate, u.address, u.phoneNumber, u.version) from UserEntity u " +
+            "where u.birthDate between :fromDate and :toDate order by u.birthDate, u.id")
+    Stream<UserDto> streamByBirthDateBetween(@Param("fromDate") LocalDate fromDate,
+                                             @Param("toDate") LocalDate toDate);
+
+    /**
+     * Count, id sum, version sum and highest id of the users in the range. The ids make it change when
+     * one user is deleted and another created, which leaves the count and version sum as they were.
+     */
+    @Query("select cast(count(u) as String) || '-' || cast(coalesce(sum(u.id), 0) as String) || '-' || " +
+            "cast(coalesce(sum(u.version), 0) as String) || '-' || cast(coalesce(max(u.id), 0) as String) " +
+            "from UserEntity u where u.birthDate between :fromDate and :toDate")
+    String findVersionTagByBirthDateBetween(@Param("fromDate") LocalDate fromDate,
+                                            @Param("toDate") LocalDate toDate);
+
+    @Query("select u.id from UserEntity u " +
+            "where u.birthDate between :fromDate and :toDate and u.id > :afterId order by u.id")
+    List<Long> findIdsByBirthDateBetween(@Param("fromDate") LocalDate fromDate,
+                                         @Param("toDate") LocalDate toDate,
+                                         @Param("afterId") long afterId,
+                                         Pageable pageable);
+
+    @Query("select coalesce(min(u.id), 0) from UserEntity u")
+    long findMinId();
+
+    @Query("select coalesce(max(u.id), 0) from UserEntity u")
+    long findMaxId();
+
+    @Modifying
+    @Query("delete from UserEntity u where u.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
 }
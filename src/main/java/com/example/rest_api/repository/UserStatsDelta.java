@@ -0,0 +1,48 @@
+package com.example.rest_api.repository;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Changes to the summary counts per birth date and per email domain, collected during a transaction.
+ * Buckets whose changes cancel out are dropped, and the rest are kept sorted, so that transactions
+ * applying deltas concurrently update summary rows in the same order.
+ */
+public class UserStatsDelta {
+
+    private final SortedMap<LocalDate, Long> birthDates = new TreeMap<>();
+    private final SortedMap<String, Long> emailDomains = new TreeMap<>();
+
+    /**
+     * Adds {@code users} users with the given birth date and email domain, or subtracts them when negative.
+     * Null buckets are not counted.
+     */
+    public void add(LocalDate birthDate, String emailDomain, long users) {
+        if (birthDate != null) {
+            birthDates.merge(birthDate, users, UserStatsDelta::sum);
+        }
+        if (emailDomain != null) {
+            emailDomains.merge(emailDomain, users, UserStatsDelta::sum);
+        }
+    }
+
+    public Map<LocalDate, Long> getBirthDates() {
+        return Collections.unmodifiableSortedMap(birthDates);
+    }
+
+    public Map<String, Long> getEmailDomains() {
+        return Collections.unmodifiableSortedMap(emailDomains);
+    }
+
+    public boolean isEmpty() {
+        return birthDates.isEmpty() && emailDomains.isEmpty();
+    }
+
+    private static Long sum(Long users, Long more) {
+        long total = users + more;
+        return total == 0 ? null : total;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.dto.UserStatsBucketDto;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * User counts grouped in the database, read either from the users table or from the summary tables
+ * of counts per birth date and per email domain. Empty buckets are left out.
+ */
+public interface UserStatsRepository {
+
+    /**
+     * Users per bracket of birth dates. Each bracket holds the users born on or before its date that
+     * no earlier bracket holds; a null date takes all the rest.
+     */
+    List<UserStatsBucketDto> countByBirthDateBrackets(Map<String, LocalDate> latestBirthDates, boolean fromSummary);
+
+    List<UserStatsBucketDto> countByBirthYear(boolean fromSummary);
+
+    /**
+     * Users per birth month, keyed {@code yyyy-MM}.
+     */
+    List<UserStatsBucketDto> countByBirthMonth(boolean fromSummary);
+
+    /**
+     * The {@code limit} email domains with the most users.
+     */
+    List<UserStatsBucketDto> countByEmailDomain(int limit, boolean fromSummary);
+
+    long countUsers(boolean fromSummary);
+
+    /**
+     * Adds the users with the given ids, as currently stored, to {@code delta}, or subtracts them when
+     * {@code sign} is negative. Pending entity changes are flushed first. Subtracted rows are read with
+     * {@code FOR UPDATE}, so that no concurrent write changes them before the transaction ends; added rows
+     * were written by the transaction and are locked already.
+     */
+    void addToStatsDelta(UserStatsDelta delta, Collection<Long> userIds, int sign);
+
+    /**
+     * Adds the delta to the summary counts.
+     */
+    void applyStatsDelta(UserStatsDelta delta);
+
+    /**
+     * Recounts the summary from the users table.
+     */
+    void rebuildStatsSummary();
+}
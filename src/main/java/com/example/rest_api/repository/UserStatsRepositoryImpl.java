@@ -0,0 +1,144 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.dto.UserStatsBucketDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GROUP BY queries over either the users table, one row per user, or the summary tables, one row per
+ * birth date or email domain weighted by its count. Both share column names, so only the source and
+ * the weight differ. The summary is adjusted with one MERGE per changed bucket, which callers run in a
+ * transaction of its own, so that writers only hold a hot bucket's row for that short transaction.
+ */
+@RequiredArgsConstructor
+class UserStatsRepositoryImpl implements UserStatsRepository {
+
+    private static final String BIRTH_DATE_SUMMARY = "user_birth_date_counts";
+    private static final String EMAIL_DOMAIN_SUMMARY = "user_email_domain_counts";
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<UserStatsBucketDto> countByBirthDateBrackets(Map<String, LocalDate> latestBirthDates, boolean fromSummary) {
+        StringBuilder bucket = new StringBuilder("CASE");
+        int i = 0;
+        String otherwise = "NULL";
+        for (Map.Entry<String, LocalDate> bracket : latestBirthDates.entrySet()) {
+            if (bracket.getValue() == null) {
+                otherwise = ":label" + i;
+            } else {
+                bucket.append(" WHEN birthDate <= :date").append(i).append(" THEN :label").append(i);
+            }
+            i++;
+        }
+        bucket.append(" ELSE ").append(otherwise).append(" END");
+
+        Query query = groupBy(bucket.toString(), BIRTH_DATE_SUMMARY, fromSummary, "bucket", null);
+        i = 0;
+        for (Map.Entry<String, LocalDate> bracket : latestBirthDates.entrySet()) {
+            query.setParameter("label" + i, bracket.getKey());
+            if (bracket.getValue() != null) {
+                query.setParameter("date" + i, bracket.getValue());
+            }
+            i++;
+        }
+        return buckets(query);
+    }
+
+    @Override
+    public List<UserStatsBucketDto> countByBirthYear(boolean fromSummary) {
+        return buckets(groupBy("EXTRACT(YEAR FROM birthDate)", BIRTH_DATE_SUMMARY, fromSummary, "bucket", null));
+    }
+
+    @Override
+    public List<UserStatsBucketDto> countByBirthMonth(boolean fromSummary) {
+        return buckets(groupBy("FORMATDATETIME(birthDate, 'yyyy-MM')", BIRTH_DATE_SUMMARY, fromSummary, "bucket", null));
+    }
+
+    @Override
+    public List<UserStatsBucketDto> countByEmailDomain(int limit, boolean fromSummary) {
+        return buckets(groupBy("emailDomain", EMAIL_DOMAIN_SUMMARY, fromSummary, "total DESC, bucket", limit));
+    }
+
+    @Override
+    public long countUsers(boolean fromSummary) {
+        String sql = fromSummary
+                ? "SELECT COALESCE(SUM(userCount), 0) FROM " + BIRTH_DATE_SUMMARY
+                : "SELECT COUNT(*) FROM users";
+        return ((Number) entityManager.createNativeQuery(sql).getSingleResult()).longValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void addToStatsDelta(UserStatsDelta delta, Collection<Long> userIds, int sign) {
+        entityManager.flush();
+        // H2 does not lock grouped rows, so each user is read and counted on its own. Users are added after
+        // this transaction wrote them, so only those about to be changed or deleted still need locking.
+        List<Object[]> users = entityManager.createNativeQuery("SELECT birthDate, emailDomain FROM users " +
+                        "WHERE id IN (:ids)" + (sign < 0 ? " FOR UPDATE" : ""))
+                .setParameter("ids", userIds)
+                .getResultList();
+        for (Object[] user : users) {
+            delta.add(toLocalDate(user[0]), (String) user[1], Integer.signum(sign));
+        }
+    }
+
+    @Override
+    public void applyStatsDelta(UserStatsDelta delta) {
+        delta.getBirthDates().forEach((birthDate, users) -> merge(BIRTH_DATE_SUMMARY, "birthDate", "DATE", birthDate, users));
+        delta.getEmailDomains().forEach((emailDomain, users) -> merge(EMAIL_DOMAIN_SUMMARY, "emailDomain", "VARCHAR", emailDomain, users));
+    }
+
+    @Override
+    public void rebuildStatsSummary() {
+        for (String[] summary : new String[][]{{BIRTH_DATE_SUMMARY, "birthDate"}, {EMAIL_DOMAIN_SUMMARY, "emailDomain"}}) {
+            entityManager.createNativeQuery("DELETE FROM " + summary[0]).executeUpdate();
+            entityManager.createNativeQuery("INSERT INTO " + summary[0] + " (" + summary[1] + ", userCount) " +
+                            "SELECT " + summary[1] + ", COUNT(*) FROM users WHERE " + summary[1] + " IS NOT NULL " +
+                            "GROUP BY " + summary[1])
+                    .executeUpdate();
+        }
+    }
+
+    private void merge(String summary, String column, String type, Object bucket, long users) {
+        entityManager.createNativeQuery("MERGE INTO " + summary + " t " +
+                        "USING (VALUES (CAST(:bucket AS " + type + "), CAST(:users AS BIGINT))) s(bucket, users) " +
+                        "ON t." + column + " = s.bucket " +
+                        "WHEN MATCHED THEN UPDATE SET userCount = t.userCount + s.users " +
+                        "WHEN NOT MATCHED THEN INSERT (" + column + ", userCount) VALUES (s.bucket, s.users)")
+                .setParameter("bucket", bucket)
+                .setParameter("users", users)
+                .executeUpdate();
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof Date date ? date.toLocalDate() : (LocalDate) value;
+    }
+
+    private Query groupBy(String bucket, String summary, boolean fromSummary, String orderBy, Integer limit) {
+        String source = fromSummary ? summary + " WHERE userCount > 0" : "users";
+        String weight = fromSummary ? "userCount" : "1";
+        String sql = "SELECT bucket, SUM(weight) AS total FROM (" +
+                "SELECT " + bucket + " AS bucket, " + weight + " AS weight FROM " + source + ") " +
+                "WHERE bucket IS NOT NULL GROUP BY bucket ORDER BY " + orderBy;
+        Query query = entityManager.createNativeQuery(limit == null ? sql : sql + " LIMIT :limit");
+        if (limit != null) {
+            query.setParameter("limit", limit);
+        }
+        return query;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<UserStatsBucketDto> buckets(Query query) {
+        return ((List<Object[]>) query.getResultList()).stream()
+                .map(row -> new UserStatsBucketDto(String.valueOf(row[0]), ((Number) row[1]).longValue()))
+                .toList();
+    }
+}
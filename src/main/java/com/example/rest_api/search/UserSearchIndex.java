@@ -0,0 +1,372 @@
+package com.example.rest_api.search;
+
+import com.example.rest_api.config.UserSearchConfig;
+import com.example.rest_api.datasource.ReplicaRoutingDataSource;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ngram.EdgeNGramTokenFilter;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Lucene index of user names and addresses behind {@code GET /users/search}. Like the users cache,
+ * it is only written once the surrounding transaction has committed, and searches see writes at
+ * most {@code user.search.max-staleness} late.
+ * <p>
+ * At startup the index is rebuilt from the users table, or from the shards with
+ * {@code user.shards.enabled}, unless it was closed cleanly and still holds as many users as they do.
+ */
+@Component
+@Profile("!reactive")
+@Slf4j
+public class UserSearchIndex implements Closeable {
+
+    static final String ID = "id";
+    static final String FIRST_NAME = "firstName";
+    static final String LAST_NAME = "lastName";
+    static final String ADDRESS = "address";
+    static final String PREFIXES = ".prefixes";
+
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_LENGTH = 15;
+    private static final String CLEAN = "clean";
+    private static final int REBUILD_CHUNK_SIZE = 10_000;
+    private static final int MAX_QUERY_TERMS = 8;
+
+    private final UserRepository userRepository;
+    private final Optional<ShardedUserRepository> shardedUserRepository;
+    private final int maxResults;
+    private final long maxStalenessNanos;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private volatile long lastRefresh = System.nanoTime();
+    private volatile boolean failed;
+
+    public UserSearchIndex(UserSearchConfig userSearchConfig, UserRepository userRepository,
+                           Optional<ShardedUserRepository> shardedUserRepository) throws IOException {
+        this.userRepository = userRepository;
+        this.shardedUserRepository = shardedUserRepository;
+        this.maxResults = userSearchConfig.getMaxResults();
+        this.maxStalenessNanos = userSearchConfig.getMaxStaleness().toNanos();
+        this.directory = userSearchConfig.getDirectory().isBlank()
+                ? new ByteBuffersDirectory()
+                : FSDirectory.open(Path.of(userSearchConfig.getDirectory()));
+        Analyzer prefixAnalyzer = new PrefixAnalyzer();
+        Analyzer indexAnalyzer = new PerFieldAnalyzerWrapper(analyzer, Map.of(
+                FIRST_NAME + PREFIXES, prefixAnalyzer,
+                LAST_NAME + PREFIXES, prefixAnalyzer,
+                ADDRESS + PREFIXES, prefixAnalyzer));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(indexAnalyzer));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Rebuilds a stale index, then marks it as not cleanly closed until {@link #close()}, so that a
+     * crash in between leads to a rebuild on the next start.
+     */
+    @PostConstruct
+    public void rebuildIfStale() throws IOException {
+        boolean clean = DirectoryReader.indexExists(directory)
+                && Boolean.parseBoolean(SegmentInfos.readLatestCommit(directory).getUserData().get(CLEAN));
+        long users = shardedUserRepository.map(ShardedUserRepository::count).orElseGet(userRepository::count);
+        if (clean && writer.getDocStats().numDocs == users) {
+            log.info("Reusing user search index with {} users", users);
+        } else {
+            rebuild();
+        }
+        writer.setLiveCommitData(Map.of(CLEAN, "false").entrySet());
+        writer.commit();
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    private void rebuild() throws IOException {
+        long start = System.nanoTime();
+        writer.deleteAll();
+        long indexed = 0;
+        long afterId = Long.MIN_VALUE;
+        List<UserDto> users;
+        do {
+            users = findPageAfterId(afterId);
+            for (UserDto user : users) {
+                writer.addDocument(toDocument(user));
+            }
+            indexed += users.size();
+            if (!users.isEmpty()) {
+                afterId = users.get(users.size() - 1).getId();
+            }
+        } while (users.size() == REBUILD_CHUNK_SIZE);
+        log.info("Rebuilt user search index with {} users in {} ms", indexed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private List<UserDto> findPageAfterId(long afterId) {
+        return shardedUserRepository.map(shards -> shards.findPageAfterId(afterId, REBUILD_CHUNK_SIZE))
+                .orElseGet(() -> userRepository.findDtoPageAfterId(afterId, PageRequest.ofSize(REBUILD_CHUNK_SIZE)));
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Users matching every word of the text in their first name, last name or address, exactly, by
+     * prefix or with a typo, best matches first. Names weigh more than addresses.
+     */
+    public Hits search(String text, int offset, int limit) {
+        List<String> terms = terms(text);
+        if (terms.isEmpty()) {
+            return new Hits(List.of(), 0);
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms) {
+            query.add(termQuery(term), BooleanClause.Occur.MUST);
+        }
+        try {
+            maybeRefresh();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                // Sorting by score alone lets Lucene skip blocks of documents that cannot make the top hits
+                TopDocs topDocs = searcher.search(query.build(), offset + limit);
+                List<Long> ids = new ArrayList<>(limit);
+                for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+                    ids.add(id(searcher, topDocs.scoreDocs[i].doc));
+                }
+                return new Hits(ids, topDocs.totalHits.value);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public void index(UserDto user) {
+        index(List.of(user));
+    }
+
+    public void index(Collection<UserDto> users) {
+        afterCommit(() -> {
+            for (UserDto user : users) {
+                writer.updateDocument(idTerm(user.getId()), toDocument(user));
+            }
+        });
+    }
+
+    /**
+     * Indexes users created in the current transaction, which cannot be in the index yet, without the
+     * delete by id that {@link #index(Collection)} pays for every user.
+     */
+    public void add(Collection<UserDto> users) {
+        afterCommit(() -> writer.addDocuments(users.stream().map(UserSearchIndex::toDocument).toList()));
+    }
+
+    /**
+     * Re-reads the users from the database, for writes that do not load the whole user.
+     */
+    public void reindex(Collection<Long> ids) {
+        afterCommit(() -> {
+            // Straight after the commit, a replica may not have the write yet
+            List<UserDto> users = ReplicaRoutingDataSource.onPrimary(() -> userRepository.findDtoByIdIn(ids));
+            Set<Long> found = users.stream().map(UserDto::getId).collect(Collectors.toSet());
+            for (UserDto user : users) {
+                writer.updateDocument(idTerm(user.getId()), toDocument(user));
+            }
+            for (Long id : ids) {
+                if (!found.contains(id)) {
+                    writer.deleteDocuments(idTerm(id));
+                }
+            }
+        });
+    }
+
+    public void remove(Collection<Long> ids) {
+        afterCommit(() -> writer.deleteDocuments(ids.stream().map(UserSearchIndex::idTerm).toArray(Term[]::new)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        searcherManager.close();
+        // A failed update leaves the index stale, so it must not be reused after a restart
+        writer.setLiveCommitData(Map.of(CLEAN, Boolean.toString(!failed)).entrySet());
+        writer.close();
+        directory.close();
+    }
+
+    private void afterCommit(IndexUpdate update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(update);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(update);
+            }
+        });
+    }
+
+    private void apply(IndexUpdate update) {
+        try {
+            update.run();
+        } catch (IOException | RuntimeException exception) {
+            failed = true;
+            log.error("Could not update the user search index", exception);
+        }
+    }
+
+    private void maybeRefresh() throws IOException {
+        long now = System.nanoTime();
+        if (now - lastRefresh >= maxStalenessNanos) {
+            lastRefresh = now;
+            searcherManager.maybeRefresh();
+        }
+    }
+
+    private List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream("", text)) {
+            CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken() && terms.size() < MAX_QUERY_TERMS) {
+                terms.add(term.toString());
+            }
+            tokens.end();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return terms;
+    }
+
+    /**
+     * An exact match scores above a prefix match, which scores above a match with one or two typos.
+     * Prefixes are indexed as terms of their own, so that a prefix is looked up like a whole word
+     * instead of expanding to every word it starts. Typos are only tolerated after the first letter,
+     * which keeps fuzzy matching cheap.
+     */
+    private static Query termQuery(String term) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        addMatches(query, FIRST_NAME, term, 2f);
+        addMatches(query, LAST_NAME, term, 2f);
+        addMatches(query, ADDRESS, term, 1f);
+        return query.build();
+    }
+
+    private static void addMatches(BooleanQuery.Builder query, String field, String term, float weight) {
+        Term fieldTerm = new Term(field, term);
+        query.add(new BoostQuery(new TermQuery(fieldTerm), 4 * weight), BooleanClause.Occur.SHOULD);
+        Query prefix = term.length() <= MAX_PREFIX_LENGTH
+                ? new ConstantScoreQuery(new TermQuery(new Term(field + PREFIXES, term)))
+                : new PrefixQuery(fieldTerm);
+        query.add(new BoostQuery(prefix, 2 * weight), BooleanClause.Occur.SHOULD);
+        int maxEdits = term.length() < 4 ? 0 : term.length() < 8 ? 1 : 2;
+        if (maxEdits > 0) {
+            query.add(new BoostQuery(new FuzzyQuery(fieldTerm, maxEdits, 1), weight), BooleanClause.Occur.SHOULD);
+        }
+    }
+
+    private static Document toDocument(UserDto user) {
+        Document document = new Document();
+        document.add(new StringField(ID, Long.toString(user.getId()), Field.Store.NO));
+        document.add(new NumericDocValuesField(ID, user.getId()));
+        addText(document, FIRST_NAME, user.getFirstName());
+        addText(document, LAST_NAME, user.getLastName());
+        addText(document, ADDRESS, user.getAddress());
+        return document;
+    }
+
+    private static void addText(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new TextField(field, value, Field.Store.NO));
+            document.add(new TextField(field + PREFIXES, value, Field.Store.NO));
+        }
+    }
+
+    private static long id(IndexSearcher searcher, int doc) throws IOException {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+        NumericDocValues ids = DocValues.getNumeric(leaf.reader(), ID);
+        ids.advanceExact(doc - leaf.docBase);
+        return ids.longValue();
+    }
+
+    private static Term idTerm(long id) {
+        return new Term(ID, Long.toString(id));
+    }
+
+    public record Hits(List<Long> ids, long total) {
+    }
+
+    /**
+     * Lower-cased words and their leading 2 to 15 letters.
+     */
+    private static class PrefixAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            TokenStream prefixes = new EdgeNGramTokenFilter(new LowerCaseFilter(tokenizer),
+                    MIN_PREFIX_LENGTH, MAX_PREFIX_LENGTH, true);
+            return new TokenStreamComponents(tokenizer, prefixes);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexUpdate {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.rest_api.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * {@link ResponseStatusException} for expected client errors such as unknown ids or stale versions.
+ * Their stack trace is never logged, so it is not captured either: filling it in is most of the
+ * cost of throwing.
+ */
+public class StacklessResponseStatusException extends ResponseStatusException {
+
+    private final HttpHeaders headers;
+
+    public StacklessResponseStatusException(HttpStatusCode status, String reason) {
+        this(status, reason, HttpHeaders.EMPTY);
+    }
+
+    public StacklessResponseStatusException(HttpStatusCode status, String reason, HttpHeaders headers) {
+        super(status, reason);
+        this.headers = headers;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.rest_api.service;
+
+/**
+ * Thrown when a user is younger than {@code user.registration.min-age}. Stackless, like
+ * {@link StacklessResponseStatusException}.
+ */
+public class UnderAgeException extends IllegalArgumentException {
+
+    public UnderAgeException(int minAge) {
+        super("User must be at least " + minAge + " years old to register.");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.changes.UserChangeLog;
+import com.example.rest_api.config.CacheConfig;
+import com.example.rest_api.config.UserBulkConfig;
+import com.example.rest_api.dto.UserBulkReportDto;
+import com.example.rest_api.dto.UserBulkRequestDto;
+import com.example.rest_api.dto.UserChangeDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.search.UserSearchIndex;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Deletes or patches the users selected by a {@link UserBulkRequestDto} in ascending id order,
+ * {@code user.bulk.chunk-size} users per set-based statement and transaction. Both operations are
+ * idempotent, so an interrupted run can simply be repeated, or resumed from its last {@code lastId}.
+ */
+@Service
+@Profile("!reactive")
+@Slf4j
+@RequiredArgsConstructor
+public class UserBulkService {
+
+    private final UserRepository userRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final CacheManager cacheManager;
+    private final UserBulkConfig userBulkConfig;
+    private final UserSearchIndex userSearchIndex;
+    private final UserStatsService userStatsService;
+    private final UserChangeLog userChangeLog;
+    private final Optional<ShardedUserRepository> shardedUserRepository;
+
+    public UserBulkReportDto deleteUsers(UserBulkRequestDto request) {
+        return forEachChunk(request, ids -> {
+            userSearchIndex.remove(ids);
+            userStatsService.removeUsers(ids);
+            userChangeLog.recordAll(UserChangeDto.Type.DELETED, ids);
+            return userRepository.deleteAllByIdIn(ids);
+        });
+    }
+
+    public UserBulkReportDto patchUsers(UserBulkRequestDto request) {
+        UserPatchDto patch = request.getPatch();
+        if (patch == null || patch.changedFields().isEmpty()) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Patch must change at least one field");
+        }
+        return forEachChunk(request, ids -> {
+            if (patch.getAddress() != null) {
+                userSearchIndex.reindex(ids);
+            }
+            if (patch.getEmail() != null) {
+                userStatsService.removeUsers(ids);
+            }
+            List<Long> patched = userRepository.patchAll(ids, patch);
+            if (patch.getEmail() != null) {
+                userStatsService.addUsers(ids);
+            }
+            // Users the patch left as they were did not change, so they are not recorded
+            userChangeLog.recordAll(UserChangeDto.Type.UPDATED, patched);
+            return patched.size();
+        });
+    }
+
+    private UserBulkReportDto forEachChunk(UserBulkRequestDto request, ToIntFunction<List<Long>> statement) {
+        UserService.requireUnsharded(shardedUserRepository, "Bulk operations");
+        LongFunction<List<Long>> nextChunk = chunks(request, userBulkConfig.getChunkSize());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+        UserBulkReportDto report = new UserBulkReportDto(0, 0, request.getAfterId());
+
+        Chunk chunk;
+        do {
+            long afterId = report.getLastId() == null ? Long.MIN_VALUE : report.getLastId();
+            try {
+                chunk = transactionTemplate.execute(status -> {
+                    List<Long> ids = nextChunk.apply(afterId);
+                    // Transaction-aware cache: the evictions only happen on commit
+                    ids.forEach(cache::evict);
+                    return new Chunk(ids, ids.isEmpty() ? 0 : statement.applyAsInt(ids));
+                });
+            } catch (RuntimeException exception) {
+                log.warn("Bulk operation failed after {} chunks, resume after id {}", report.getChunks(), report.getLastId());
+                throw exception;
+            }
+            if (!chunk.ids().isEmpty()) {
+                report.setChunks(report.getChunks() + 1);
+                report.setAffected(report.getAffected() + chunk.affected());
+                report.setLastId(chunk.ids().get(chunk.ids().size() - 1));
+            }
+        } while (chunk.ids().size() == userBulkConfig.getChunkSize());
+
+        log.info("Bulk operation affected {} users in {} chunks", report.getAffected(), report.getChunks());
+        return report;
+    }
+
+    /**
+     * The next chunk of selected ids after a given id.
+     */
+    private LongFunction<List<Long>> chunks(UserBulkRequestDto request, int chunkSize) {
+        boolean byIds = request.getIds() != null;
+        boolean byRange = request.getFrom() != null && request.getTo() != null;
+        if (byIds == byRange) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Select users either by ids or by from and to birth dates");
+        }
+        if (byRange) {
+            return afterId -> userRepository.findIdsByBirthDateBetween(request.getFrom(), request.getTo(), afterId,
+                    PageRequest.ofSize(chunkSize));
+        }
+        List<Long> ids = request.getIds().stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .toList();
+        return afterId -> {
+            int start = Collections.binarySearch(ids, afterId);
+            start = start >= 0 ? start + 1 : -start - 1;
+            return ids.subList(start, Math.min(start + chunkSize, ids.size()));
+        };
+    }
+
+    private record Chunk(List<Long> ids, int affected) {
+    }
+}
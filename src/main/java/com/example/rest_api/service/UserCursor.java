@@ -0,0 +1,46 @@
+package com.example.rest_api.service;
+
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position in the {@code (birthDate, id)} or {@code id} ordering of users.
+ * Clients only ever see the encoded form returned as the {@code next} token.
+ */
+public record UserCursor(LocalDate birthDate, long id) {
+
+    private static final char SEPARATOR = ':';
+
+    public static UserCursor start(LocalDate fromDate) {
+        return new UserCursor(fromDate, Long.MIN_VALUE);
+    }
+
+    /**
+     * Where a birth date range search from {@code fromDate} continues: after the {@code next} token,
+     * or at the start when there is none or it lies before the range.
+     */
+    public static UserCursor resume(String next, LocalDate fromDate) {
+        UserCursor cursor = next == null ? start(fromDate) : decode(next);
+        return cursor.birthDate().isBefore(fromDate) ? start(fromDate) : cursor;
+    }
+
+    public String encode() {
+        String raw = birthDate.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new UserCursor(LocalDate.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException exception) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.rest_api.service;
+
+import java.time.LocalDate;
+
+/**
+ * Optional GET /users filters; null fields do not restrict. Last names and email domains match
+ * case-insensitively, and {@code sort} is {@code birthDate} or {@code id}, both ascending.
+ */
+public record UserFilter(LocalDate from, LocalDate to, String lastName, String emailDomain,
+                         Boolean hasPhone, Boolean hasAddress, String sort) {
+}
@@ -0,0 +1,193 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.changes.UserChangeLog;
+import com.example.rest_api.config.UserImportConfig;
+import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.dto.UserChangeDto;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserImportReportDto;
+import com.example.rest_api.dto.UserImportResultDto;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.handler.AppExceptionHandler;
+import com.example.rest_api.handler.dto.InvalidFieldDto;
+import com.example.rest_api.mapper.UserMapper;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.search.UserSearchIndex;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Imports users from a JSON array or newline-delimited JSON body. Records are read one at a
+ * time, validated like {@code POST /users}, and inserted in JDBC batches of
+ * {@code user.import.batch-size}, each batch in its own transaction. The records of a batch that
+ * conflicts with existing data are retried one at a time, so that only the conflicting ones fail.
+ */
+@Service
+@Profile("!reactive")
+@Slf4j
+@RequiredArgsConstructor
+public class UserImportService {
+
+    private final UserRepository userRepository;
+    private final UserMapper mapper;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final UserRegistrationConfig userRegistrationConfig;
+    private final UserImportConfig userImportConfig;
+    private final UserSearchIndex userSearchIndex;
+    private final UserStatsService userStatsService;
+    private final UserChangeLog userChangeLog;
+    private final Optional<ShardedUserRepository> shardedUserRepository;
+
+    public UserImportReportDto importUsers(InputStream body) throws IOException {
+        UserService.requireUnsharded(shardedUserRepository, "Imports");
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int batchSize = userImportConfig.getBatchSize();
+        int minAge = userRegistrationConfig.getMinAge();
+
+        List<UserImportResultDto> results = new ArrayList<>();
+        List<UserEntity> batch = new ArrayList<>(batchSize);
+        List<UserImportResultDto> batchResults = new ArrayList<>(batchSize);
+        int index = 0;
+
+        try (MappingIterator<UserDto> users = objectMapper.readerFor(UserDto.class).readValues(body)) {
+            while (true) {
+                UserDto userDto;
+                try {
+                    if (!users.hasNextValue()) {
+                        break;
+                    }
+                    userDto = users.nextValue();
+                } catch (JsonMappingException exception) {
+                    results.add(failure(index++, null, exception.getOriginalMessage()));
+                    continue;
+                } catch (JsonProcessingException exception) {
+                    results.add(failure(index++, null, "Malformed input: " + exception.getOriginalMessage()));
+                    break;
+                }
+
+                List<InvalidFieldDto> errors = validate(userDto, minAge);
+                if (!errors.isEmpty()) {
+                    results.add(new UserImportResultDto(index++, null, errors));
+                    continue;
+                }
+                UserEntity userEntity = mapper.toEntity(userDto);
+                userEntity.setId(null);
+                UserImportResultDto result = new UserImportResultDto(index++, null, null);
+                results.add(result);
+                batch.add(userEntity);
+                batchResults.add(result);
+                if (batch.size() == batchSize) {
+                    persistBatch(transactionTemplate, batch, batchResults);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            persistBatch(transactionTemplate, batch, batchResults);
+        }
+
+        int failed = (int) results.stream().filter(result -> result.getErrors() != null).count();
+        log.info("Imported {} of {} users", results.size() - failed, results.size());
+        return new UserImportReportDto(results.size(), results.size() - failed, failed, results);
+    }
+
+    private List<InvalidFieldDto> validate(UserDto userDto, int minAge) {
+        List<InvalidFieldDto> errors = validator.validate(userDto).stream()
+                .map(violation -> new InvalidFieldDto()
+                        .setField(violation.getPropertyPath().toString())
+                        .setMessage(violation.getMessage()))
+                .toList();
+        if (errors.isEmpty() && !UserService.isUserOldEnough(userDto.getBirthDate(), minAge)) {
+            return List.of(new InvalidFieldDto()
+                    .setField("birthDate")
+                    .setMessage("User must be at least " + minAge + " years old to register."));
+        }
+        return errors;
+    }
+
+    private void persistBatch(TransactionTemplate transactionTemplate,
+                              List<UserEntity> batch,
+                              List<UserImportResultDto> batchResults) {
+        try {
+            persist(transactionTemplate, batch);
+            for (int i = 0; i < batch.size(); i++) {
+                batchResults.get(i).setId(batch.get(i).getId());
+            }
+        } catch (DataIntegrityViolationException exception) {
+            log.warn("Batch insert of {} records conflicted, retrying them one at a time", batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                persistAlone(transactionTemplate, batch.get(i), batchResults.get(i));
+            }
+        } catch (DataAccessException | TransactionException exception) {
+            String message = "Batch insert failed: " + NestedExceptionUtils.getMostSpecificCause(exception).getMessage();
+            log.warn("{} ({} records)", message, batch.size());
+            batchResults.forEach(result -> result.setErrors(List.of(new InvalidFieldDto().setMessage(message))));
+        }
+        batch.clear();
+        batchResults.clear();
+    }
+
+    /**
+     * Inserts a record of a batch that conflicted in its own transaction, so that only the records that
+     * conflict themselves fail, each with its own cause.
+     */
+    private void persistAlone(TransactionTemplate transactionTemplate, UserEntity userEntity, UserImportResultDto result) {
+        // The rolled back batch left its generated id and version behind
+        userEntity.setId(null);
+        userEntity.setVersion(null);
+        try {
+            persist(transactionTemplate, List.of(userEntity));
+            result.setId(userEntity.getId());
+        } catch (DataAccessException | TransactionException exception) {
+            result.setErrors(List.of(insertError(exception)));
+        }
+    }
+
+    /**
+     * The error of a record that failed to insert on its own, naming the field a conflict is on.
+     */
+    public static InvalidFieldDto insertError(Throwable exception) {
+        if (exception instanceof DataIntegrityViolationException conflict) {
+            return new InvalidFieldDto()
+                    .setField(AppExceptionHandler.isEmailConflict(conflict) ? "email" : null)
+                    .setMessage(AppExceptionHandler.conflictMessage(conflict));
+        }
+        return new InvalidFieldDto().setMessage("Insert failed: " + NestedExceptionUtils.getMostSpecificCause(exception).getMessage());
+    }
+
+    private void persist(TransactionTemplate transactionTemplate, List<UserEntity> users) {
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.saveAll(users);
+            userRepository.flush();
+            List<Long> ids = users.stream().map(UserEntity::getId).toList();
+            userStatsService.addUsers(ids);
+            userChangeLog.recordAll(UserChangeDto.Type.CREATED, ids);
+            userSearchIndex.add(users.stream().map(mapper::toDto).toList());
+        });
+    }
+
+    private static UserImportResultDto failure(int index, String field, String message) {
+        return new UserImportResultDto(index, null, List.of(new InvalidFieldDto().setField(field).setMessage(message)));
+    }
+}
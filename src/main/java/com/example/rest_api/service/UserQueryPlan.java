@@ -0,0 +1,37 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.entity.UserEntity;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * How {@link UserQueryPlanner} answers a filter: the index that drives the scan, the most rows a page
+ * reads from it, and the filter as one Criteria predicate with the keyset order to page it by.
+ */
+public record UserQueryPlan(String index, int estimatedRows, String sortKey, Specification<UserEntity> where) {
+
+    public static final String BIRTH_DATE = "birthDate";
+    public static final String ID = "id";
+
+    public Sort sort() {
+        return BIRTH_DATE.equals(sortKey) ? Sort.by(BIRTH_DATE, ID) : Sort.by(ID);
+    }
+
+    /**
+     * Restricts {@link #where()} to the users after the cursor in this plan's order. The birth date order
+     * compares in the same shape as {@code findPageByBirthDateAfter}, which H2 answers with an index range.
+     */
+    public Specification<UserEntity> whereAfter(UserCursor cursor) {
+        Specification<UserEntity> after = BIRTH_DATE.equals(sortKey)
+                ? (user, query, builder) -> builder.and(
+                        builder.greaterThanOrEqualTo(user.get(BIRTH_DATE), cursor.birthDate()),
+                        builder.or(builder.greaterThan(user.get(BIRTH_DATE), cursor.birthDate()),
+                                builder.greaterThan(user.get(ID), cursor.id())))
+                : (user, query, builder) -> builder.greaterThan(user.get(ID), cursor.id());
+        return where.and(after);
+    }
+
+    public String describe() {
+        return "index=" + index + "; estimated-rows=" + estimatedRows;
+    }
+}
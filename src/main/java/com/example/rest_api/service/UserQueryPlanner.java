@@ -0,0 +1,157 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.config.UserQueryConfig;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.repository.UserFilterRepository;
+import com.example.rest_api.repository.UserRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Picks the index that answers a {@link UserFilter} page most cheaply, so that every accepted filter reads
+ * a bounded number of rows. A page costs only its own rows when the index delivers the requested order
+ * and no other filter can skip rows. Otherwise every row the index matches may be read, which is
+ * counted up to {@code user.query.max-scan-rows}; filters exceeding that on every index are rejected.
+ * H2 cannot scan indexes backwards, so only ascending orders are offered. The chosen index is enforced with
+ * {@code USE INDEX}, so the plan reported is the one H2 runs.
+ */
+@Component
+@Profile("!reactive")
+@AllArgsConstructor
+public class UserQueryPlanner {
+
+    public static final String PRIMARY_KEY = UserFilterRepository.PRIMARY_KEY;
+    public static final String BIRTH_DATE_INDEX = "idx_users_birth_date_id";
+    public static final String LAST_NAME_INDEX = "idx_users_last_name_id";
+    public static final String EMAIL_DOMAIN_INDEX = "idx_users_email_domain_id";
+
+    private final UserRepository userRepository;
+    private final UserQueryConfig userQueryConfig;
+
+    /**
+     * An index and the filter's predicate on it; the index yields rows in {@code sortKey} order.
+     */
+    private record Access(String index, Specification<UserEntity> predicate, String sortKey) {
+    }
+
+    public UserQueryPlan plan(UserFilter filter, int pageSize) {
+        List<Access> accesses = new ArrayList<>();
+        if (filter.from() != null || filter.to() != null) {
+            accesses.add(new Access(BIRTH_DATE_INDEX, birthDateBetween(filter.from(), filter.to()), UserQueryPlan.BIRTH_DATE));
+        }
+        if (hasText(filter.lastName())) {
+            accesses.add(new Access(LAST_NAME_INDEX, equalsIgnoringCase("lastNameNormalized", filter.lastName()), UserQueryPlan.ID));
+        }
+        if (hasText(filter.emailDomain())) {
+            String domain = filter.emailDomain().startsWith("@") ? filter.emailDomain().substring(1) : filter.emailDomain();
+            accesses.add(new Access(EMAIL_DOMAIN_INDEX, equalsIgnoringCase("emailDomain", domain), UserQueryPlan.ID));
+        }
+        List<Specification<UserEntity>> predicates = new ArrayList<>(accesses.stream().map(Access::predicate).toList());
+        if (filter.hasPhone() != null) {
+            predicates.add(present("phoneNumber", filter.hasPhone()));
+        }
+        if (filter.hasAddress() != null) {
+            predicates.add(present("address", filter.hasAddress()));
+        }
+        String sortKey = sortKey(filter.sort(), accesses.isEmpty() ? UserQueryPlan.ID : accesses.get(0).sortKey());
+        // With no index narrowing the scan, H2 reads whichever index yields the order
+        if (accesses.isEmpty()) {
+            accesses.add(sortKey.equals(UserQueryPlan.BIRTH_DATE)
+                    ? new Access(BIRTH_DATE_INDEX, null, UserQueryPlan.BIRTH_DATE)
+                    : new Access(PRIMARY_KEY, null, UserQueryPlan.ID));
+        }
+        Specification<UserEntity> where = Specification.allOf(predicates);
+
+        int maxScanRows = userQueryConfig.getMaxScanRows();
+        Access cheapest = null;
+        int cheapestRows = Integer.MAX_VALUE;
+        for (Access access : accesses) {
+            int ownPredicates = access.predicate() == null ? 0 : 1;
+            int rows;
+            if (access.sortKey().equals(sortKey) && predicates.size() == ownPredicates) {
+                rows = pageSize;
+            } else {
+                rows = userRepository.countUpTo(Specification.where(access.predicate()), access.index(), maxScanRows + 1);
+                if (rows > maxScanRows) {
+                    continue;
+                }
+            }
+            if (rows < cheapestRows) {
+                cheapest = access;
+                cheapestRows = rows;
+            }
+        }
+        if (cheapest == null) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Filters match more than " +
+                    maxScanRows + " users on every index; narrow them with from/to, lastName or emailDomain");
+        }
+        return new UserQueryPlan(cheapest.index(), cheapestRows, sortKey, where);
+    }
+
+    /**
+     * Rejects an unpaged birth date range matching more than {@code user.query.max-scan-rows} users, which
+     * would all be read and returned at once; such a range has to be paged or streamed.
+     */
+    public void requireBoundedRange(LocalDate from, LocalDate to) {
+        requireBoundedRange(limit -> userRepository.countUpTo(birthDateBetween(from, to), BIRTH_DATE_INDEX, limit));
+    }
+
+    /**
+     * {@link #requireBoundedRange(LocalDate, LocalDate)} for a range counted elsewhere, by a function
+     * counting its users up to the given limit.
+     */
+    public void requireBoundedRange(IntUnaryOperator countUpTo) {
+        int maxScanRows = userQueryConfig.getMaxScanRows();
+        if (countUpTo.applyAsInt(maxScanRows + 1) > maxScanRows) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Birth date range matches more than " +
+                    maxScanRows + " users; page through it with limit, or stream it as " + MediaType.APPLICATION_NDJSON_VALUE);
+        }
+    }
+
+    private static String sortKey(String sort, String defaultSortKey) {
+        if (sort == null) {
+            return defaultSortKey;
+        }
+        if (!sort.equals(UserQueryPlan.BIRTH_DATE) && !sort.equals(UserQueryPlan.ID)) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Sort must be " + UserQueryPlan.BIRTH_DATE + " or " + UserQueryPlan.ID);
+        }
+        return sort;
+    }
+
+    private static Specification<UserEntity> birthDateBetween(LocalDate from, LocalDate to) {
+        return (user, query, builder) -> {
+            if (to == null) {
+                return builder.greaterThanOrEqualTo(user.get("birthDate"), from);
+            }
+            return from == null
+                    ? builder.lessThanOrEqualTo(user.get("birthDate"), to)
+                    : builder.between(user.get("birthDate"), from, to);
+        };
+    }
+
+    private static Specification<UserEntity> equalsIgnoringCase(String normalizedField, String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        return (user, query, builder) -> builder.equal(user.get(normalizedField), normalized);
+    }
+
+    private static Specification<UserEntity> present(String field, boolean present) {
+        return (user, query, builder) -> present
+                ? builder.and(builder.isNotNull(user.get(field)), builder.notEqual(user.get(field), ""))
+                : builder.or(builder.isNull(user.get(field)), builder.equal(user.get(field), ""));
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+}
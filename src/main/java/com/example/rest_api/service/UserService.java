@@ -1,51 +1,127 @@
 package com.example.rest_api.service;
 
+import com.example.rest_api.changes.UserChangeLog;
+import com.example.rest_api.config.CacheConfig;
 import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.dto.UserChangeDto;
 import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserFilterPageDto;
+import com.example.rest_api.dto.UserPageDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserSearchPageDto;
 import com.example.rest_api.dto.UserUpdateDto;
 import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.mapper.UserMapper;
+import com.example.rest_api.monitoring.UserMetrics;
 import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.search.UserSearchIndex;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * With {@code user.shards.enabled}, users are created, read, updated, deleted and range searched on
+ * {@link ShardedUserRepository} instead of the primary database. Filters, statistics, bulk operations,
+ * import and export only know the primary database, so they are rejected instead. Change records
+ * and the search index follow the shards, but a change record is committed after the shard write
+ * rather than with it.
+ */
 @Service
+@Profile("!reactive")
+@Timed(value = "user.service", histogram = true)
 @Transactional
 @Slf4j
 @AllArgsConstructor
 public class UserService {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     private final UserRepository userRepository;
-    private final ModelMapper mapper;
+    private final UserMapper mapper;
     private UserRegistrationConfig userRegistrationConfig;
+    private final UserMetrics userMetrics;
+    private final UserSearchIndex userSearchIndex;
+    private final UserQueryPlanner userQueryPlanner;
+    private final UserStatsService userStatsService;
+    private final UserChangeLog userChangeLog;
+    private final Optional<ShardedUserRepository> shardedUserRepository;
 
+    @CachePut(cacheNames = CacheConfig.USERS_CACHE, key = "#result.id")
     public UserDto createUser(UserDto userDto) {
         int minAge = userRegistrationConfig.getMinAge();
         if (!isUserOldEnough(userDto.getBirthDate(), minAge)) {
-            throw new IllegalArgumentException("User must be at least " + minAge + " years old to register.");
+            throw new UnderAgeException(minAge);
+        }
+        UserDto created;
+        if (shardedUserRepository.isPresent()) {
+            created = shardedUserRepository.get().insert(userDto);
+        } else {
+            UserEntity userEntity = toEntity(userDto);
+            userEntity.setId(null);
+            created = toDto(userRepository.save(userEntity));
+            userStatsService.addUsers(List.of(created.getId()));
         }
-        UserEntity userEntity = userRepository.save(mapper.map(userDto, UserEntity.class));
-        return toDto(userEntity);
+        userChangeLog.record(UserChangeDto.Type.CREATED, created.getId(), created.getVersion());
+        userSearchIndex.index(created);
+        return created;
     }
 
-    private boolean isUserOldEnough(LocalDate birthDate, int minAge) {
+    public static boolean isUserOldEnough(LocalDate birthDate, int minAge) {
         LocalDate minAgeDate = LocalDate.now().minusYears(minAge);
         return birthDate.isBefore(minAgeDate);
     }
 
+    @CachePut(cacheNames = CacheConfig.USERS_CACHE, key = "#userId")
     public UserDto updateAllFields(Long userId, UserDto userDto) {
         int minAge = userRegistrationConfig.getMinAge();
         if (!isUserOldEnough(userDto.getBirthDate(), minAge)) {
-            throw new IllegalArgumentException("User must be at least " + minAge + " years old to register.");
+            throw new UnderAgeException(minAge);
+        }
+        if (shardedUserRepository.isPresent()) {
+            UserDto updated = shardedUserRepository.get().update(userId, userDto.getVersion(), current -> {
+                        current.setEmail(userDto.getEmail());
+                        current.setFirstName(userDto.getFirstName());
+                        current.setLastName(userDto.getLastName());
+                        current.setBirthDate(userDto.getBirthDate());
+                        current.setAddress(userDto.getAddress());
+                        current.setPhoneNumber(userDto.getPhoneNumber());
+                        return current;
+                    })
+                    .orElseThrow(() -> missingOrModified(userId, userDto.getVersion()));
+            userChangeLog.record(UserChangeDto.Type.UPDATED, userId, updated.getVersion());
+            userSearchIndex.index(updated);
+            return updated;
         }
         UserEntity userEntity = getUserEntity(userId);
+        checkVersion(userEntity, userDto.getVersion());
+        boolean counted = !userDto.getBirthDate().equals(userEntity.getBirthDate())
+                || !userDto.getEmail().equalsIgnoreCase(userEntity.getEmail());
+        if (counted) {
+            userStatsService.removeUsers(List.of(userId));
+        }
         userEntity.setEmail(userDto.getEmail());
         userEntity.setFirstName(userDto.getFirstName());
         userEntity.setLastName(userDto.getLastName());
@@ -53,51 +129,291 @@ public class UserService {
         userEntity.setAddress(userDto.getAddress());
         userEntity.setPhoneNumber(userDto.getPhoneNumber());
 
-        UserEntity updatedUserEntity = userRepository.save(userEntity);
+        UserDto updated = toDto(userRepository.saveAndFlush(userEntity));
+        if (counted) {
+            userStatsService.addUsers(List.of(userId));
+        }
+        userChangeLog.record(UserChangeDto.Type.UPDATED, userId, updated.getVersion());
+        userSearchIndex.index(updated);
+        return updated;
+    }
 
-        return toDto(updatedUserEntity);
+    /**
+     * Applies a merge patch as one conditional UPDATE. Only when it matches no row does a second query
+     * tell a missing user from a stale If-Match version.
+     */
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#userId")
+    public UserUpdateDto updateUser(Long userId, UserPatchDto userPatchDto) {
+        if (shardedUserRepository.isPresent()) {
+            return updateShardedUser(userId, userPatchDto);
+        }
+        if (userPatchDto.changedFields().isEmpty()) {
+            UserEntity userEntity = getUserEntity(userId);
+            checkVersion(userEntity, userPatchDto.getVersion());
+            return toUpdateDto(userEntity);
+        }
+        if (userPatchDto.getEmail() != null) {
+            userStatsService.removeUsers(List.of(userId));
+        }
+        UserUpdateDto updated = userRepository.patch(userId, userPatchDto)
+                .orElseThrow(() -> userPatchDto.getVersion() != null && userRepository.existsById(userId)
+                        ? modified(userId)
+                        : notFound(userId));
+        if (userPatchDto.getEmail() != null) {
+            userStatsService.addUsers(List.of(userId));
+        }
+        userChangeLog.record(UserChangeDto.Type.UPDATED, userId, updated.getVersion());
+        if (userPatchDto.getAddress() != null) {
+            userSearchIndex.reindex(List.of(userId));
+        }
+        return updated;
     }
 
-    public UserUpdateDto updateUser(Long userId, UserUpdateDto userUpdateDto) {
-        UserEntity userEntity = getUserEntity(userId);
-        if (userUpdateDto.getAddress() != null) {
-            userEntity.setAddress(userUpdateDto.getAddress());
+    /**
+     * Applies a merge patch to the user's current values on its shard, again on the newer values when a
+     * concurrent update without If-Match gets in between.
+     */
+    private UserUpdateDto updateShardedUser(Long userId, UserPatchDto userPatchDto) {
+        ShardedUserRepository shards = shardedUserRepository.get();
+        if (userPatchDto.changedFields().isEmpty()) {
+            UserDto user = shards.findById(userId).orElseThrow(() -> notFound(userId));
+            if (userPatchDto.getVersion() != null && !userPatchDto.getVersion().equals(user.getVersion())) {
+                throw modified(userId);
+            }
+            return toUpdateDto(user);
         }
-        if (userUpdateDto.getPhoneNumber() != null) {
-            userEntity.setPhoneNumber(userUpdateDto.getPhoneNumber());
+        UserDto updated = shards.update(userId, userPatchDto.getVersion(), current -> {
+                    if (userPatchDto.getEmail() != null) {
+                        current.setEmail(userPatchDto.getEmail().orElse(null));
+                    }
+                    if (userPatchDto.getAddress() != null) {
+                        current.setAddress(userPatchDto.getAddress().orElse(null));
+                    }
+                    if (userPatchDto.getPhoneNumber() != null) {
+                        current.setPhoneNumber(userPatchDto.getPhoneNumber().orElse(null));
+                    }
+                    return current;
+                })
+                .orElseThrow(() -> missingOrModified(userId, userPatchDto.getVersion()));
+        userChangeLog.record(UserChangeDto.Type.UPDATED, userId, updated.getVersion());
+        userSearchIndex.index(updated);
+        return toUpdateDto(updated);
+    }
+
+    /**
+     * Why a sharded update with this If-Match version matched no user.
+     */
+    private StacklessResponseStatusException missingOrModified(Long userId, Long expectedVersion) {
+        return expectedVersion != null && shardedUserRepository.get().findById(userId).isPresent()
+                ? modified(userId)
+                : notFound(userId);
+    }
+
+    @Cacheable(cacheNames = CacheConfig.USERS_CACHE, key = "#userId", sync = true)
+    @Transactional(readOnly = true)
+    public UserDto getUser(Long userId) {
+        if (shardedUserRepository.isPresent()) {
+            return shardedUserRepository.get().findById(userId).orElseThrow(() -> notFound(userId));
         }
-        userEntity.setEmail(userUpdateDto.getEmail());
-        UserEntity updatedUserEntity = userRepository.save(userEntity);
-        return toUpdateDto(updatedUserEntity);
+        return toDto(getUserEntity(userId));
+    }
+
+    @Transactional(readOnly = true)
+    public UserDto getUserByEmail(String email) {
+        return shardedUserRepository.map(shards -> shards.findByEmail(email))
+                .orElseGet(() -> userRepository.findDtoByEmail(email))
+                .orElseThrow(() -> new StacklessResponseStatusException(HttpStatus.NOT_FOUND, "User not found with the given email"));
     }
 
     public UserEntity getUserEntity(Long userId) {
         return userRepository.findById(userId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                        "User not found with id: " + userId));
+                .orElseThrow(() -> notFound(userId));
+    }
+
+    /**
+     * Rejects the update when the caller's If-Match version is stale. A concurrent update that
+     * commits after this check is still caught by the {@code @Version} column on flush.
+     */
+    private static void checkVersion(UserEntity userEntity, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(userEntity.getVersion())) {
+            throw modified(userEntity.getId());
+        }
     }
 
+    private static StacklessResponseStatusException notFound(Long userId) {
+        return new StacklessResponseStatusException(HttpStatus.NOT_FOUND, "User not found with id: " + userId);
+    }
+
+    private static StacklessResponseStatusException modified(Long userId) {
+        return new StacklessResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                "User with id " + userId + " has been modified");
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#userId")
     public void deleteUser(Long userId) {
+        if (shardedUserRepository.isPresent()) {
+            UserDto deleted = shardedUserRepository.get().deleteById(userId).orElseThrow(() -> notFound(userId));
+            userChangeLog.record(UserChangeDto.Type.DELETED, userId, deleted.getVersion());
+            userSearchIndex.remove(List.of(userId));
+            log.info("User deleted successfully");
+            return;
+        }
         UserEntity userEntity = getUserEntity(userId);
+        userStatsService.removeUsers(List.of(userId));
+        userChangeLog.record(UserChangeDto.Type.DELETED, userId, userEntity.getVersion());
         userRepository.delete(userEntity);
+        userSearchIndex.remove(List.of(userId));
         log.info("User deleted successfully");
     }
 
 
+    @Transactional(readOnly = true)
     public List<UserDto> searchUsersByBirthDateRange(LocalDate fromDate, LocalDate toDate) {
-        List<UserEntity> users = userRepository.findByBirthDateBetween(fromDate, toDate);
-        return users.stream().map(this::toDto).toList();
+        List<UserDto> users = shardedUserRepository.map(shards -> shards.findByBirthDateBetween(fromDate, toDate))
+                .orElseGet(() -> userRepository.findDtoByBirthDateBetween(fromDate, toDate));
+        userMetrics.recordRangeSearch(users.size());
+        return users;
+    }
+
+    /**
+     * Rejects a range too wide to be returned unpaged, before anything reads all of it.
+     */
+    @Transactional(readOnly = true)
+    public void requireBoundedBirthDateRange(LocalDate fromDate, LocalDate toDate) {
+        shardedUserRepository.ifPresentOrElse(
+                shards -> userQueryPlanner.requireBoundedRange(limit -> shards.countByBirthDateBetweenUpTo(fromDate, toDate, limit)),
+                () -> userQueryPlanner.requireBoundedRange(fromDate, toDate));
+    }
+
+    /**
+     * Fingerprint of the users in the range, changing whenever one is added, removed or updated.
+     */
+    @Transactional(readOnly = true)
+    public String getBirthDateRangeVersion(LocalDate fromDate, LocalDate toDate) {
+        return shardedUserRepository.map(shards -> shards.findVersionTagByBirthDateBetween(fromDate, toDate))
+                .orElseGet(() -> userRepository.findVersionTagByBirthDateBetween(fromDate, toDate));
+    }
+
+    @Transactional(readOnly = true)
+    public UserPageDto searchUsersByBirthDateRange(LocalDate fromDate, LocalDate toDate, Integer limit, String next) {
+        int pageSize = pageSize(limit);
+        UserCursor cursor = UserCursor.resume(next, fromDate);
+        List<UserDto> users = shardedUserRepository
+                .map(shards -> shards.findPageByBirthDateAfter(cursor.birthDate(), cursor.id(), toDate, pageSize))
+                .orElseGet(() -> userRepository.findPageByBirthDateAfter(
+                        cursor.birthDate(), cursor.id(), toDate, PageRequest.ofSize(pageSize)));
+        userMetrics.recordRangeSearch(users.size());
+
+        return new UserPageDto(users, nextToken(users, pageSize));
+    }
+
+    /**
+     * One keyset page of the users matching the filter, read through the index {@link UserQueryPlanner}
+     * picks. Filters that no index can answer within the planner's scan limit are rejected.
+     */
+    @Transactional(readOnly = true)
+    public UserFilterPageDto filterUsers(UserFilter filter, Integer limit, String next) {
+        requireUnsharded(shardedUserRepository, "Filters");
+        int pageSize = pageSize(limit);
+        UserQueryPlan plan = userQueryPlanner.plan(filter, pageSize);
+        Specification<UserEntity> where = next == null ? plan.where() : plan.whereAfter(UserCursor.decode(next));
+        List<UserDto> users = userRepository.findDtoPage(where, plan.index(), plan.sort(), pageSize);
+        userMetrics.recordRangeSearch(users.size());
+        return new UserFilterPageDto(users, nextToken(users, pageSize), plan.describe());
+    }
+
+    /**
+     * Rejects an operation that only works on the primary database while users are kept on shards;
+     * shared with the other services.
+     */
+    public static void requireUnsharded(Optional<ShardedUserRepository> shardedUserRepository, String operation) {
+        if (shardedUserRepository.isPresent()) {
+            throw new StacklessResponseStatusException(HttpStatus.NOT_IMPLEMENTED,
+                    operation + " are not available while users are sharded");
+        }
+    }
+
+    /**
+     * The requested page size, or the default; shared with the reactive service.
+     */
+    public static int pageSize(Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
+    }
+
+    /**
+     * The token continuing after a full page, or null after the last one.
+     */
+    public static String nextToken(List<UserDto> users, int pageSize) {
+        if (users.size() < pageSize) {
+            return null;
+        }
+        UserDto last = users.get(users.size() - 1);
+        return new UserCursor(last.getBirthDate(), last.getId()).encode();
+    }
+
+    /**
+     * One page of the users matching a name or address search, in the index's ranking order.
+     */
+    @Transactional(readOnly = true)
+    public UserSearchPageDto searchUsers(String query, int page, int size) {
+        if (query == null || query.isBlank()) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Search query must not be blank");
+        }
+        if (size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Size must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        int maxResults = userSearchIndex.getMaxResults();
+        // Compared by division, since (page + 1) * size overflows for large pages
+        if (page < 0 || page >= maxResults / size) {
+            throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Only the first " + maxResults + " search results can be paged through");
+        }
+        UserSearchIndex.Hits hits = userSearchIndex.search(query, page * size, size);
+        if (hits.ids().isEmpty()) {
+            return new UserSearchPageDto(List.of(), hits.total());
+        }
+        Map<Long, UserDto> users = shardedUserRepository.map(shards -> shards.findByIds(hits.ids()))
+                .orElseGet(() -> userRepository.findDtoByIdIn(hits.ids()))
+                .stream()
+                .collect(Collectors.toMap(UserDto::getId, Function.identity()));
+        // The index may briefly still hold users that have just been deleted
+        List<UserDto> ranked = hits.ids().stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new UserSearchPageDto(ranked, hits.total());
+    }
+
+    @Transactional(readOnly = true)
+    public void streamUsersByBirthDateRange(LocalDate fromDate, LocalDate toDate, Consumer<UserDto> consumer) {
+        if (shardedUserRepository.isPresent()) {
+            shardedUserRepository.get().streamByBirthDateBetween(fromDate, toDate, consumer);
+            return;
+        }
+        try (Stream<UserDto> users = userRepository.streamByBirthDateBetween(fromDate, toDate)) {
+            users.forEach(consumer);
+        }
     }
 
     public UserEntity toEntity(UserDto userDto) {
-        return mapper.map(userDto, UserEntity.class);
+        return userMetrics.timeMapping("toEntity", () -> mapper.toEntity(userDto));
     }
 
     public UserDto toDto(UserEntity userEntity) {
-        return mapper.map(userEntity, UserDto.class);
+        return userMetrics.timeMapping("toDto", () -> mapper.toDto(userEntity));
     }
 
     public UserUpdateDto toUpdateDto(UserEntity userEntity) {
-        return mapper.map(userEntity, UserUpdateDto.class);
+        return userMetrics.timeMapping("toUpdateDto", () -> mapper.toUpdateDto(userEntity));
+    }
+
+    public UserUpdateDto toUpdateDto(UserDto userDto) {
+        return userMetrics.timeMapping("toUpdateDto", () -> mapper.toUpdateDto(userDto));
     }
 }
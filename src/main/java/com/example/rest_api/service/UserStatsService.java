@@ -0,0 +1,201 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.config.UserStatsConfig;
+import com.example.rest_api.dto.UserStatsBucketDto;
+import com.example.rest_api.dto.UserStatsDto;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.repository.UserStatsDelta;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * User counts grouped by age bracket, birth year or month, or email domain, computed in the database.
+ * With {@code user.stats.summary-enabled} they are read from counts per birth date and per email domain,
+ * so a request reads one row per bucket source rather than one per user. A user write locks the users it
+ * changes, collects how their buckets change, and adds that to the counts once it has committed.
+ * <p>
+ * At startup the summary is rebuilt from the users table, unless it still counts as many users as the
+ * table holds. Writes outside this application, such as the reactive stack's, are only counted then.
+ */
+@Service
+@Profile("!reactive")
+@Slf4j
+@RequiredArgsConstructor
+public class UserStatsService {
+
+    public static final String AGE_BRACKET = "ageBracket";
+    public static final String BIRTH_YEAR = "birthYear";
+    public static final String BIRTH_MONTH = "birthMonth";
+    public static final String EMAIL_DOMAIN = "emailDomain";
+    public static final int DEFAULT_DOMAIN_LIMIT = 100;
+    public static final int MAX_DOMAIN_LIMIT = 1000;
+
+    /**
+     * Lower ages of the brackets above the minimum registration age.
+     */
+    private static final int[] BRACKET_AGES = {25, 35, 45, 55, 65};
+
+    private final UserRepository userRepository;
+    private final UserStatsConfig userStatsConfig;
+    private final UserRegistrationConfig userRegistrationConfig;
+    private final PlatformTransactionManager transactionManager;
+    private final Optional<ShardedUserRepository> shardedUserRepository;
+
+    @PostConstruct
+    public void rebuildSummaryIfStale() {
+        if (!userStatsConfig.isSummaryEnabled()) {
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            long users = userRepository.countUsers(false);
+            if (userRepository.countUsers(true) == users) {
+                log.info("Reusing user statistics summary of {} users", users);
+            } else {
+                userRepository.rebuildStatsSummary();
+                log.info("User statistics summary rebuilt");
+            }
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public UserStatsDto getStats(String groupBy, Integer limit) {
+        UserService.requireUnsharded(shardedUserRepository, "Statistics");
+        boolean fromSummary = userStatsConfig.isSummaryEnabled();
+        List<UserStatsBucketDto> buckets = switch (groupBy) {
+            case AGE_BRACKET -> countByAgeBracket(fromSummary);
+            case BIRTH_YEAR -> userRepository.countByBirthYear(fromSummary);
+            case BIRTH_MONTH -> userRepository.countByBirthMonth(fromSummary);
+            case EMAIL_DOMAIN -> {
+                int domains = limit == null ? DEFAULT_DOMAIN_LIMIT : limit;
+                if (domains < 1 || domains > MAX_DOMAIN_LIMIT) {
+                    throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Limit must be between 1 and " + MAX_DOMAIN_LIMIT);
+                }
+                yield userRepository.countByEmailDomain(domains, fromSummary);
+            }
+            default -> throw new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Group by must be one of " +
+                    String.join(", ", AGE_BRACKET, BIRTH_YEAR, BIRTH_MONTH, EMAIL_DOMAIN));
+        };
+        return new UserStatsDto(groupBy, userRepository.countUsers(fromSummary), buckets);
+    }
+
+    /**
+     * Adds the stored users with the given ids to the summary; called after they are inserted or changed.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addUsers(Collection<Long> userIds) {
+        if (userStatsConfig.isSummaryEnabled() && !userIds.isEmpty()) {
+            afterCommit(delta -> userRepository.addToStatsDelta(delta, userIds, 1));
+        }
+    }
+
+    /**
+     * Subtracts the stored users with the given ids from the summary; called before they are deleted or
+     * changed. Their rows stay locked until the transaction ends, so no concurrent write changes what was
+     * subtracted.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeUsers(Collection<Long> userIds) {
+        if (userStatsConfig.isSummaryEnabled() && !userIds.isEmpty()) {
+            afterCommit(delta -> userRepository.addToStatsDelta(delta, userIds, -1));
+        }
+    }
+
+    /**
+     * Collects the change into the delta of the current transaction, which is applied once it commits.
+     */
+    private void afterCommit(Consumer<UserStatsDelta> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            UserStatsDelta delta = new UserStatsDelta();
+            change.accept(delta);
+            apply(delta);
+            return;
+        }
+        SummaryUpdate update = TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(SummaryUpdate.class::isInstance)
+                .map(SummaryUpdate.class::cast)
+                .findFirst()
+                .orElseGet(() -> {
+                    SummaryUpdate created = new SummaryUpdate();
+                    TransactionSynchronizationManager.registerSynchronization(created);
+                    return created;
+                });
+        change.accept(update.delta);
+    }
+
+    private void apply(UserStatsDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transactionTemplate.executeWithoutResult(status -> userRepository.applyStatsDelta(delta));
+        } catch (RuntimeException exception) {
+            log.error("Could not update the user statistics summary", exception);
+        }
+    }
+
+    private class SummaryUpdate implements TransactionSynchronization {
+
+        private final UserStatsDelta delta = new UserStatsDelta();
+
+        @Override
+        public void afterCommit() {
+            apply(delta);
+        }
+    }
+
+    /**
+     * Brackets from the minimum registration age up in decades, youngest first, plus one for the users
+     * younger than that, who registered before the minimum age was raised. Empty brackets count zero.
+     */
+    private List<UserStatsBucketDto> countByAgeBracket(boolean fromSummary) {
+        int minAge = userRegistrationConfig.getMinAge();
+        List<Integer> lowerAges = new ArrayList<>(List.of(0, minAge));
+        for (int age : BRACKET_AGES) {
+            if (age > minAge) {
+                lowerAges.add(age);
+            }
+        }
+        // Oldest first, as each bracket only holds the users that no older bracket does
+        LocalDate today = LocalDate.now();
+        Map<String, LocalDate> latestBirthDates = new LinkedHashMap<>();
+        for (int i = lowerAges.size() - 1; i >= 0; i--) {
+            int lowerAge = lowerAges.get(i);
+            String label = i == lowerAges.size() - 1 ? lowerAge + "+" : lowerAge + "-" + (lowerAges.get(i + 1) - 1);
+            latestBirthDates.put(label, lowerAge == 0 ? null : today.minusYears(lowerAge));
+        }
+        Map<String, Long> counts = userRepository.countByBirthDateBrackets(latestBirthDates, fromSummary).stream()
+                .collect(Collectors.toMap(UserStatsBucketDto::getKey, UserStatsBucketDto::getCount));
+        List<String> labels = new ArrayList<>(latestBirthDates.keySet());
+        Collections.reverse(labels);
+        return labels.stream()
+                .map(label -> new UserStatsBucketDto(label, counts.getOrDefault(label, 0L)))
+                .toList();
+    }
+}
@@ -0,0 +1,524 @@
+package com.example.rest_api.sharding;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.entity.UserEntity;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The users table split across several databases, placed by {@link UserShardRouter}. Lookups, updates
+ * and deletes by id go to the one shard the id names; lookups by email and birth date range searches
+ * query every shard in parallel, and range results are merged in (birthDate, id) order. Each statement
+ * runs in a transaction of its own on its shard.
+ * <p>
+ * A user stays on the shard of the email it registered with, so each shard's unique constraint only
+ * covers part of the emails. Every email in use is also claimed in the {@code user_emails} table of the
+ * shard it hashes to, and the claim is what keeps it unique across shards.
+ */
+public class ShardedUserRepository implements Closeable {
+
+    private static final String COLUMNS = "id, email, firstName, lastName, birthDate, address, phoneNumber, version";
+    private static final int FETCH_SIZE = 500;
+    static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(1);
+    private static final Comparator<UserDto> BIRTH_DATE_ORDER =
+            Comparator.comparing(UserDto::getBirthDate).thenComparing(UserDto::getId);
+    private static final Comparator<UserDto> ID_ORDER = Comparator.comparing(UserDto::getId);
+
+    private final List<DataSource> shards;
+    private final List<NamedParameterJdbcTemplate> jdbcTemplates;
+    private final List<TransactionTemplate> transactionTemplates;
+    private final UserShardRouter router;
+    // Unbounded, since a stream holds one thread per shard until it is drained; the pools bound the queries
+    private final ExecutorService executor;
+
+    public ShardedUserRepository(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        this.jdbcTemplates = shards.stream().map(ShardedUserRepository::jdbcTemplate).toList();
+        this.transactionTemplates = shards.stream()
+                .map(shard -> new TransactionTemplate(new DataSourceTransactionManager(shard)))
+                .toList();
+        this.router = new UserShardRouter(shards.size());
+        this.executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("user-shards-"));
+    }
+
+    private static NamedParameterJdbcTemplate jdbcTemplate(DataSource shard) {
+        NamedParameterJdbcTemplate jdbcTemplate = new NamedParameterJdbcTemplate(shard);
+        jdbcTemplate.getJdbcTemplate().setFetchSize(FETCH_SIZE);
+        return jdbcTemplate;
+    }
+
+    public UserShardRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * Inserts the user on its email's shard with a new id and version 0, claiming the email in the same
+     * transaction, and returns the stored user.
+     */
+    public UserDto insert(UserDto user) {
+        int shard = router.shardOf(user.getEmail());
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("email", user.getEmail())
+                .addValue("firstName", user.getFirstName())
+                .addValue("lastName", user.getLastName())
+                .addValue("birthDate", user.getBirthDate())
+                .addValue("address", user.getAddress())
+                .addValue("phoneNumber", user.getPhoneNumber());
+        Long id = transactionTemplates.get(shard).execute(status -> {
+            Long inserted = jdbcTemplates.get(shard).queryForObject("SELECT id FROM FINAL TABLE (" +
+                    "INSERT INTO users (" + COLUMNS + ") VALUES (" + router.nextId(shard) + ", " +
+                    ":email, :firstName, :lastName, :birthDate, :address, :phoneNumber, 0))", params, Long.class);
+            claimEmail(user.getEmail(), inserted);
+            return inserted;
+        });
+        return new UserDto(id, user.getEmail(), user.getFirstName(), user.getLastName(), user.getBirthDate(),
+                user.getAddress(), user.getPhoneNumber(), 0L);
+    }
+
+    public Optional<UserDto> findById(long id) {
+        return jdbcTemplates.get(router.shardOf(id))
+                .query("SELECT " + COLUMNS + " FROM users WHERE id = :id", Map.of("id", id),
+                        (resultSet, rowNum) -> toDto(resultSet))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * The users with these ids, in no particular order, reading each shard once.
+     */
+    public List<UserDto> findByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = ids.stream().collect(Collectors.groupingBy(router::shardOf));
+        return scatter(idsByShard.keySet().stream().mapToInt(Integer::intValue), shard -> jdbcTemplates.get(shard)
+                .query("SELECT " + COLUMNS + " FROM users WHERE id IN (:ids)", Map.of("ids", idsByShard.get(shard)),
+                        (resultSet, rowNum) -> toDto(resultSet)))
+                .stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    /**
+     * Follows the email's claim to the user's shard, since a user whose email changed stays on the
+     * shard of the one it registered with.
+     */
+    public Optional<UserDto> findByEmail(String email) {
+        return findEmailOwner(email)
+                .flatMap(this::findById)
+                .filter(user -> email.equalsIgnoreCase(user.getEmail()));
+    }
+
+    private Optional<Long> findEmailOwner(String email) {
+        return jdbcTemplates.get(router.shardOf(email))
+                .queryForList("SELECT userId FROM user_emails WHERE emailNormalized = LOWER(:email)",
+                        Map.of("email", email), Long.class)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Replaces the email, names, birth date, address and phone number of user {@code id} with those of
+     * {@code change} applied to its current values, if its version still equals {@code expectedVersion}.
+     * Without an expected version, a concurrent update makes it apply {@code change} again to the newer
+     * values. Returns the updated user, or empty when it is missing or its version is stale.
+     */
+    public Optional<UserDto> update(long id, Long expectedVersion, UnaryOperator<UserDto> change) {
+        while (true) {
+            Optional<UserDto> current = findById(id);
+            if (current.isEmpty() || expectedVersion != null && !expectedVersion.equals(current.get().getVersion())) {
+                return Optional.empty();
+            }
+            Optional<UserDto> updated = update(current.get(), change.apply(copy(current.get())));
+            if (updated.isPresent() || expectedVersion != null) {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * A new email is claimed before the row takes it, and the one given up released after, so that no
+     * other user can register or move to either in between. The row itself stays on its shard.
+     */
+    private Optional<UserDto> update(UserDto current, UserDto values) {
+        long id = current.getId();
+        boolean emailChanged = !Objects.equals(normalize(current.getEmail()), normalize(values.getEmail()));
+        if (emailChanged) {
+            claimEmail(values.getEmail(), id);
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("version", current.getVersion())
+                .addValue("email", values.getEmail())
+                .addValue("firstName", values.getFirstName())
+                .addValue("lastName", values.getLastName())
+                .addValue("birthDate", values.getBirthDate())
+                .addValue("address", values.getAddress())
+                .addValue("phoneNumber", values.getPhoneNumber());
+        Optional<UserDto> updated;
+        try {
+            updated = jdbcTemplates.get(router.shardOf(id)).query("SELECT " + COLUMNS + " FROM FINAL TABLE (" +
+                            "UPDATE users SET email = :email, firstName = :firstName, lastName = :lastName, " +
+                            "birthDate = :birthDate, address = :address, phoneNumber = :phoneNumber, " +
+                            "version = version + 1 WHERE id = :id AND version = :version)",
+                    params, (resultSet, rowNum) -> toDto(resultSet))
+                    .stream()
+                    .findFirst();
+        } catch (RuntimeException exception) {
+            if (emailChanged) {
+                releaseEmail(values.getEmail(), id);
+            }
+            throw exception;
+        }
+        if (emailChanged) {
+            releaseEmail(updated.isPresent() ? current.getEmail() : values.getEmail(), id);
+        }
+        return updated;
+    }
+
+    /**
+     * Deletes user {@code id} and releases its email, returning the deleted user.
+     */
+    public Optional<UserDto> deleteById(long id) {
+        Optional<UserDto> deleted = jdbcTemplates.get(router.shardOf(id))
+                .query("SELECT " + COLUMNS + " FROM OLD TABLE (DELETE FROM users WHERE id = :id)", Map.of("id", id),
+                        (resultSet, rowNum) -> toDto(resultSet))
+                .stream()
+                .findFirst();
+        deleted.ifPresent(user -> releaseEmail(user.getEmail(), id));
+        return deleted;
+    }
+
+    /**
+     * Records on the email's shard that user {@code userId} holds it, failing like the users table's
+     * unique constraint when another user does. A claim left behind by an update or delete that did not
+     * finish is taken over once it is older than {@link #CLAIM_TIMEOUT} and its user does not hold the
+     * email.
+     */
+    private void claimEmail(String email, long userId) {
+        if (email == null) {
+            return;
+        }
+        NamedParameterJdbcTemplate jdbcTemplate = jdbcTemplates.get(router.shardOf(email));
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("email", email)
+                .addValue("userId", userId)
+                .addValue("timeout", CLAIM_TIMEOUT.toSeconds());
+        try {
+            jdbcTemplate.update("INSERT INTO user_emails (emailNormalized, userId, claimedAt) " +
+                    "VALUES (LOWER(:email), :userId, LOCALTIMESTAMP)", params);
+            return;
+        } catch (DuplicateKeyException exception) {
+            // Held by someone, possibly by this user already
+        }
+        Map<String, Object> claim = jdbcTemplate.queryForList("SELECT userId, " +
+                "claimedAt < DATEADD(SECOND, -CAST(:timeout AS INT), LOCALTIMESTAMP) AS stale " +
+                "FROM user_emails WHERE emailNormalized = LOWER(:email)", params).stream().findFirst().orElse(null);
+        if (claim == null) {
+            // Released in the meantime
+            claimEmail(email, userId);
+            return;
+        }
+        long owner = ((Number) claim.get("userId")).longValue();
+        if (owner == userId) {
+            return;
+        }
+        if (Boolean.TRUE.equals(claim.get("stale"))
+                && findById(owner).filter(user -> email.equalsIgnoreCase(user.getEmail())).isEmpty()
+                && jdbcTemplate.update("UPDATE user_emails SET userId = :userId, claimedAt = LOCALTIMESTAMP " +
+                "WHERE emailNormalized = LOWER(:email) AND userId = :owner", params.addValue("owner", owner)) == 1) {
+            return;
+        }
+        throw new DuplicateKeyException("Unique index or primary key violation: "
+                + UserEntity.EMAIL_UNIQUE_CONSTRAINT + " claimed by another user");
+    }
+
+    private void releaseEmail(String email, long userId) {
+        if (email != null) {
+            jdbcTemplates.get(router.shardOf(email)).update("DELETE FROM user_emails " +
+                    "WHERE emailNormalized = LOWER(:email) AND userId = :userId", Map.of("email", email, "userId", userId));
+        }
+    }
+
+    private static String normalize(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+
+    private static UserDto copy(UserDto user) {
+        return new UserDto(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                user.getBirthDate(), user.getAddress(), user.getPhoneNumber(), user.getVersion());
+    }
+
+    public long count() {
+        return scatter(IntStream.range(0, shards.size()), shard -> jdbcTemplates.get(shard)
+                .queryForObject("SELECT COUNT(*) FROM users", Map.of(), Long.class))
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    /**
+     * The first {@code limit} users with an id above {@code afterId}, in id order, as
+     * {@code UserRepository.findDtoPageAfterId} reads them.
+     */
+    public List<UserDto> findPageAfterId(long afterId, int limit) {
+        Map<String, ?> params = Map.of("afterId", afterId, "limit", limit);
+        List<List<UserDto>> pages = scatter(IntStream.range(0, shards.size()), shard -> jdbcTemplates.get(shard).query(
+                "SELECT " + COLUMNS + " FROM users WHERE id > :afterId ORDER BY id LIMIT :limit",
+                params, (resultSet, rowNum) -> toDto(resultSet)));
+        return merge(pages, ID_ORDER, limit);
+    }
+
+    /**
+     * The fingerprint {@code UserRepository.findVersionTagByBirthDateBetween} gives, over all shards.
+     */
+    public String findVersionTagByBirthDateBetween(LocalDate fromDate, LocalDate toDate) {
+        Map<String, ?> params = Map.of("fromDate", fromDate, "toDate", toDate);
+        List<long[]> tags = scatter(IntStream.range(0, shards.size()), shard -> jdbcTemplates.get(shard).queryForObject(
+                "SELECT COUNT(*), COALESCE(SUM(id), 0), COALESCE(SUM(version), 0), COALESCE(MAX(id), 0) FROM users " +
+                        "WHERE birthDate BETWEEN :fromDate AND :toDate",
+                params, (resultSet, rowNum) -> new long[]{resultSet.getLong(1), resultSet.getLong(2),
+                        resultSet.getLong(3), resultSet.getLong(4)}));
+        return tags.stream().mapToLong(tag -> tag[0]).sum() + "-" + tags.stream().mapToLong(tag -> tag[1]).sum()
+                + "-" + tags.stream().mapToLong(tag -> tag[2]).sum() + "-" + tags.stream().mapToLong(tag -> tag[3]).max().orElse(0);
+    }
+
+    /**
+     * How many users are in the range, counting at most {@code limit}.
+     */
+    public int countByBirthDateBetweenUpTo(LocalDate fromDate, LocalDate toDate, int limit) {
+        Map<String, ?> params = Map.of("fromDate", fromDate, "toDate", toDate, "limit", limit);
+        int users = scatter(IntStream.range(0, shards.size()), shard -> jdbcTemplates.get(shard).queryForObject(
+                "SELECT COUNT(*) FROM (SELECT id FROM users WHERE birthDate BETWEEN :fromDate AND :toDate LIMIT :limit) u",
+                params, Integer.class))
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        return Math.min(users, limit);
+    }
+
+    public List<UserDto> findByBirthDateBetween(LocalDate fromDate, LocalDate toDate) {
+        List<UserDto> users = new ArrayList<>();
+        streamByBirthDateBetween(fromDate, toDate, users::add);
+        return users;
+    }
+
+    /**
+     * One keyset page in (birthDate, id) order: each shard returns its first {@code limit} users after
+     * the cursor, and the first {@code limit} of their merge make the page.
+     */
+    public List<UserDto> findPageByBirthDateAfter(LocalDate afterBirthDate, long afterId, LocalDate toDate,
+                                                  int limit) {
+        Map<String, ?> params = Map.of("afterBirthDate", afterBirthDate, "afterId", afterId, "toDate", toDate,
+                "limit", limit);
+        List<List<UserDto>> pages = scatter(IntStream.range(0, shards.size()), shard -> jdbcTemplates.get(shard).query(
+                "SELECT " + COLUMNS + " FROM users " +
+                        "WHERE birthDate >= :afterBirthDate AND birthDate <= :toDate " +
+                        "AND (birthDate > :afterBirthDate OR id > :afterId) " +
+                        "ORDER BY birthDate, id LIMIT :limit",
+                params, (resultSet, rowNum) -> toDto(resultSet)));
+
+        return merge(pages, BIRTH_DATE_ORDER, limit);
+    }
+
+    /**
+     * The first {@code limit} users of the merge of pages that are each in {@code order}.
+     */
+    private static List<UserDto> merge(List<List<UserDto>> pages, Comparator<UserDto> order, int limit) {
+        List<UserDto> page = new ArrayList<>(limit);
+        Iterator<UserDto> merged = new MergingIterator(pages.stream().map(List::iterator).toList(), order);
+        while (page.size() < limit && merged.hasNext()) {
+            page.add(merged.next());
+        }
+        return page;
+    }
+
+    /**
+     * Passes the users in the range to {@code consumer} in (birthDate, id) order while the shards are
+     * still being read. Each shard is read ahead by at most one fetch; when the consumer throws, the
+     * remaining shard queries are cancelled.
+     */
+    public void streamByBirthDateBetween(LocalDate fromDate, LocalDate toDate, Consumer<UserDto> consumer) {
+        Map<String, ?> params = Map.of("fromDate", fromDate, "toDate", toDate);
+        List<ShardCursor> cursors = jdbcTemplates.stream()
+                .map(jdbcTemplate -> new ShardCursor(jdbcTemplate, "SELECT " + COLUMNS + " FROM users " +
+                        "WHERE birthDate BETWEEN :fromDate AND :toDate ORDER BY birthDate, id", params))
+                .toList();
+        try {
+            new MergingIterator(cursors, BIRTH_DATE_ORDER).forEachRemaining(consumer);
+        } finally {
+            cursors.forEach(ShardCursor::cancel);
+        }
+    }
+
+    private <T> List<T> scatter(IntStream shardIndexes, IntFunction<T> query) {
+        List<CompletableFuture<T>> results = shardIndexes
+                .mapToObj(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), executor))
+                .toList();
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    private static UserDto toDto(ResultSet resultSet) throws SQLException {
+        return new UserDto(
+                resultSet.getLong("id"),
+                resultSet.getString("email"),
+                resultSet.getString("firstName"),
+                resultSet.getString("lastName"),
+                resultSet.getObject("birthDate", LocalDate.class),
+                resultSet.getString("address"),
+                resultSet.getString("phoneNumber"),
+                resultSet.getLong("version"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        for (DataSource shard : shards) {
+            if (shard instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * K-way merge of iterators that are each in the given order, holding one user per iterator.
+     */
+    private static class MergingIterator implements Iterator<UserDto> {
+
+        private final PriorityQueue<Head> heads;
+
+        MergingIterator(List<? extends Iterator<UserDto>> sources, Comparator<UserDto> order) {
+            this.heads = new PriorityQueue<>(Comparator.comparing(Head::user, order));
+            sources.forEach(this::advance);
+        }
+
+        private void advance(Iterator<UserDto> source) {
+            if (source.hasNext()) {
+                heads.add(new Head(source.next(), source));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public UserDto next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.source());
+            return head.user();
+        }
+
+        private record Head(UserDto user, Iterator<UserDto> source) {
+        }
+    }
+
+    /**
+     * One shard's part of a streamed search, read on an executor thread into a queue of one fetch.
+     */
+    private class ShardCursor implements Iterator<UserDto> {
+
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> rows = new ArrayBlockingQueue<>(FETCH_SIZE);
+        private final Future<?> query;
+        private Object next;
+
+        ShardCursor(NamedParameterJdbcTemplate jdbcTemplate, String sql, Map<String, ?> params) {
+            this.query = executor.submit(() -> {
+                try {
+                    jdbcTemplate.query(sql, params, (RowCallbackHandler) resultSet -> put(toDto(resultSet)));
+                    put(END);
+                } catch (CancellationException exception) {
+                    // Nobody is reading any more
+                } catch (RuntimeException exception) {
+                    put(exception);
+                }
+            });
+        }
+
+        private void put(Object row) {
+            try {
+                rows.put(row);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Shard query cancelled");
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = rows.take();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while reading a shard");
+                }
+            }
+            if (next instanceof RuntimeException exception) {
+                throw exception;
+            }
+            return next != END;
+        }
+
+        @Override
+        public UserDto next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            UserDto user = (UserDto) next;
+            next = null;
+            return user;
+        }
+
+        void cancel() {
+            query.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.rest_api.sharding;
+
+import java.util.Locale;
+
+/**
+ * Places users on shards. A new user goes to the shard its lower-cased email hashes to, where every
+ * email in use is claimed, so that two users of one email meet the same unique constraint, and gets an
+ * id naming that shard: the value of the shard's own sequence times the shard count, plus the shard's
+ * index. Ids are then globally unique without coordination, and a user is found by id on shard
+ * {@code id mod count}, even after an email change. The shard count can therefore not change without
+ * placing the users anew.
+ */
+public class UserShardRouter {
+
+    private final int shardCount;
+
+    public UserShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * The shard holding user {@code id}.
+     */
+    public int shardOf(long id) {
+        return (int) Math.floorMod(id, (long) shardCount);
+    }
+
+    /**
+     * The shard a new user with this email is stored on.
+     */
+    public int shardOf(String email) {
+        return Math.floorMod(email.toLowerCase(Locale.ROOT).hashCode(), shardCount);
+    }
+
+    /**
+     * SQL expression taking the next id for a user on {@code shard} from that shard's {@code users_seq}.
+     */
+    public String nextId(int shard) {
+        return "NEXT VALUE FOR users_seq * " + shardCount + " + " + shard;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.rest_api.web;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit that follows observed latency, after the gradient algorithm. At the end of
+ * every sample window the window's average latency is compared with a slowly moving long-term
+ * average: while they stay within {@link #TOLERANCE} of each other the limit grows by about its
+ * square root, and as queueing pushes latency further up the limit shrinks in proportion, by at
+ * most half per window. Requests over the limit are rejected rather than queued, which is what
+ * keeps the latency of those admitted flat under overload.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_TERM_WINDOWS = 100;
+    private static final int MIN_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final AtomicLong windowStart;
+    // Only written by the thread that closes a window, see release(long)
+    private volatile double estimatedLimit;
+    private volatile double longTermLatency;
+    private volatile int limit;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration window,
+                                      LongSupplier nanoClock) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+        this.windowStart = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Admits a request unless the limit is reached. Every admitted request must be released.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                peakInFlight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a request whose latency says nothing about the server's load, such as a stream.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        latencySum.add(latencyNanos);
+        samples.increment();
+        long now = nanoClock.getAsLong();
+        long start = windowStart.get();
+        if (now - start >= windowNanos && samples.sum() >= MIN_SAMPLES && windowStart.compareAndSet(start, now)) {
+            update();
+        }
+    }
+
+    private void update() {
+        long count = samples.sumThenReset();
+        double shortTermLatency = (double) latencySum.sumThenReset() / Math.max(1, count);
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        if (shortTermLatency <= 0) {
+            return;
+        }
+        if (longTermLatency == 0) {
+            longTermLatency = shortTermLatency;
+        } else {
+            longTermLatency += (shortTermLatency - longTermLatency) / LONG_TERM_WINDOWS;
+            // Once latency has dropped for good, do not keep measuring against the old baseline
+            if (longTermLatency > 2 * shortTermLatency) {
+                longTermLatency *= 0.95;
+            }
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longTermLatency / shortTermLatency));
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        if (target > estimatedLimit && peak < estimatedLimit / 2) {
+            // Too little load to tell whether a higher limit would still be safe
+            return;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
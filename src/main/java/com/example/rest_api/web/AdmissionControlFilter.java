@@ -0,0 +1,192 @@
+package com.example.rest_api.web;
+
+import com.example.rest_api.config.UserAdmissionConfig;
+import com.example.rest_api.monitoring.UserMetrics;
+import com.example.rest_api.service.StacklessResponseStatusException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+
+/**
+ * Admission control in front of the user endpoints. Each client, by remote address or, behind a trusted
+ * proxy, by {@code user.admission.client-header}, draws from its own {@link TokenBucket}; unpaged range
+ * searches cost extra tokens by birth date span, and bulk operations, imports and exports by
+ * {@code user.admission.bulk-cost}. Admitted requests then share an {@link AdaptiveConcurrencyLimiter}. Requests over
+ * either limit are rejected at once, with 429 or 503 and a Retry-After header, through the usual error
+ * handling. The change feed is only rate limited, since its subscribers stay connected.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    public static final String RATE_LIMITED = "rate_limited";
+    public static final String OVERLOADED = "overloaded";
+
+    private static final String USERS_PATH = "/users";
+    private static final String CHANGES_PATH = "/users/changes";
+    private static final String IMPORT_PATH = "/users/bulk";
+    private static final Set<String> BULK_PATHS = Set.of("/users/bulk/delete", "/users/bulk/patch", "/users/exports");
+    private static final long SECOND_NANOS = 1_000_000_000L;
+
+    private final UserAdmissionConfig config;
+    private final UserMetrics userMetrics;
+    private final HandlerExceptionResolver exceptionResolver;
+    private final Cache<String, TokenBucket> buckets;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Set<String> trustedProxies;
+
+    public AdmissionControlFilter(UserAdmissionConfig config,
+                                  UserMetrics userMetrics,
+                                  @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver) {
+        this.config = config;
+        this.userMetrics = userMetrics;
+        this.exceptionResolver = exceptionResolver;
+        // An idle bucket refills completely within this time, after which dropping it loses nothing
+        Duration refillTime = Duration.ofNanos((long) (config.getBurst() * SECOND_NANOS / config.getRequestsPerSecond()));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(config.getMaxClients())
+                .expireAfterAccess(refillTime)
+                .build();
+        this.limiter = new AdaptiveConcurrencyLimiter(config.getInitialConcurrency(), config.getMinConcurrency(),
+                config.getMaxConcurrency(), config.getSampleWindow(), System::nanoTime);
+        this.trustedProxies = Set.copyOf(config.getTrustedProxies());
+        userMetrics.registerAdmission(limiter::getLimit, limiter::getInFlight, buckets::estimatedSize);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !config.isEnabled() || !(path.equals(USERS_PATH) || path.startsWith(USERS_PATH + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        TokenBucket bucket = buckets.get(clientKey(request),
+                key -> new TokenBucket(config.getRequestsPerSecond(), config.getBurst(), start));
+        long waitNanos = bucket.tryAcquire(cost(request), start);
+        if (waitNanos > 0) {
+            reject(request, response, HttpStatus.TOO_MANY_REQUESTS, RATE_LIMITED, waitNanos,
+                    "Too many requests from this client");
+            return;
+        }
+        if (request.getRequestURI().equals(CHANGES_PATH)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!limiter.tryAcquire()) {
+            reject(request, response, HttpStatus.SERVICE_UNAVAILABLE, OVERLOADED, SECOND_NANOS,
+                    "Too many concurrent requests");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (isAsyncStarted(request)) {
+                request.getAsyncContext().addListener(new ReleaseListener());
+            } else {
+                limiter.release(System.nanoTime() - start);
+            }
+        }
+    }
+
+    String clientKey(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        String client = trustedProxies.contains(address) ? request.getHeader(config.getClientHeader()) : null;
+        return client != null && !client.isBlank() ? client : address;
+    }
+
+    /**
+     * One token, plus one per {@code user.admission.search-days-per-token} of birth dates for range
+     * searches that return the whole range at once. Paged searches cost one token per page instead.
+     * Bulk operations and exports cost {@code user.admission.bulk-cost}, and imports one more token per
+     * {@code user.admission.import-bytes-per-token} of body, or the burst when its length is unknown.
+     * Capped at the burst, so that any request can be admitted once the bucket is full.
+     */
+    int cost(HttpServletRequest request) {
+        if (HttpMethod.POST.matches(request.getMethod())) {
+            String path = request.getRequestURI();
+            if (path.equals(IMPORT_PATH)) {
+                long length = request.getContentLengthLong();
+                return length < 0 ? config.getBurst() : capped(config.getBulkCost() + length / config.getImportBytesPerToken());
+            }
+            return BULK_PATHS.contains(path) ? capped(config.getBulkCost()) : 1;
+        }
+        if (!HttpMethod.GET.matches(request.getMethod()) || !request.getRequestURI().equals(USERS_PATH)
+                || request.getParameter("limit") != null || request.getParameter("next") != null) {
+            return 1;
+        }
+        String from = request.getParameter("from");
+        String to = request.getParameter("to");
+        if (from == null || to == null) {
+            return 1;
+        }
+        try {
+            long days = ChronoUnit.DAYS.between(LocalDate.parse(from), LocalDate.parse(to));
+            return capped(1 + days / config.getSearchDaysPerToken());
+        } catch (DateTimeParseException exception) {
+            // Rejected by the controller
+            return 1;
+        }
+    }
+
+    private int capped(long cost) {
+        return (int) Math.max(1, Math.min(config.getBurst(), cost));
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                        String reason, long retryAfterNanos, String message) {
+        userMetrics.recordAdmissionRejection(reason);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterNanos + SECOND_NANOS - 1) / SECOND_NANOS)));
+        exceptionResolver.resolveException(request, response, null,
+                new StacklessResponseStatusException(status, message, headers));
+    }
+
+    /**
+     * Streams hold their permit until they complete, but their duration says nothing about load.
+     */
+    private class ReleaseListener implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limiter.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.rest_api.web;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Rather than a token count and a refill time, it keeps the single instant
+ * at which the bucket will be full again (the generic cell rate algorithm), so that taking tokens
+ * is one compare-and-set and refilling needs no timer.
+ */
+public final class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double tokensPerSecond, int capacity, long nowNanos) {
+        this.nanosPerToken = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.capacityNanos = nanosPerToken * capacity;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes {@code cost} tokens and returns 0, or takes none and returns how many nanoseconds until
+     * enough of them have been refilled.
+     */
+    public long tryAcquire(int cost, long nowNanos) {
+        long costNanos = nanosPerToken * cost;
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - nowNanos > 0 ? current : nowNanos) + costNanos;
+            long waitNanos = next - nowNanos - capacityNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
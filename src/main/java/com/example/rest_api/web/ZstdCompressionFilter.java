@@ -0,0 +1,317 @@
+package com.example.rest_api.web;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compresses responses with zstd for the clients that accept it, under the {@code server.compression}
+ * settings with which Tomcat gzips them for the others: only bodies of the configured MIME types and of
+ * at least {@code min-response-size} bytes. A body is buffered up to that size to decide. Bodies already
+ * encoded, of other types, written after the request went async, such as event streams, or written without
+ * blocking through a {@link WriteListener} pass through.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ZstdCompressionFilter extends OncePerRequestFilter {
+
+    public static final String ZSTD = "zstd";
+
+    private final boolean enabled;
+    private final int minResponseSize;
+    private final List<MimeType> mimeTypes;
+
+    public ZstdCompressionFilter(ServerProperties serverProperties) {
+        Compression compression = serverProperties.getCompression();
+        this.enabled = compression.getEnabled();
+        this.minResponseSize = (int) compression.getMinResponseSize().toBytes();
+        this.mimeTypes = Arrays.stream(compression.getMimeTypes()).map(MimeTypeUtils::parseMimeType).toList();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !acceptsZstd(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        ZstdResponse zstdResponse = new ZstdResponse(response);
+        try {
+            filterChain.doFilter(request, zstdResponse);
+        } finally {
+            if (isAsyncStarted(request)) {
+                zstdResponse.decide(false);
+            } else {
+                zstdResponse.finish();
+            }
+        }
+    }
+
+    static boolean acceptsZstd(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            if (parameters[0].trim().equalsIgnoreCase(ZSTD)) {
+                return parameters.length < 2 || !parameters[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Buffers the body until it is known whether to compress it, then writes it to {@code target}.
+     */
+    private class ZstdResponse extends HttpServletResponseWrapper {
+
+        private final HttpServletResponse response;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream target;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+        private ServletOutputStream nonBlocking;
+        private long contentLength = -1;
+        private boolean finished;
+
+        private ZstdResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (outputStream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            if (buffer != null) {
+                contentLength = length;
+            } else if (!(target instanceof ZstdOutputStream)) {
+                response.setContentLengthLong(length);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            setHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (buffer == null) {
+                target.flush();
+                response.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (buffer != null) {
+                buffer.reset();
+            }
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            if (buffer != null) {
+                buffer.reset();
+                contentLength = -1;
+            }
+            super.reset();
+        }
+
+        private ServletOutputStream stream() {
+            if (outputStream == null) {
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[]{(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] bytes, int offset, int length) throws IOException {
+                        ZstdResponse.this.write(bytes, offset, length);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        if (buffer == null) {
+                            target.flush();
+                        }
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        finish();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return nonBlocking == null || nonBlocking.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        passThrough(writeListener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        /**
+         * Hands non-blocking writes to the container's stream uncompressed, since the zstd stream would
+         * block whenever that stream is not ready.
+         */
+        private void passThrough(WriteListener writeListener) {
+            if (target instanceof ZstdOutputStream) {
+                throw new IllegalStateException("Non-blocking writes cannot follow compressed ones");
+            }
+            try {
+                decide(false);
+                nonBlocking = response.getOutputStream();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+            nonBlocking.setWriteListener(writeListener);
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            if (buffer != null && (!compressible() || buffer.size() + length >= minResponseSize)) {
+                decide(true);
+            }
+            if (buffer != null) {
+                buffer.write(bytes, offset, length);
+            } else {
+                target.write(bytes, offset, length);
+            }
+        }
+
+        private boolean compressible() {
+            String contentType = getContentType();
+            if (contentType == null || getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+                return false;
+            }
+            MimeType mimeType = MimeTypeUtils.parseMimeType(contentType);
+            return mimeTypes.stream().anyMatch(mimeType::equalsTypeAndSubtype);
+        }
+
+        /**
+         * Stops buffering: from now on the body is compressed if allowed and of a compressible type.
+         */
+        private void decide(boolean compress) throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            if (compress && compressible()) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, ZSTD);
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                target = new ZstdOutputStream(response.getOutputStream());
+            } else {
+                if (contentLength >= 0) {
+                    response.setContentLengthLong(contentLength);
+                }
+                target = response.getOutputStream();
+            }
+            buffer.writeTo(target);
+            buffer = null;
+        }
+
+        /**
+         * Sends a body still buffered, below the size threshold, as it is; its length keeps Tomcat from
+         * gzipping it either.
+         */
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (writer != null) {
+                writer.flush();
+            }
+            if (buffer != null) {
+                long length = buffer.size() > 0 ? buffer.size() : contentLength;
+                if (length >= 0 && !response.isCommitted()) {
+                    response.setContentLengthLong(length);
+                }
+                if (buffer.size() > 0) {
+                    buffer.writeTo(response.getOutputStream());
+                }
+                buffer = null;
+                target = response.getOutputStream();
+            } else if (target instanceof ZstdOutputStream) {
+                // Writes the end of the zstd frame, then closes the response's stream as the container would
+                target.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+-- Mirrors UserEntity under the standard physical naming strategy, including the pooled users_seq.
+CREATE SEQUENCE users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE users (
+    id          BIGINT       NOT NULL PRIMARY KEY,
+    email       VARCHAR(255),
+    firstName   VARCHAR(255),
+    lastName    VARCHAR(255),
+    birthDate   DATE,
+    address     VARCHAR(255),
+    phoneNumber VARCHAR(255),
+    version     BIGINT
+);
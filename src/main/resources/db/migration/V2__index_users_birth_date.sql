@@ -0,0 +1,2 @@
+-- Backs the keyset-paginated and streamed birth date range searches, ordered by (birthDate, id).
+CREATE INDEX idx_users_birth_date_id ON users (birthDate, id);
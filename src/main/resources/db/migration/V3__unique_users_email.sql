@@ -0,0 +1,4 @@
+-- Case-insensitively unique emails. The normalized copy is computed by the database, so that no write path
+-- can leave it out of sync; the unique constraint's index also serves lookups by email.
+ALTER TABLE users ADD COLUMN emailNormalized VARCHAR(255) GENERATED ALWAYS AS (LOWER(email));
+ALTER TABLE users ADD CONSTRAINT uk_users_email_normalized UNIQUE (emailNormalized);
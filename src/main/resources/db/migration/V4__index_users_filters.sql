@@ -0,0 +1,6 @@
+-- Indexes for the GET /users filters. Last names and email domains are matched case-insensitively through
+-- database-computed columns, each indexed together with id so that equal values are paged in id order.
+ALTER TABLE users ADD COLUMN lastNameNormalized VARCHAR(255) GENERATED ALWAYS AS (LOWER(lastName));
+ALTER TABLE users ADD COLUMN emailDomain VARCHAR(255) GENERATED ALWAYS AS (SUBSTRING(LOWER(email), LOCATE('@', email) + 1));
+CREATE INDEX idx_users_last_name_id ON users (lastNameNormalized, id);
+CREATE INDEX idx_users_email_domain_id ON users (emailDomain, id);
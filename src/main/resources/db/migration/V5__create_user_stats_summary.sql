@@ -0,0 +1,11 @@
+-- User counts per birth date and per email domain, kept up to date by the application's user writes and
+-- rebuilt from the users table at startup, so that the statistics endpoint reads O(buckets) rows.
+CREATE TABLE user_birth_date_counts (
+    birthDate DATE   NOT NULL PRIMARY KEY,
+    userCount BIGINT NOT NULL
+);
+
+CREATE TABLE user_email_domain_counts (
+    emailDomain VARCHAR(255) NOT NULL PRIMARY KEY,
+    userCount   BIGINT       NOT NULL
+);
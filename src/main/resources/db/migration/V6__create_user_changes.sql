@@ -0,0 +1,14 @@
+-- Transactional outbox of user writes, appended in the same transaction as each write and tailed by the
+-- /users/changes feed, which numbers committed rows with feed positions in the order it reads them.
+-- Rows older than user.changes.retention are pruned by the application.
+CREATE TABLE user_changes (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    userId       BIGINT                   NOT NULL,
+    type         VARCHAR(16)              NOT NULL,
+    userVersion  BIGINT,
+    changedAt    TIMESTAMP WITH TIME ZONE NOT NULL,
+    feedPosition BIGINT
+);
+
+CREATE INDEX idx_user_changes_changed_at ON user_changes (changedAt);
+CREATE UNIQUE INDEX uk_user_changes_feed_position ON user_changes (feedPosition);
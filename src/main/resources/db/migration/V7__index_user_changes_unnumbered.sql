@@ -0,0 +1,3 @@
+-- Lets the change feed read the oldest changes it has not numbered yet in index order, rather than
+-- reading and sorting every unnumbered row when the feed falls behind.
+CREATE INDEX idx_user_changes_unnumbered ON user_changes (feedPosition, id);
@@ -0,0 +1,30 @@
+-- The users table of one shard, as db/migration leaves it. Its users_seq is not pooled: each value is turned
+-- into an id naming the shard by UserShardRouter.
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1;
+
+CREATE TABLE IF NOT EXISTS users (
+    id                 BIGINT       NOT NULL PRIMARY KEY,
+    email              VARCHAR(255),
+    firstName          VARCHAR(255),
+    lastName           VARCHAR(255),
+    birthDate          DATE,
+    address            VARCHAR(255),
+    phoneNumber        VARCHAR(255),
+    version            BIGINT,
+    emailNormalized    VARCHAR(255) GENERATED ALWAYS AS (LOWER(email)),
+    lastNameNormalized VARCHAR(255) GENERATED ALWAYS AS (LOWER(lastName)),
+    emailDomain        VARCHAR(255) GENERATED ALWAYS AS (SUBSTRING(LOWER(email), LOCATE('@', email) + 1)),
+    CONSTRAINT uk_users_email_normalized UNIQUE (emailNormalized)
+);
+
+-- The user holding each email that hashes to this shard, see ShardedUserRepository. A user stays on the shard of
+-- the email it registered with, so uk_users_email_normalized alone does not keep emails unique across shards.
+CREATE TABLE IF NOT EXISTS user_emails (
+    emailNormalized VARCHAR(255) NOT NULL PRIMARY KEY,
+    userId          BIGINT       NOT NULL,
+    claimedAt       TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_users_birth_date_id ON users (birthDate, id);
+CREATE INDEX IF NOT EXISTS idx_users_last_name_id ON users (lastNameNormalized, id);
+CREATE INDEX IF NOT EXISTS idx_users_email_domain_id ON users (emailDomain, id);
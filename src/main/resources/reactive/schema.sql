@@ -0,0 +1,24 @@
+-- Schema for the reactive profile, which has no Hibernate to generate it. Mirrors UserEntity under the
+-- standard physical naming strategy, including the pooled users_seq. It only holds the users table: the
+-- reactive stack keeps no change outbox, stats summary or search index, so its database cannot be shared
+-- with the servlet stack.
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS users (
+    id          BIGINT       NOT NULL PRIMARY KEY,
+    email       VARCHAR(255),
+    firstName   VARCHAR(255),
+    lastName    VARCHAR(255),
+    birthDate   DATE,
+    address     VARCHAR(255),
+    phoneNumber VARCHAR(255),
+    version     BIGINT,
+    emailNormalized VARCHAR(255) GENERATED ALWAYS AS (LOWER(email)),
+    lastNameNormalized VARCHAR(255) GENERATED ALWAYS AS (LOWER(lastName)),
+    emailDomain VARCHAR(255) GENERATED ALWAYS AS (SUBSTRING(LOWER(email), LOCATE('@', email) + 1)),
+    CONSTRAINT uk_users_email_normalized UNIQUE (emailNormalized)
+);
+
+CREATE INDEX IF NOT EXISTS idx_users_birth_date_id ON users (birthDate, id);
+CREATE INDEX IF NOT EXISTS idx_users_last_name_id ON users (lastNameNormalized, id);
+CREATE INDEX IF NOT EXISTS idx_users_email_domain_id ON users (emailDomain, id);
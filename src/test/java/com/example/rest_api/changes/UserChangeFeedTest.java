@@ -0,0 +1,202 @@
+package com.example.rest_api.changes;
+
+import com.example.rest_api.dto.UserBulkRequestDto;
+import com.example.rest_api.dto.UserChangeDto;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.entity.UserChangeEntity;
+import com.example.rest_api.repository.UserChangeRepository;
+import com.example.rest_api.service.UserBulkService;
+import com.example.rest_api.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class UserChangeFeedTest {
+
+    @Autowired
+    private UserChangeFeed userChangeFeed;
+    @Autowired
+    private UserChangeRepository userChangeRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserBulkService userBulkService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<UserDto> users = new ArrayList<>();
+    private final List<UserChangeFeed.Subscription> subscriptions = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        subscriptions.forEach(UserChangeFeed.Subscription::cancel);
+        UserBulkRequestDto request = new UserBulkRequestDto();
+        request.setIds(users.stream().map(UserDto::getId).toList());
+        userBulkService.deleteUsers(request);
+    }
+
+    private static class CollectingSink implements UserChangeFeed.Sink {
+        private final List<UserChangeDto> changes = new CopyOnWriteArrayList<>();
+        private final CountDownLatch released;
+        private volatile boolean closed;
+
+        private CollectingSink(CountDownLatch released) {
+            this.released = released;
+        }
+
+        @Override
+        public void send(UserChangeDto change) {
+            try {
+                released.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            changes.add(change);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private CollectingSink subscribe(Long afterId) throws InterruptedException {
+        CollectingSink sink = new CollectingSink(new CountDownLatch(0));
+        int subscribers = userChangeFeed.getSubscriberCount();
+        subscriptions.add(userChangeFeed.subscribe(afterId, sink));
+        await(() -> userChangeFeed.getSubscriberCount() > subscribers);
+        return sink;
+    }
+
+    private UserDto createUser(int i) {
+        UserDto user = userService.createUser(new UserDto(null, "changes" + i + "@example.com", "First", "Last",
+                LocalDate.of(1915, 1, 1).plusDays(i), null, null, null));
+        users.add(user);
+        return user;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    void testWritesArePublishedInOrderAndCanBeResumed() throws Exception {
+        CollectingSink sink = subscribe(null);
+
+        UserDto user = createUser(1);
+        UserPatchDto patch = new UserPatchDto();
+        patch.setAddress(Optional.of("Street"));
+        userService.updateUser(user.getId(), patch);
+        userService.deleteUser(user.getId());
+        users.remove(user);
+
+        await(() -> sink.changes.size() >= 3);
+        assertThat(sink.changes).extracting(UserChangeDto::getType).containsExactly(
+                UserChangeDto.Type.CREATED, UserChangeDto.Type.UPDATED, UserChangeDto.Type.DELETED);
+        assertThat(sink.changes).extracting(UserChangeDto::getUserId).containsOnly(user.getId());
+        assertThat(sink.changes).extracting(UserChangeDto::getVersion).containsExactly(0L, 1L, 1L);
+
+        CollectingSink resumed = subscribe(sink.changes.get(0).getId());
+        await(() -> resumed.changes.size() >= 2);
+        assertThat(resumed.changes).containsExactlyElementsOf(sink.changes.subList(1, 3));
+    }
+
+    @Test
+    void testChangesArePublishedInCommitOrderWithoutSkippingLateOnes() throws Exception {
+        CollectingSink sink = subscribe(null);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            userChangeRepository.save(new UserChangeEntity(null, -1L, UserChangeDto.Type.UPDATED, 0L, Instant.now(), null));
+            inserted.countDown();
+            try {
+                commit.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        inserted.await();
+        transactionTemplate.executeWithoutResult(status -> userChangeRepository.save(
+                new UserChangeEntity(null, -2L, UserChangeDto.Type.UPDATED, 0L, Instant.now(), null)));
+
+        // Other tests' writes may still be published, so only the changes of users -1 and -2 are compared
+        Supplier<List<UserChangeDto>> published = () -> sink.changes.stream()
+                .filter(change -> change.getUserId() < 0)
+                .toList();
+        await(() -> published.get().size() >= 1);
+        Thread.sleep(200);
+        assertThat(published.get()).extracting(UserChangeDto::getUserId).containsExactly(-2L);
+
+        commit.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+        await(() -> published.get().size() >= 2);
+        List<UserChangeDto> changes = published.get();
+        assertThat(changes).extracting(UserChangeDto::getUserId).containsExactly(-2L, -1L);
+        assertThat(changes.get(1).getId()).isGreaterThan(changes.get(0).getId());
+
+        CollectingSink resumed = subscribe(changes.get(0).getId());
+        await(() -> resumed.changes.contains(changes.get(1)));
+    }
+
+    @Test
+    void testSlowSubscriberIsDroppedWithoutStallingWriters() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        CollectingSink slow = new CollectingSink(released);
+        int subscribers = userChangeFeed.getSubscriberCount();
+        subscriptions.add(userChangeFeed.subscribe(null, slow));
+        await(() -> userChangeFeed.getSubscriberCount() > subscribers);
+        CollectingSink fast = subscribe(null);
+
+        for (int i = 1; i <= 8; i++) {
+            createUser(i);
+        }
+
+        await(() -> fast.changes.size() >= 8);
+        await(() -> userChangeFeed.getSubscriberCount() == subscribers + 1);
+        released.countDown();
+        await(() -> slow.closed);
+        assertThat(slow.changes.size()).isLessThan(8);
+        assertThat(fast.closed).isFalse();
+    }
+
+    @Test
+    void testExpiredOffsetIsRejected() {
+        assertThat(assertThrows(ResponseStatusException.class, () -> userChangeFeed.subscribe(-1L, null))
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        if (userChangeRepository.findMinPosition() != null && userChangeRepository.findMinPosition() > 1) {
+            assertThat(assertThrows(ResponseStatusException.class, () -> userChangeFeed.subscribe(0L, null))
+                    .getStatusCode()).isEqualTo(HttpStatus.GONE);
+        }
+    }
+}
@@ -1,33 +1,108 @@
 package com.example.rest_api.controller;
 
+import com.example.rest_api.changes.UserChangeFeed;
+import com.example.rest_api.config.HttpFormatConfig;
+import com.example.rest_api.config.UserAdmissionConfig;
+import com.example.rest_api.config.UserLoggingConfig;
+import com.example.rest_api.dto.UserBulkReportDto;
 import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserExportDto;
+import com.example.rest_api.dto.UserExportRequestDto;
+import com.example.rest_api.dto.UserFilterPageDto;
+import com.example.rest_api.dto.UserImportReportDto;
+import com.example.rest_api.dto.UserImportResultDto;
+import com.example.rest_api.dto.UserPageDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserSearchPageDto;
+import com.example.rest_api.dto.UserStatsBucketDto;
+import com.example.rest_api.dto.UserStatsDto;
 import com.example.rest_api.dto.UserUpdateDto;
+import com.example.rest_api.export.UserExportService;
+import com.example.rest_api.handler.ClientErrorLog;
+import com.example.rest_api.monitoring.AccessLog;
+import com.example.rest_api.monitoring.UserMetrics;
+import com.example.rest_api.service.UserBulkService;
+import com.example.rest_api.service.UserFilter;
+import com.example.rest_api.service.UserImportService;
 import com.example.rest_api.service.UserService;
+import com.example.rest_api.service.UserStatsService;
+import com.example.rest_api.web.ZstdCompressionFilter;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(UserController.class)
+@Import({UserMetrics.class, SimpleMeterRegistry.class, UserLoggingConfig.class, ClientErrorLog.class, AccessLog.class,
+        HttpFormatConfig.class, UserAdmissionConfig.class})
 class UserControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserImportService userImportService;
+
+    @MockBean
+    private UserBulkService userBulkService;
+
+    @MockBean
+    private UserStatsService userStatsService;
+
+    @MockBean
+    private UserExportService userExportService;
+
+    @MockBean
+    private UserChangeFeed userChangeFeed;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
@@ -44,11 +119,186 @@ class UserControllerTest {
 
         mockMvc.perform(MockMvcRequestBuilders.post("/users")
                         .contentType("application/json")
-                        .content("{\"email\":\"test@example.com\",\"firstName\":\"TestName\",\"lastName\":\"TestLastName\"}"))
+                        .content("{\"email\":\"test@example.com\",\"firstName\":\"TestName\",\"lastName\":\"TestLastName\",\"birthDate\":\"2000-01-01\"}"))
                 .andExpect(MockMvcResultMatchers.status().isCreated())
                 .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("test@example.com"));
     }
 
+    @Test
+    void testCreateInvalidUser() throws Exception {
+        double validationErrors = meterRegistry.get(UserMetrics.ERRORS).tag("code", "1").counter().count();
+        mockMvc.perform(MockMvcRequestBuilders.post("/users")
+                        .contentType("application/json")
+                        .content("{\"email\":\"test@example.com\",\"firstName\":\"TestName\",\"lastName\":\"TestLastName\"}"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.code").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].field").value("birthDate"));
+        assertEquals(validationErrors + 1, meterRegistry.get(UserMetrics.ERRORS).tag("code", "1").counter().count());
+    }
+
+    @Test
+    void testImportUsers() throws Exception {
+        UserImportReportDto report = new UserImportReportDto(1, 1, 0, List.of(new UserImportResultDto(0, 1L, null)));
+
+        when(userImportService.importUsers(any(InputStream.class))).thenReturn(report);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/users/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"email\":\"test@example.com\",\"firstName\":\"TestName\",\"lastName\":\"TestLastName\"}\n"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.imported").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[0].id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[0].errors").doesNotExist());
+    }
+
+    @Test
+    void testGetUser() throws Exception {
+        UserDto userDto = new UserDto();
+        userDto.setId(1L);
+        userDto.setEmail("test@example.com");
+
+        when(userService.getUser(1L)).thenReturn(userDto);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("test@example.com"));
+    }
+
+    @Test
+    void testGetUsersAsSmileAndCbor() throws Exception {
+        UserDto userDto = new UserDto(1L, "test@example.com", "John", "Doe", LocalDate.of(2001, 1, 1), null, null, null);
+        LocalDate fromDate = LocalDate.of(2000, 1, 1);
+        LocalDate toDate = LocalDate.of(2020, 12, 31);
+        when(userService.searchUsersByBirthDateRange(fromDate, toDate)).thenReturn(List.of(userDto));
+
+        for (ObjectMapper mapper : List.of(SmileMapper.builder().findAndAddModules().build(),
+                CBORMapper.builder().findAndAddModules().build())) {
+            MediaType mediaType = MediaType.parseMediaType(mapper instanceof SmileMapper
+                    ? "application/x-jackson-smile" : MediaType.APPLICATION_CBOR_VALUE);
+            byte[] body = mockMvc.perform(MockMvcRequestBuilders.get("/users?from={from}&to={to}", fromDate, toDate)
+                            .accept(mediaType))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.content().contentType(mediaType))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            assertEquals(List.of(userDto), mapper.readValue(body, new TypeReference<List<UserDto>>() {
+            }));
+        }
+    }
+
+    @Test
+    void testLargeResponsesAreZstdCompressed() throws Exception {
+        LocalDate fromDate = LocalDate.of(2000, 1, 1);
+        LocalDate toDate = LocalDate.of(2020, 12, 31);
+        List<UserDto> users = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            users.add(new UserDto(id, "user" + id + "@example.com", "First", "Last", fromDate.plusDays(id), null, null, null));
+        }
+        when(userService.searchUsersByBirthDateRange(fromDate, toDate)).thenReturn(users);
+        when(userService.getUser(1L)).thenReturn(new UserDto(1L, "user1@example.com", "First", "Last", fromDate, null, null, 0L));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/users?from={from}&to={to}", fromDate, toDate)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, zstd"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.CONTENT_ENCODING, ZstdCompressionFilter.ZSTD))
+                .andReturn();
+        try (InputStream body = new ZstdInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals(users, objectMapper.readValue(body, new TypeReference<List<UserDto>>() {
+            }));
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1").header(HttpHeaders.ACCEPT_ENCODING, "zstd"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("user1@example.com"));
+    }
+
+    @Test
+    void testSearchUsers() throws Exception {
+        UserDto userDto = new UserDto();
+        userDto.setId(1L);
+        userDto.setFirstName("John");
+
+        when(userService.searchUsers("jon", 0, UserService.DEFAULT_SEARCH_PAGE_SIZE))
+                .thenReturn(new UserSearchPageDto(List.of(userDto), 1));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/search").param("q", "jon"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.users[0].firstName").value("John"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(1));
+    }
+
+    @Test
+    void testGetUserByEmail() throws Exception {
+        UserDto userDto = new UserDto();
+        userDto.setId(1L);
+        userDto.setEmail("test@example.com");
+        userDto.setVersion(2L);
+
+        when(userService.getUserByEmail("Test@Example.com")).thenReturn(userDto);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/by-email").param("email", "Test@Example.com"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(1));
+    }
+
+    @Test
+    void testCreateUserWithRegisteredEmail() throws Exception {
+        double conflicts = meterRegistry.get(UserMetrics.ERRORS).tag("code", "4").counter().count();
+        when(userService.createUser(any(UserDto.class))).thenThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLException("Unique index or primary key violation: \"PUBLIC.UK_USERS_EMAIL_NORMALIZED_INDEX_4\"")));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/users")
+                        .contentType("application/json")
+                        .content("{\"email\":\"test@example.com\",\"firstName\":\"TestName\",\"lastName\":\"TestLastName\",\"birthDate\":\"2000-01-01\"}"))
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.code").value(4))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Email is already registered"));
+        assertEquals(conflicts + 1, meterRegistry.get(UserMetrics.ERRORS).tag("code", "4").counter().count());
+    }
+
+    @Test
+    void testGetUserNotModified() throws Exception {
+        UserDto userDto = new UserDto();
+        userDto.setId(1L);
+        userDto.setEmail("test@example.com");
+        userDto.setVersion(3L);
+
+        when(userService.getUser(1L)).thenReturn(userDto);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.version").doesNotExist());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+    }
+
+    @Test
+    void testUpdateUserIfMatch() throws Exception {
+        UserUpdateDto userDto = new UserUpdateDto();
+        userDto.setId(1L);
+        userDto.setEmail("test@example.com");
+        userDto.setVersion(4L);
+
+        when(userService.updateUser(eq(1L), argThat((UserPatchDto dto) -> Long.valueOf(3L).equals(dto.getVersion()))))
+                .thenReturn(userDto);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/users/1")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType("application/json")
+                        .content("{\"email\":\"test@example.com\"}"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"4\""));
+        mockMvc.perform(MockMvcRequestBuilders.patch("/users/1")
+                        .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                        .contentType("application/json")
+                        .content("{\"email\":\"test@example.com\"}"))
+                .andExpect(MockMvcResultMatchers.status().isPreconditionFailed());
+    }
+
     @Test
     void testUpdateUser() throws Exception {
         UserUpdateDto userDto = new UserUpdateDto();
@@ -57,7 +307,7 @@ class UserControllerTest {
         userDto.setAddress("newAddress");
         userDto.setPhoneNumber("newPhoneNumber");
 
-        when(userService.updateUser(any(Long.class), any(UserUpdateDto.class))).thenReturn(userDto);
+        when(userService.updateUser(any(Long.class), any(UserPatchDto.class))).thenReturn(userDto);
 
         mockMvc.perform(MockMvcRequestBuilders.patch("/users/1")
                         .contentType("application/json")
@@ -66,6 +316,61 @@ class UserControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("test@example.com"));
     }
 
+    @Test
+    void testUpdateUserMergePatch() throws Exception {
+        UserUpdateDto userDto = new UserUpdateDto();
+        userDto.setId(1L);
+        userDto.setEmail("test@example.com");
+        userDto.setVersion(1L);
+
+        when(userService.updateUser(eq(1L), argThat((UserPatchDto patch) -> patch.getEmail() == null
+                && Optional.<String>empty().equals(patch.getAddress())
+                && Optional.of("newPhoneNumber").equals(patch.getPhoneNumber()))))
+                .thenReturn(userDto);
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/users/1")
+                        .contentType(UserPatchDto.MEDIA_TYPE)
+                        .content("{\"address\":null,\"phoneNumber\":\"newPhoneNumber\"}"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1\""));
+    }
+
+    @Test
+    void testUpdateUserClearingEmail() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.patch("/users/1")
+                        .contentType(UserPatchDto.MEDIA_TYPE)
+                        .content("{\"email\":null}"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.code").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].field").value("email"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].message").value("Email is required"));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void testDeleteUsersInBulk() throws Exception {
+        when(userBulkService.deleteUsers(argThat(request -> List.of(1L, 2L).equals(request.getIds()))))
+                .thenReturn(new UserBulkReportDto(1, 2, 2L));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/users/bulk/delete")
+                        .contentType("application/json")
+                        .content("{\"ids\":[1,2]}"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.affected").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.lastId").value(2));
+    }
+
+    @Test
+    void testPatchUsersInBulkValidatesPatch() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/users/bulk/patch")
+                        .contentType("application/json")
+                        .content("{\"from\":\"1930-01-01\",\"to\":\"1930-12-31\",\"patch\":{\"email\":\"invalid\"}}"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.code").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.errors[0].field").value("patch.email"));
+        verifyNoInteractions(userBulkService);
+    }
+
     @Test
     void testUpdateAllFields() throws Exception {
         UserDto userDto = new UserDto();
@@ -78,7 +383,7 @@ class UserControllerTest {
 
         mockMvc.perform(MockMvcRequestBuilders.put("/users/1")
                         .contentType("application/json")
-                        .content("{\"email\":\"test@example.com\",\"firstName\":\"John\",\"lastName\":\"Doe\"}"))
+                        .content("{\"email\":\"test@example.com\",\"firstName\":\"John\",\"lastName\":\"Doe\",\"birthDate\":\"2000-01-01\"}"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.jsonPath("$.email").value("test@example.com"));
     }
@@ -117,5 +422,184 @@ class UserControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0].email").value("test1@example.com"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[1].email").value("test2@example.com"));
     }
-}
 
+    @Test
+    void testWideRangeSearchesAreRateLimitedPerClient() throws Exception {
+        LocalDate fromDate = LocalDate.of(1, 1, 1);
+        LocalDate toDate = LocalDate.of(9999, 12, 31);
+        when(userService.searchUsersByBirthDateRange(fromDate, toDate)).thenReturn(List.of());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users?from={from}&to={to}", fromDate, toDate)
+                        .with(remoteAddress("10.1.0.1")))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        // A new client id does not make a new client
+        mockMvc.perform(MockMvcRequestBuilders.get("/users?from={from}&to={to}", fromDate, toDate)
+                        .with(remoteAddress("10.1.0.1"))
+                        .header("X-Client-Id", "wide-searches"))
+                .andExpect(MockMvcResultMatchers.status().isTooManyRequests())
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.RETRY_AFTER))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.code").value(2));
+        assertEquals(1, meterRegistry.get(UserMetrics.ADMISSION_REJECTED).tag("reason", "rate_limited").counter().count());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users?from={from}&to={to}", fromDate, toDate)
+                        .with(remoteAddress("10.1.0.2")))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    private static RequestPostProcessor remoteAddress(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+
+    @Test
+    void testSearchUsersByBirthDateRangeNotModified() throws Exception {
+        LocalDate from = LocalDate.of(2000, 1, 1);
+        LocalDate to = LocalDate.of(2000, 12, 31);
+        when(userService.getBirthDateRangeVersion(from, to)).thenReturn("2-5");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users")
+                        .param("from", "2000-01-01")
+                        .param("to", "2000-12-31")
+                        .header(HttpHeaders.IF_NONE_MATCH, "W/\"2-5\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+        verify(userService, never()).searchUsersByBirthDateRange(from, to);
+    }
+
+    @Test
+    void testSearchUsersByBirthDateRangePage() throws Exception {
+        UserDto userDto = new UserDto();
+        userDto.setId(1L);
+        userDto.setEmail("test1@example.com");
+
+        LocalDate fromDate = LocalDate.of(2000, 1, 1);
+        LocalDate toDate = LocalDate.of(2020, 12, 31);
+
+        when(userService.searchUsersByBirthDateRange(eq(fromDate), eq(toDate), eq(1), isNull()))
+                .thenReturn(new UserPageDto(List.of(userDto), "token"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users?from={from}&to={to}&limit=1", fromDate, toDate))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("Link",
+                        "<http://localhost/users?from=2000-01-01&to=2020-12-31&limit=1&next=token>; rel=\"next\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].email").value("test1@example.com"));
+    }
+
+    @Test
+    void testSearchUsersByBirthDateRangeLastPage() throws Exception {
+        LocalDate fromDate = LocalDate.of(2000, 1, 1);
+        LocalDate toDate = LocalDate.of(2020, 12, 31);
+
+        when(userService.searchUsersByBirthDateRange(fromDate, toDate, null, "token"))
+                .thenReturn(new UserPageDto(List.of(), null));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users")
+                        .param("from", fromDate.toString())
+                        .param("to", toDate.toString())
+                        .param("next", "token"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("Link"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$").isEmpty());
+    }
+
+    @Test
+    void testGetStats() throws Exception {
+        when(userStatsService.getStats(UserStatsService.EMAIL_DOMAIN, 5)).thenReturn(new UserStatsDto(
+                UserStatsService.EMAIL_DOMAIN, 3, List.of(new UserStatsBucketDto("example.com", 2))));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/stats?groupBy=emailDomain&limit=5"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.buckets[0].key").value("example.com"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.buckets[0].count").value(2));
+    }
+
+    @Test
+    void testExportUsers() throws Exception {
+        UserExportRequestDto request = new UserExportRequestDto("csv", null, null, 2);
+        when(userExportService.submit(request)).thenReturn(new UserExportDto("e1", UserExportDto.Status.RUNNING, "csv",
+                null, null, 0, 0, null, null, null, List.of()));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/users/exports")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"format\":\"csv\",\"partitions\":2}"))
+                .andExpect(MockMvcResultMatchers.status().isAccepted())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.LOCATION, "http://localhost/users/exports/e1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.status").value("RUNNING"));
+    }
+
+    @Test
+    void testFollowChangesResumesAfterLastEventId() throws Exception {
+        when(userChangeFeed.subscribe(eq(5L), any(UserChangeFeed.Sink.class))).thenReturn(() -> {
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/changes?after=1")
+                        .header("Last-Event-ID", "5")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted());
+
+        verify(userChangeFeed).subscribe(eq(5L), any(UserChangeFeed.Sink.class));
+    }
+
+    @Test
+    void testFilterUsers() throws Exception {
+        UserDto userDto = new UserDto();
+        userDto.setId(1L);
+        userDto.setEmail("smith@example.com");
+        UserFilter filter = new UserFilter(LocalDate.of(2000, 1, 1), null, "Smith", "example.com", true, null, "id");
+
+        when(userService.filterUsers(filter, 1, null))
+                .thenReturn(new UserFilterPageDto(List.of(userDto), "token", "index=idx_users_last_name_id; estimated-rows=3"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users?from=2000-01-01&lastName=Smith&emailDomain=example.com" +
+                        "&hasPhone=true&sort=id&limit=1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(UserController.QUERY_PLAN_HEADER,
+                        "index=idx_users_last_name_id; estimated-rows=3"))
+                .andExpect(MockMvcResultMatchers.header().string("Link",
+                        "<http://localhost/users?from=2000-01-01&lastName=Smith&emailDomain=example.com" +
+                                "&hasPhone=true&sort=id&limit=1&next=token>; rel=\"next\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].email").value("smith@example.com"));
+        verify(userService, never()).getBirthDateRangeVersion(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamUsersByBirthDateRange() throws Exception {
+        UserDto userDto1 = new UserDto();
+        userDto1.setId(1L);
+        userDto1.setEmail("test1@example.com");
+
+        UserDto userDto2 = new UserDto();
+        userDto2.setId(2L);
+        userDto2.setEmail("test2@example.com");
+
+        LocalDate fromDate = LocalDate.of(2000, 1, 1);
+        LocalDate toDate = LocalDate.of(2020, 12, 31);
+
+        doAnswer(invocation -> {
+            Consumer<UserDto> consumer = invocation.getArgument(2);
+            consumer.accept(userDto1);
+            consumer.accept(userDto2);
+            return null;
+        }).when(userService).streamUsersByBirthDateRange(eq(fromDate), eq(toDate), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/users")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .param("from", fromDate.toString())
+                        .param("to", toDate.toString()))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(MockMvcResultMatchers.content().string(
+                        "{\"id\":1,\"email\":\"test1@example.com\",\"firstName\":null,\"lastName\":null," +
+                                "\"birthDate\":null,\"address\":null,\"phoneNumber\":null}\n" +
+                                "{\"id\":2,\"email\":\"test2@example.com\",\"firstName\":null,\"lastName\":null," +
+                                "\"birthDate\":null,\"address\":null,\"phoneNumber\":null}\n"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.rest_api.datasource;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stands in for replication with H2 snapshots of the primary, changed afterwards so that it shows
+ * which database a read went to.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:users-routing-primary",
+        "user.replicas.enabled=true",
+        "user.replicas.urls=" + ReplicaRoutingTest.REPLICA_1 + "," + ReplicaRoutingTest.REPLICA_2,
+        "user.replicas.max-lag=1h"
+})
+class ReplicaRoutingTest {
+
+    static final String REPLICA_1 = "jdbc:h2:mem:users-routing-replica-1;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_2 = "jdbc:h2:mem:users-routing-replica-2;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private static void asClient(String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Client-Id", client);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private void replicate(Long userId) throws Exception {
+        Path snapshot = Files.createTempFile("users-routing", ".sql");
+        try {
+            new JdbcTemplate(primaryDataSource).execute("SCRIPT TO '" + snapshot + "'");
+            for (String url : List.of(REPLICA_1, REPLICA_2)) {
+                JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(url, "username", "password"));
+                replica.execute("DROP ALL OBJECTS");
+                replica.execute("RUNSCRIPT FROM '" + snapshot + "'");
+                replica.update("UPDATE users SET firstName = 'Replica' WHERE id = ?", userId);
+            }
+        } finally {
+            Files.delete(snapshot);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    void testReadOnlyTransactionsReadFromReplicasExceptRightAfterTheClientsOwnWrites() throws Exception {
+        asClient("writer");
+        UserDto user = userService.createUser(new UserDto(null, "routing@example.com", "First", "Last",
+                LocalDate.of(1990, 1, 1), null, null, null));
+        replicate(user.getId());
+
+        asClient("reader");
+        await(() -> "Replica".equals(userService.getUserByEmail("routing@example.com").getFirstName()));
+
+        asClient("writer");
+        assertThat(userService.getUserByEmail("routing@example.com").getFirstName()).isEqualTo("First");
+
+        asClient("reader");
+        UserPatchDto patch = new UserPatchDto();
+        patch.setAddress(Optional.of("Kyiv"));
+        userService.updateUser(user.getId(), patch);
+        UserDto read = userService.getUserByEmail("routing@example.com");
+        assertThat(read.getFirstName()).isEqualTo("First");
+        assertThat(read.getAddress()).isEqualTo("Kyiv");
+
+        userService.deleteUser(user.getId());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.rest_api.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaSetTest {
+
+    private static final long SECOND_NANOS = 1_000_000_000L;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final DataSource primary = database("replica-set-primary");
+    private final DataSource replica = database("replica-set-replica");
+    // IFEXISTS refuses to create the database, so connecting fails
+    private final DataSource unreachable = new DriverManagerDataSource("jdbc:h2:mem:replica-set-missing;IFEXISTS=TRUE");
+    private final ReplicaSet replicaSet = new ReplicaSet(primary, List.of(replica, unreachable),
+            Duration.ofSeconds(2), Duration.ofMillis(500), nanos::get);
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        new JdbcTemplate(dataSource).execute("CREATE TABLE user_changes (id BIGINT PRIMARY KEY)");
+        return dataSource;
+    }
+
+    private static void append(DataSource dataSource, long... ids) {
+        for (long id : ids) {
+            new JdbcTemplate(dataSource).update("INSERT INTO user_changes (id) VALUES (?)", id);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        replicaSet.close();
+        new JdbcTemplate(primary).execute("DROP ALL OBJECTS");
+        new JdbcTemplate(replica).execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void testServesCaughtUpReplicasOnly() {
+        append(primary, 1, 2, 3);
+        append(replica, 1, 2, 3);
+
+        replicaSet.check();
+        assertThat(replicaSet.next()).isSameAs(replica);
+        assertThat(replicaSet.next()).isSameAs(replica);
+
+        replicaSet.markUnavailable(replica, new SQLException("Connection refused"));
+        assertThat(replicaSet.next()).isNull();
+
+        nanos.addAndGet(SECOND_NANOS);
+        replicaSet.check();
+        assertThat(replicaSet.next()).isSameAs(replica);
+    }
+
+    @Test
+    void testSkipsReplicaLaggingMoreThanMaxLag() {
+        append(primary, 1, 2, 3);
+        append(replica, 1, 2, 3);
+        replicaSet.check();
+
+        append(primary, 4, 5);
+        nanos.set(SECOND_NANOS);
+        replicaSet.check();
+        assertThat(replicaSet.next()).as("within max lag").isSameAs(replica);
+
+        nanos.set(3 * SECOND_NANOS);
+        replicaSet.check();
+        assertThat(replicaSet.next()).as("behind the primary of 2s ago").isNull();
+
+        append(replica, 4, 5);
+        nanos.set(3 * SECOND_NANOS + SECOND_NANOS / 2);
+        replicaSet.check();
+        assertThat(replicaSet.next()).isSameAs(replica);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.rest_api.export;
+
+import com.example.rest_api.config.UserExportConfig;
+import com.example.rest_api.dto.UserBulkRequestDto;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserExportDto;
+import com.example.rest_api.dto.UserExportPartitionDto;
+import com.example.rest_api.dto.UserExportRequestDto;
+import com.example.rest_api.service.UserBulkService;
+import com.example.rest_api.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class UserExportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(1920, 1, 1);
+    private static final LocalDate TO = LocalDate.of(1920, 12, 31);
+
+    @Autowired
+    private UserExportService userExportService;
+    @Autowired
+    private UserExportConfig userExportConfig;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserBulkService userBulkService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<UserDto> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= 5; i++) {
+            users.add(userService.createUser(new UserDto(null, "export" + i + "@example.com", "First", "Last, \"Jr\"",
+                    FROM.plusDays(i), "address", null, null)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserBulkRequestDto request = new UserBulkRequestDto();
+        request.setIds(users.stream().map(UserDto::getId).toList());
+        userBulkService.deleteUsers(request);
+    }
+
+    private UserExportDto awaitCompletion(String exportId) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            UserExportDto export = userExportService.getExport(exportId);
+            if (export.getStatus() != UserExportDto.Status.RUNNING) {
+                return export;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Export " + exportId + " did not finish");
+    }
+
+    private List<String> readFile(String exportId) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(userExportService.getFile(exportId)))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    private String row(UserDto user) {
+        return user.getId() + "," + user.getEmail() + ",First,\"Last, \"\"Jr\"\"\"," + user.getBirthDate() + ",address,,0";
+    }
+
+    @Test
+    void testExportInPartitions() throws Exception {
+        UserExportDto submitted = userExportService.submit(new UserExportRequestDto(null, FROM, TO, 2));
+        assertThat(submitted.getPartitions()).hasSize(2);
+
+        UserExportDto export = awaitCompletion(submitted.getId());
+
+        assertThat(export.getStatus()).isEqualTo(UserExportDto.Status.COMPLETED);
+        assertThat(export.getRows()).isEqualTo(5);
+        assertThat(export.getPartitions()).allMatch(UserExportPartitionDto::isDone);
+        assertThat(readFile(export.getId()))
+                .containsExactlyElementsOf(List.of(UserCsv.HEADER, row(users.get(0)), row(users.get(1)),
+                        row(users.get(2)), row(users.get(3)), row(users.get(4))));
+        assertThat(Files.size(userExportService.getFile(export.getId()))).isEqualTo(export.getBytes());
+    }
+
+    @Test
+    void testInterruptedExportResumesAfterLastCheckpoint() throws Exception {
+        String exportId = UUID.randomUUID().toString();
+        long afterId = users.get(0).getId() - 1;
+        UserExportDto interrupted = new UserExportDto(exportId, UserExportDto.Status.RUNNING, UserExportService.CSV, FROM, TO,
+                2, 0, null, Instant.now(), null, List.of(new UserExportPartitionDto(
+                afterId, users.get(4).getId(), users.get(1).getId(), 2, 0, false)));
+        Path directory = Files.createDirectories(Path.of(userExportConfig.getDirectory(), exportId));
+        objectMapper.writeValue(directory.resolve(UserExportService.STATE_FILE).toFile(), interrupted);
+
+        assertThat(userExportService.getExport(exportId).getStatus()).isEqualTo(UserExportDto.Status.FAILED);
+        assertThat(assertThrows(ResponseStatusException.class, () -> userExportService.getFile(exportId)).getStatusCode())
+                .isEqualTo(HttpStatus.CONFLICT);
+
+        userExportService.resume(exportId);
+        UserExportDto export = awaitCompletion(exportId);
+
+        assertThat(export.getStatus()).isEqualTo(UserExportDto.Status.COMPLETED);
+        assertThat(export.getRows()).isEqualTo(5);
+        assertThat(readFile(exportId)).containsExactly(UserCsv.HEADER, row(users.get(2)), row(users.get(3)), row(users.get(4)));
+        assertThat(assertThrows(ResponseStatusException.class, () -> userExportService.resume(exportId)).getStatusCode())
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void testInvalidExports() {
+        assertThat(assertThrows(ResponseStatusException.class, () -> userExportService.submit(
+                new UserExportRequestDto("parquet", null, null, null))).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(assertThrows(ResponseStatusException.class, () -> userExportService.submit(
+                new UserExportRequestDto(null, null, null, 0))).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(assertThrows(ResponseStatusException.class, () -> userExportService.getExport("missing"))
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(assertThrows(ResponseStatusException.class, () -> userExportService.getExport(UUID.randomUUID().toString()))
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+}
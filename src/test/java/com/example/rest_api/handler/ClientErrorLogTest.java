@@ -0,0 +1,49 @@
+package com.example.rest_api.handler;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ClientErrorLogTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final ClientErrorLog clientErrorLog = new ClientErrorLog(2, nanos::get);
+    private final Logger log = mock(Logger.class);
+
+    @BeforeEach
+    void setUp() {
+        when(log.isWarnEnabled()).thenReturn(true);
+    }
+
+    @Test
+    void testLimitsLinesPerSecond() {
+        for (int i = 0; i < 5; i++) {
+            clientErrorLog.warn(log, "{} - {}", 404, "User not found");
+        }
+        verify(log, times(2)).warn(eq("{} - {}"), any(Object[].class));
+
+        nanos.set(1_000_000_000L);
+        clientErrorLog.warn(log, "{} - {}", 404, "User not found");
+
+        verify(log).warn("Suppressed {} client error log lines", 3);
+        verify(log, times(3)).warn(eq("{} - {}"), any(Object[].class));
+    }
+
+    @Test
+    void testSkipsWhenWarnDisabled() {
+        when(log.isWarnEnabled()).thenReturn(false);
+
+        clientErrorLog.warn(log, "{} - {}", 404, "User not found");
+
+        verify(log, times(0)).warn(eq("{} - {}"), any(Object[].class));
+    }
+}
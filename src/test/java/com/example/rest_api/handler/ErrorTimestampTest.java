@@ -0,0 +1,44 @@
+package com.example.rest_api.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorTimestampTest {
+
+    private final AtomicLong millis = new AtomicLong(Instant.parse("2024-05-01T10:15:30.250Z").toEpochMilli());
+    private final ErrorTimestamp timestamp = new ErrorTimestamp(new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+    });
+
+    @Test
+    void testFormatsOncePerSecond() {
+        String first = timestamp.now();
+        assertThat(first).isEqualTo("01-05-2024 10:15:30");
+
+        millis.addAndGet(500);
+        assertThat(timestamp.now()).isSameAs(first);
+
+        millis.addAndGet(500);
+        assertThat(timestamp.now()).isEqualTo("01-05-2024 10:15:31");
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.rest_api.mapper;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserUpdateDto;
+import com.example.rest_api.entity.UserEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserMapperTest {
+
+    private final UserMapper mapper = new UserMapperImpl();
+    UserEntity userEntity;
+    UserDto userDto;
+
+    @BeforeEach
+    void setUp() {
+        userEntity = new UserEntity(1L, "email@gmail.com",
+                "firstName", "lastName", LocalDate.of(2000, 1, 1),
+                "address", "phoneNumber", 0L, null, null, null);
+        userDto = new UserDto(1L, "email@gmail.com",
+                "firstName", "lastName", LocalDate.of(2000, 1, 1),
+                "address", "phoneNumber", 0L);
+    }
+
+    @Test
+    void testToDto() {
+        assertThat(mapper.toDto(userEntity)).isEqualTo(userDto);
+    }
+
+    @Test
+    void testToUpdateDto() {
+        UserUpdateDto userUpdateDto = mapper.toUpdateDto(userEntity);
+        assertThat(userUpdateDto.getId()).isEqualTo(1L);
+        assertThat(userUpdateDto.getEmail()).isEqualTo("email@gmail.com");
+        assertThat(userUpdateDto.getAddress()).isEqualTo("address");
+        assertThat(userUpdateDto.getPhoneNumber()).isEqualTo("phoneNumber");
+    }
+
+    @Test
+    void testToEntity() {
+        userDto.setAddress(null);
+        UserEntity mapped = mapper.toEntity(userDto);
+        assertThat(mapped.getId()).isEqualTo(1L);
+        assertThat(mapped.getEmail()).isEqualTo(userDto.getEmail());
+        assertThat(mapped.getFirstName()).isEqualTo(userDto.getFirstName());
+        assertThat(mapped.getLastName()).isEqualTo(userDto.getLastName());
+        assertThat(mapped.getBirthDate()).isEqualTo(userDto.getBirthDate());
+        assertThat(mapped.getAddress()).isNull();
+        assertThat(mapped.getPhoneNumber()).isEqualTo(userDto.getPhoneNumber());
+    }
+
+    @Test
+    void testNullSource() {
+        assertThat(mapper.toDto(null)).isNull();
+        assertThat(mapper.toEntity(null)).isNull();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.rest_api.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogTest {
+
+    private final AccessLog unsampled = new AccessLog(0.0, Duration.ofSeconds(1));
+
+    @Test
+    void testAlwaysLogsServerErrorsAndSlowRequests() {
+        assertThat(unsampled.shouldLog(500, 0)).isTrue();
+        assertThat(unsampled.shouldLog(200, Duration.ofSeconds(2).toNanos())).isTrue();
+    }
+
+    @Test
+    void testSamplesOtherRequests() {
+        assertThat(unsampled.shouldLog(200, 0)).isFalse();
+        assertThat(unsampled.shouldLog(404, 0)).isFalse();
+        assertThat(new AccessLog(1.0, Duration.ofSeconds(1)).shouldLog(200, 0)).isTrue();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.rest_api.monitoring;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import static org.hamcrest.Matchers.containsString;
+
+@SpringBootTest(properties = {
+        "management.endpoints.web.exposure.include=prometheus",
+        "management.metrics.distribution.percentiles-histogram.http.server.requests=true"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class PrometheusEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testUserMetricsAreExposed() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/users")
+                        .param("from", "2000-01-01")
+                        .param("to", "2000-12-31"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}", Long.MAX_VALUE))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(containsString(
+                        "user_service_seconds_bucket{class=\"com.example.rest_api.service.UserService\"")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("spring_data_repository_invocations_seconds")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("user_search_results_users_count 1.0")))
+                .andExpect(MockMvcResultMatchers.content().string(containsString("user_errors_total{code=\"2\",} 1.0")));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.rest_api.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(20));
+
+    @Test
+    void testReportAggregatesBySite() {
+        monitor.record("com.example.Foo.bar:10", Duration.ofMillis(30), "first");
+        monitor.record("com.example.Foo.bar:10", Duration.ofMillis(50), "second");
+        monitor.record("com.example.Baz.qux:20", Duration.ofMillis(25), "third");
+
+        assertThat(monitor.report())
+                .containsEntry("com.example.Foo.bar:10", new VirtualThreadPinningMonitor.PinningReport(2, 80, 50))
+                .containsEntry("com.example.Baz.qux:20", new VirtualThreadPinningMonitor.PinningReport(1, 25, 25));
+    }
+
+    @Test
+    void testStartWithoutVirtualThreads() {
+        monitor.start();
+        assertThat(monitor.isRunning()).isEqualTo(Runtime.version().feature() >= 21);
+        monitor.stop();
+        assertThat(monitor.isRunning()).isFalse();
+    }
+}
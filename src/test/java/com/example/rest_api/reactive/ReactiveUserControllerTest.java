@@ -0,0 +1,209 @@
+package com.example.rest_api.reactive;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserPatchDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.r2dbc.url=r2dbc:h2:mem:///reactive-users-db;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("reactive")
+class ReactiveUserControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private UserDto create(String email, String birthDate) {
+        return webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"email\":\"" + email + "\",\"firstName\":\"First\",\"lastName\":\"Last\"," +
+                        "\"birthDate\":\"" + birthDate + "\"}")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(UserDto.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Test
+    void testCreateAndGetUser() {
+        UserDto created = create("reactive@example.com", "1990-05-05");
+
+        String eTag = webTestClient.get().uri("/users/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("reactive@example.com")
+                .returnResult()
+                .getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/users/{id}", created.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void testCreateInvalidUser() {
+        webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"email\":\"invalid\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"1990-01-01\"}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(1)
+                .jsonPath("$.errors[0].field").isEqualTo("email");
+
+        webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"email\":\"young@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"2020-01-01\"}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(3);
+    }
+
+    @Test
+    void testEmailIsUniqueIgnoringCase() {
+        UserDto created = create("unique@example.com", "1990-05-05");
+
+        webTestClient.get().uri("/users/by-email?email={email}", "Unique@Example.com")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(created.getId());
+
+        webTestClient.post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"email\":\"UNIQUE@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"1990-01-01\"}")
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(4)
+                .jsonPath("$.message").isEqualTo("Email is already registered");
+    }
+
+    @Test
+    void testGetMissingUser() {
+        webTestClient.get().uri("/users/{id}", Long.MAX_VALUE)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(2);
+    }
+
+    @Test
+    void testUpdateUserIfMatch() {
+        UserDto created = create("patch@example.com", "1980-01-01");
+
+        webTestClient.patch().uri("/users/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"email\":\"patched@example.com\",\"address\":\"Street\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("patched@example.com")
+                .jsonPath("$.address").isEqualTo("Street");
+
+        webTestClient.put().uri("/users/{id}", created.getId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"email\":\"put@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"1980-01-01\"}")
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        webTestClient.get().uri("/users/{id}", created.getId())
+                .exchange()
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("patched@example.com")
+                .jsonPath("$.firstName").isEqualTo("First");
+
+        webTestClient.patch().uri("/users/{id}", created.getId())
+                .contentType(MediaType.parseMediaType(UserPatchDto.MEDIA_TYPE))
+                .bodyValue("{\"address\":null}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"2\"")
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("patched@example.com")
+                .jsonPath("$.address").doesNotExist();
+    }
+
+    @Test
+    void testSearchAndStreamUsersByBirthDateRange() {
+        UserDto first = create("range1@example.com", "1950-03-01");
+        UserDto second = create("range2@example.com", "1950-03-02");
+        create("range3@example.com", "1950-03-03");
+
+        webTestClient.get().uri("/users?from=1950-03-01&to=1950-03-02")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].id").isEqualTo(second.getId());
+
+        webTestClient.get().uri("/users?from=1950-03-01&to=1950-03-03&limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueMatches(HttpHeaders.LINK, "<.*next=.*>; rel=\"next\"")
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo(first.getId());
+
+        assertThat(webTestClient.get().uri("/users?from=1950-03-01&to=1950-03-03")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(UserDto.class)
+                .getResponseBody()
+                .map(UserDto::getEmail)
+                .collectList()
+                .block())
+                .containsExactly("range1@example.com", "range2@example.com", "range3@example.com");
+    }
+
+    @Test
+    void testImportUsers() {
+        webTestClient.post().uri("/users/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"email\":\"bulk1@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"1970-01-01\"}\n" +
+                        "{\"email\":\"bulk2@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"2020-01-01\"}\n" +
+                        "{\"email\":\"bulk3@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"1970-01-01\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.total").isEqualTo(3)
+                .jsonPath("$.imported").isEqualTo(2)
+                .jsonPath("$.results[0].id").isNumber()
+                .jsonPath("$.results[1].errors[0].field").isEqualTo("birthDate")
+                .jsonPath("$.results[2].id").isNumber();
+    }
+
+    @Test
+    void testImportFailsOnlyTheConflictingRecords() {
+        webTestClient.post().uri("/users/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"email\":\"conflict1@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"1970-01-01\"}\n" +
+                        "{\"email\":\"CONFLICT1@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"1970-01-01\"}\n" +
+                        "{\"email\":\"conflict2@example.com\",\"firstName\":\"First\",\"lastName\":\"Last\",\"birthDate\":\"1970-01-01\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.imported").isEqualTo(2)
+                .jsonPath("$.results[0].id").isNumber()
+                .jsonPath("$.results[1].errors[0].field").isEqualTo("email")
+                .jsonPath("$.results[1].errors[0].message").isEqualTo("Email is already registered")
+                .jsonPath("$.results[2].id").isNumber();
+    }
+}
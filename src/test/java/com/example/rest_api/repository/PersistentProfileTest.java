@@ -0,0 +1,61 @@
+package com.example.rest_api.repository;
+
+import com.example.rest_api.entity.UserEntity;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the persistent profile on a fresh database file. Hibernate validates the entity against
+ * the schema built by the migrations, so a migration that drifts from {@link UserEntity} fails here.
+ */
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@ActiveProfiles("persistent")
+class PersistentProfileTest {
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void databaseDirectory(DynamicPropertyRegistry registry) {
+        registry.add("user.persistence.directory", directory::toString);
+    }
+
+    @Test
+    void testMigrationsCreateSchemaInDatabaseFile() {
+        assertThat(flyway.info().current().getVersion().getVersion()).isEqualTo("7");
+        assertThat(Files.exists(directory.resolve("users-db.mv.db"))).isTrue();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'IDX_USERS_BIRTH_DATE_ID'",
+                Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME IN " +
+                        "('IDX_USERS_LAST_NAME_ID', 'IDX_USERS_EMAIL_DOMAIN_ID')",
+                Integer.class)).isEqualTo(2);
+
+        UserEntity saved = userRepository.saveAndFlush(new UserEntity(null, "file@example.com", "First", "Last",
+                LocalDate.of(1990, 1, 1), null, null, null, null, null, null));
+        assertThat(userRepository.findById(saved.getId())).isPresent();
+    }
+}
@@ -1,30 +1,46 @@
 package com.example.rest_api.repository;
 
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserStatsBucketDto;
+import com.example.rest_api.dto.UserUpdateDto;
 import com.example.rest_api.entity.UserEntity;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DataJpaTest
 class UserRepositoryTest {
 
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private TestEntityManager entityManager;
     UserEntity userEntity;
 
     @BeforeEach
     void setUp() {
-        userEntity = new UserEntity(1L, "email@gmail.com",
+        userEntity = new UserEntity(null, "email@gmail.com",
                 "firstName", "lastName", LocalDate.of(2000, 1, 1),
-                "address", "phoneNumber");
-        userRepository.save(userEntity);
+                "address", "phoneNumber", null, null, null, null);
+        userEntity = userRepository.save(userEntity);
     }
 
     @AfterEach
@@ -51,4 +67,164 @@ class UserRepositoryTest {
         assertThat(userEntityList.isEmpty()).isTrue();
     }
 
+    @Test
+    void testFindDtoByBirthDateBetween() {
+        List<UserDto> userDtoList = userRepository.findDtoByBirthDateBetween(LocalDate.of(1995, 1, 1), LocalDate.of(2005, 1, 1));
+        assertThat(userDtoList).hasSize(1);
+        assertThat(userDtoList.get(0).getId()).isEqualTo(userEntity.getId());
+        assertThat(userDtoList.get(0).getEmail()).isEqualTo(userEntity.getEmail());
+        assertThat(userDtoList.get(0).getBirthDate()).isEqualTo(userEntity.getBirthDate());
+        assertThat(userDtoList.get(0).getPhoneNumber()).isEqualTo(userEntity.getPhoneNumber());
+    }
+
+    @Test
+    void testFindDtoByEmailIgnoresCase() {
+        Optional<UserDto> found = userRepository.findDtoByEmail("Email@Gmail.COM");
+        assertThat(found).isPresent();
+        assertThat(found.get().getId()).isEqualTo(userEntity.getId());
+        assertThat(found.get().getEmail()).isEqualTo("email@gmail.com");
+        assertThat(userRepository.findDtoByEmail("other@gmail.com")).isEmpty();
+    }
+
+    @Test
+    void testSaveDuplicateEmailIgnoringCase() {
+        UserEntity duplicate = new UserEntity(null, "EMAIL@gmail.com",
+                "firstName", "lastName", LocalDate.of(2000, 1, 1),
+                null, null, null, null, null, null);
+        userRepository.flush();
+        assertThatThrownBy(() -> userRepository.saveAndFlush(duplicate))
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining(UserEntity.EMAIL_UNIQUE_CONSTRAINT.toUpperCase());
+        // Drop the failed insert so that tearDown does not flush it again
+        entityManager.clear();
+    }
+
+    @Test
+    void testFindVersionTagByBirthDateBetween() {
+        LocalDate from = LocalDate.of(1995, 1, 1);
+        LocalDate to = LocalDate.of(2005, 1, 1);
+        long id = userEntity.getId();
+        assertThat(userRepository.findVersionTagByBirthDateBetween(from, to)).isEqualTo("1-" + id + "-0-" + id);
+
+        userEntity.setAddress("new address");
+        userRepository.saveAndFlush(userEntity);
+        assertThat(userEntity.getVersion()).isEqualTo(1L);
+        assertThat(userRepository.findVersionTagByBirthDateBetween(from, to)).isEqualTo("1-" + id + "-1-" + id);
+        assertThat(userRepository.findVersionTagByBirthDateBetween(LocalDate.of(2001, 1, 1), to)).isEqualTo("0-0-0-0");
+
+        // One version-0 user replaced by another leaves the count and version sum as they were
+        UserEntity other = userRepository.saveAndFlush(new UserEntity(null, "other@gmail.com",
+                "firstName", "lastName", LocalDate.of(2000, 1, 1), null, null, null, null, null, null));
+        String before = userRepository.findVersionTagByBirthDateBetween(from, to);
+        userRepository.delete(other);
+        userRepository.saveAndFlush(new UserEntity(null, "replacement@gmail.com",
+                "firstName", "lastName", LocalDate.of(2000, 1, 1), null, null, null, null, null, null));
+        assertThat(userRepository.findVersionTagByBirthDateBetween(from, to)).isNotEqualTo(before);
+    }
+
+    @Test
+    void testFindPageByBirthDateAfter() {
+        UserEntity second = userRepository.save(new UserEntity(null, "second@gmail.com",
+                "firstName", "lastName", LocalDate.of(2000, 1, 1),
+                "address", "phoneNumber", null, null, null, null));
+        UserEntity third = userRepository.save(new UserEntity(null, "third@gmail.com",
+                "firstName", "lastName", LocalDate.of(2001, 1, 1),
+                "address", "phoneNumber", null, null, null, null));
+        LocalDate toDate = LocalDate.of(2005, 1, 1);
+
+        List<UserDto> firstPage = userRepository.findPageByBirthDateAfter(
+                LocalDate.of(1995, 1, 1), Long.MIN_VALUE, toDate, PageRequest.ofSize(2));
+        assertThat(firstPage).extracting(UserDto::getEmail).containsExactly("email@gmail.com", "second@gmail.com");
+
+        UserDto last = firstPage.get(1);
+        List<UserDto> secondPage = userRepository.findPageByBirthDateAfter(
+                last.getBirthDate(), last.getId(), toDate, PageRequest.ofSize(2));
+        assertThat(secondPage).extracting(UserDto::getId).containsExactly(third.getId());
+        assertThat(second.getId()).isGreaterThan(firstPage.get(0).getId());
+    }
+
+    @Test
+    void testPatch() {
+        UserPatchDto patch = new UserPatchDto();
+        patch.setEmail(Optional.of("patched@gmail.com"));
+        patch.setAddress(Optional.empty());
+        patch.setVersion(0L);
+
+        UserUpdateDto updated = userRepository.patch(userEntity.getId(), patch).orElseThrow();
+        assertThat(updated.getId()).isEqualTo(userEntity.getId());
+        assertThat(updated.getEmail()).isEqualTo("patched@gmail.com");
+        assertThat(updated.getAddress()).isNull();
+        assertThat(updated.getPhoneNumber()).isEqualTo("phoneNumber");
+        assertThat(updated.getVersion()).isEqualTo(1L);
+
+        UserDto stored = userRepository.findDtoByBirthDateBetween(userEntity.getBirthDate(), userEntity.getBirthDate()).get(0);
+        assertThat(stored.getEmail()).isEqualTo("patched@gmail.com");
+        assertThat(stored.getAddress()).isNull();
+        assertThat(stored.getFirstName()).isEqualTo("firstName");
+
+        assertThat(userRepository.patch(userEntity.getId(), patch)).isEmpty();
+        patch.setVersion(null);
+        assertThat(userRepository.patch(-1L, patch)).isEmpty();
+    }
+
+    @Test
+    void testFindDtoPageByNormalizedColumns() {
+        UserEntity smith = userRepository.save(new UserEntity(null, "Smith@Example.com",
+                "firstName", "Smith", LocalDate.of(1990, 1, 1),
+                null, "phoneNumber", null, null, null, null));
+        userRepository.save(new UserEntity(null, "smith@other.com",
+                "firstName", "SMITH", LocalDate.of(1991, 1, 1),
+                null, null, null, null, null, null));
+        Specification<UserEntity> smiths = (user, query, builder) -> builder.equal(user.get("lastNameNormalized"), "smith");
+        Specification<UserEntity> exampleDomain = (user, query, builder) -> builder.equal(user.get("emailDomain"), "example.com");
+
+        assertThat(userRepository.countUpTo(smiths, 10)).isEqualTo(2);
+        assertThat(userRepository.countUpTo(smiths, 1)).isEqualTo(1);
+        assertThat(userRepository.findDtoPage(smiths.and(exampleDomain), Sort.by("id"), 10))
+                .extracting(UserDto::getId).containsExactly(smith.getId());
+        assertThat(userRepository.findDtoPage(Specification.where(null), Sort.by("birthDate", "id"), 2))
+                .extracting(UserDto::getLastName).containsExactly("Smith", "SMITH");
+    }
+
+    @Test
+    void testStatsFromUsersAndSummaryAgree() {
+        UserEntity other = userRepository.save(new UserEntity(null, "other@Example.com",
+                "firstName", "lastName", LocalDate.of(1990, 6, 15),
+                null, null, null, null, null, null));
+        userRepository.rebuildStatsSummary();
+
+        for (boolean fromSummary : new boolean[]{false, true}) {
+            assertThat(userRepository.countUsers(fromSummary)).isEqualTo(2);
+            assertThat(userRepository.countByBirthYear(fromSummary)).containsExactly(
+                    new UserStatsBucketDto("1990", 1), new UserStatsBucketDto("2000", 1));
+            assertThat(userRepository.countByBirthMonth(fromSummary)).containsExactly(
+                    new UserStatsBucketDto("1990-06", 1), new UserStatsBucketDto("2000-01", 1));
+            assertThat(userRepository.countByEmailDomain(1, fromSummary)).containsExactly(
+                    new UserStatsBucketDto("example.com", 1));
+            Map<String, LocalDate> brackets = new LinkedHashMap<>();
+            brackets.put("old", LocalDate.of(1995, 1, 1));
+            brackets.put("young", null);
+            assertThat(userRepository.countByBirthDateBrackets(brackets, fromSummary)).containsExactly(
+                    new UserStatsBucketDto("old", 1), new UserStatsBucketDto("young", 1));
+        }
+
+        UserStatsDelta delta = new UserStatsDelta();
+        userRepository.addToStatsDelta(delta, List.of(other.getId()), -1);
+        userRepository.delete(other);
+        userRepository.addToStatsDelta(delta, List.of(userEntity.getId()), 1);
+        assertThat(delta.getEmailDomains()).containsOnly(Map.entry("example.com", -1L), Map.entry("gmail.com", 1L));
+        userRepository.applyStatsDelta(delta);
+        assertThat(userRepository.countUsers(true)).isEqualTo(2);
+        assertThat(userRepository.countByBirthYear(true)).containsExactly(new UserStatsBucketDto("2000", 2));
+        assertThat(userRepository.countByEmailDomain(10, true)).containsExactly(new UserStatsBucketDto("gmail.com", 2));
+    }
+
+    @Test
+    void testStreamByBirthDateBetween() {
+        try (Stream<UserDto> users = userRepository.streamByBirthDateBetween(
+                LocalDate.of(1995, 1, 1), LocalDate.of(2005, 1, 1))) {
+            assertThat(users.toList()).extracting(UserDto::getEmail).containsExactly(userEntity.getEmail());
+        }
+    }
+
 }
@@ -0,0 +1,154 @@
+package com.example.rest_api.search;
+
+import com.example.rest_api.config.UserSearchConfig;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class UserSearchIndexTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserSearchIndex userSearchIndex;
+    AutoCloseable autoCloseable;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        userSearchIndex = new UserSearchIndex(userSearchConfig(), userRepository, Optional.empty());
+        userSearchIndex.rebuildIfStale();
+        userSearchIndex.add(List.of(
+                user(1L, "John", "Smith", "1 Elm Street"),
+                user(2L, "Johnny", "Smithers", "2 Oak Avenue"),
+                user(3L, "Mary", "Jones", "3 Smith Road")));
+    }
+
+    private static UserSearchConfig userSearchConfig() {
+        UserSearchConfig userSearchConfig = new UserSearchConfig();
+        ReflectionTestUtils.setField(userSearchConfig, "directory", "");
+        ReflectionTestUtils.setField(userSearchConfig, "maxStaleness", Duration.ZERO);
+        ReflectionTestUtils.setField(userSearchConfig, "maxResults", 100);
+        return userSearchConfig;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        userSearchIndex.close();
+        autoCloseable.close();
+    }
+
+    private static UserDto user(long id, String firstName, String lastName, String address) {
+        return new UserDto(id, null, firstName, lastName, null, address, null, 0L);
+    }
+
+    @Test
+    void testExactMatchRanksAbovePrefixMatch() {
+        UserSearchIndex.Hits hits = userSearchIndex.search("Smith", 0, 10);
+        assertThat(hits.ids()).hasSize(3).startsWith(1L);
+        assertThat(hits.total()).isEqualTo(3);
+
+        assertThat(userSearchIndex.search("john", 0, 10).ids()).containsExactly(1L, 2L);
+        assertThat(userSearchIndex.search("smi", 0, 10).ids()).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    void testTypoAndMultipleWords() {
+        assertThat(userSearchIndex.search("jonh", 0, 10).ids()).containsExactly(1L);
+        assertThat(userSearchIndex.search("Mary Road", 0, 10).ids()).containsExactly(3L);
+        assertThat(userSearchIndex.search("mary elm", 0, 10).ids()).isEmpty();
+        assertThat(userSearchIndex.search("!!", 0, 10).ids()).isEmpty();
+    }
+
+    @Test
+    void testPagination() {
+        List<Long> all = userSearchIndex.search("smith", 0, 10).ids();
+        assertThat(userSearchIndex.search("smith", 1, 1).ids()).containsExactly(all.get(1));
+        assertThat(userSearchIndex.search("smith", 3, 1).ids()).isEmpty();
+    }
+
+    @Test
+    void testUpdateAndRemove() {
+        userSearchIndex.index(user(1L, "Jack", "Smith", null));
+        assertThat(userSearchIndex.search("john", 0, 10).ids()).containsExactly(2L);
+
+        userSearchIndex.remove(List.of(2L));
+        assertThat(userSearchIndex.search("smithers", 0, 10).ids()).isEmpty();
+    }
+
+    @Test
+    void testReindexReadsCurrentUsers() {
+        when(userRepository.findDtoByIdIn(List.of(1L, 2L))).thenReturn(List.of(user(1L, "John", "Smith", "9 Pine Court")));
+
+        userSearchIndex.reindex(List.of(1L, 2L));
+
+        assertThat(userSearchIndex.search("pine", 0, 10).ids()).containsExactly(1L);
+        assertThat(userSearchIndex.search("johnny", 0, 10).ids()).isEmpty();
+    }
+
+    @Test
+    void testWritesWaitForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userSearchIndex.index(user(4L, "Walter", "White", null));
+            assertThat(userSearchIndex.search("walter", 0, 10).ids()).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(userSearchIndex.search("walter", 0, 10).ids()).containsExactly(4L);
+    }
+
+    @Test
+    void testRebuildFromRepository() throws Exception {
+        when(userRepository.count()).thenReturn(1L);
+        when(userRepository.findDtoPageAfterId(anyLong(), any(PageRequest.class)))
+                .thenReturn(List.of(user(5L, "Rebuilt", "User", null)))
+                .thenReturn(List.of());
+
+        userSearchIndex.rebuildIfStale();
+
+        assertThat(userSearchIndex.search("rebuilt", 0, 10).ids()).containsExactly(5L);
+        assertThat(userSearchIndex.search("smith", 0, 10).ids()).isEmpty();
+    }
+
+    @Test
+    void testRebuildFromShards() throws Exception {
+        clearInvocations(userRepository);
+        ShardedUserRepository shards = mock(ShardedUserRepository.class);
+        when(shards.count()).thenReturn(1L);
+        when(shards.findPageAfterId(anyLong(), anyInt()))
+                .thenReturn(List.of(user(6L, "Sharded", "User", null)))
+                .thenReturn(List.of());
+
+        try (UserSearchIndex shardedIndex = new UserSearchIndex(userSearchConfig(), userRepository, Optional.of(shards))) {
+            shardedIndex.rebuildIfStale();
+
+            assertThat(shardedIndex.search("sharded", 0, 10).ids()).containsExactly(6L);
+        }
+        verifyNoInteractions(userRepository);
+    }
+}
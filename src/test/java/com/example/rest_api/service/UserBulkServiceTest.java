@@ -0,0 +1,140 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.config.CacheConfig;
+import com.example.rest_api.dto.UserBulkReportDto;
+import com.example.rest_api.dto.UserBulkRequestDto;
+import com.example.rest_api.dto.UserChangeDto;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserStatsBucketDto;
+import com.example.rest_api.entity.UserChangeEntity;
+import com.example.rest_api.repository.UserChangeRepository;
+import com.example.rest_api.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class UserBulkServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(1930, 1, 1);
+    private static final LocalDate TO = LocalDate.of(1930, 12, 31);
+
+    @Autowired
+    private UserBulkService userBulkService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserStatsService userStatsService;
+    @Autowired
+    private UserChangeRepository userChangeRepository;
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final List<UserDto> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= 5; i++) {
+            users.add(userService.createUser(new UserDto(null, "bulk" + i + "@example.com", "First", "Last",
+                    FROM.plusDays(i), "address", "phoneNumber", null)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Through the bulk service, so that the statistics summary stays in step
+        UserBulkRequestDto request = new UserBulkRequestDto();
+        request.setIds(users.stream().map(UserDto::getId).toList());
+        userBulkService.deleteUsers(request);
+    }
+
+    @Test
+    void testDeleteUsersByIds() {
+        Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+        assertThat(cache.get(users.get(0).getId())).isNotNull();
+        UserBulkRequestDto request = new UserBulkRequestDto();
+        request.setIds(List.of(users.get(2).getId(), users.get(0).getId(), users.get(1).getId(), -1L));
+
+        assertThat(userBulkService.deleteUsers(request)).isEqualTo(new UserBulkReportDto(2, 3, users.get(2).getId()));
+        assertThat(cache.get(users.get(0).getId())).isNull();
+        assertThat(userRepository.existsById(users.get(0).getId())).isFalse();
+        assertThat(userRepository.existsById(users.get(3).getId())).isTrue();
+
+        assertThat(userBulkService.deleteUsers(request).getAffected()).isZero();
+    }
+
+    @Test
+    void testDeleteUsersByBirthDateRangeResumesAfterId() {
+        UserBulkRequestDto request = new UserBulkRequestDto();
+        request.setFrom(FROM);
+        request.setTo(TO);
+        request.setAfterId(users.get(1).getId());
+
+        UserBulkReportDto report = userBulkService.deleteUsers(request);
+
+        assertThat(report.getAffected()).isEqualTo(3);
+        assertThat(report.getLastId()).isEqualTo(users.get(4).getId());
+        assertThat(userService.searchUsersByBirthDateRange(FROM, TO)).extracting(UserDto::getId)
+                .containsExactly(users.get(0).getId(), users.get(1).getId());
+        assertThat(userStatsService.getStats(UserStatsService.BIRTH_YEAR, null).getBuckets())
+                .contains(new UserStatsBucketDto("1930", 2));
+    }
+
+    @Test
+    void testPatchUsersIsIdempotent() {
+        UserPatchDto patch = new UserPatchDto();
+        patch.setAddress(Optional.of("purged"));
+        patch.setPhoneNumber(Optional.empty());
+        UserBulkRequestDto request = new UserBulkRequestDto();
+        request.setFrom(FROM);
+        request.setTo(TO);
+        request.setPatch(patch);
+
+        assertThat(userBulkService.patchUsers(request).getAffected()).isEqualTo(5);
+        assertThat(userBulkService.patchUsers(request).getAffected()).isZero();
+        List<Long> ids = users.stream().map(UserDto::getId).toList();
+        assertThat(userChangeRepository.findAll())
+                .filteredOn(change -> ids.contains(change.getUserId()) && change.getType() == UserChangeDto.Type.UPDATED)
+                .extracting(UserChangeEntity::getUserVersion)
+                .containsExactly(1L, 1L, 1L, 1L, 1L);
+
+        UserDto patched = userService.getUser(users.get(3).getId());
+        assertThat(patched.getAddress()).isEqualTo("purged");
+        assertThat(patched.getPhoneNumber()).isNull();
+        assertThat(patched.getEmail()).isEqualTo("bulk4@example.com");
+        assertThat(patched.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void testRejectsInvalidRequests() {
+        UserBulkRequestDto request = new UserBulkRequestDto();
+        request.setIds(List.of(users.get(0).getId()));
+        request.setFrom(FROM);
+        request.setTo(TO);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userBulkService.deleteUsers(request));
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+        request.setFrom(null);
+        request.setPatch(new UserPatchDto());
+        exception = assertThrows(ResponseStatusException.class, () -> userBulkService.patchUsers(request));
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+}
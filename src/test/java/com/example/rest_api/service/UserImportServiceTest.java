@@ -0,0 +1,170 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.changes.UserChangeLog;
+import com.example.rest_api.config.UserImportConfig;
+import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.dto.UserChangeDto;
+import com.example.rest_api.dto.UserImportReportDto;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.mapper.UserMapperImpl;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.search.UserSearchIndex;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class UserImportServiceTest {
+
+    private static final String ADULT = "{\"email\":\"%s@example.com\",\"firstName\":\"Name\",\"lastName\":\"Surname\",\"birthDate\":\"1990-01-01\"}";
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private UserRegistrationConfig userRegistrationConfig;
+    @Mock
+    private UserImportConfig userImportConfig;
+    @Mock
+    private UserSearchIndex userSearchIndex;
+    @Mock
+    private UserStatsService userStatsService;
+    @Mock
+    private UserChangeLog userChangeLog;
+
+    private UserImportService userImportService;
+    AutoCloseable autoCloseable;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        userImportService = new UserImportService(userRepository, new UserMapperImpl(),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                JsonMapper.builder().findAndAddModules().build(),
+                transactionManager, userRegistrationConfig, userImportConfig, userSearchIndex,
+                userStatsService, userChangeLog, Optional.empty());
+        when(userRegistrationConfig.getMinAge()).thenReturn(18);
+        when(userImportConfig.getBatchSize()).thenReturn(2);
+        AtomicLong ids = new AtomicLong();
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<UserEntity> users = invocation.getArgument(0);
+            users.forEach(user -> user.setId(ids.incrementAndGet()));
+            return users;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void testImportJsonArrayInBatches() throws IOException {
+        String body = "[" + ADULT.formatted("a") + "," + ADULT.formatted("b") + "," + ADULT.formatted("c") + "]";
+
+        UserImportReportDto report = userImportService.importUsers(stream(body));
+
+        assertThat(report.getTotal()).isEqualTo(3);
+        assertThat(report.getImported()).isEqualTo(3);
+        assertThat(report.getFailed()).isZero();
+        assertThat(report.getResults()).extracting("id").containsExactly(1L, 2L, 3L);
+        verify(userRepository, times(2)).saveAll(anyList());
+        verify(userRepository, times(2)).flush();
+    }
+
+    @Test
+    void testImportNdjsonReportsInvalidRecords() throws IOException {
+        String body = ADULT.formatted("a") + "\n"
+                + "{\"email\":\"not-an-email\",\"firstName\":\"Name\",\"lastName\":\"Surname\",\"birthDate\":\"1990-01-01\"}\n"
+                + "{\"email\":\"young@example.com\",\"firstName\":\"Name\",\"lastName\":\"Surname\",\"birthDate\":\"2020-01-01\"}\n"
+                + "{\"email\":\"c@example.com\",\"firstName\":\"Name\",\"lastName\":\"Surname\",\"birthDate\":\"not-a-date\"}\n"
+                + ADULT.formatted("b") + "\n";
+
+        UserImportReportDto report = userImportService.importUsers(stream(body));
+
+        assertThat(report.getTotal()).isEqualTo(5);
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getFailed()).isEqualTo(3);
+        assertThat(report.getResults().get(0).getId()).isEqualTo(1L);
+        assertThat(report.getResults().get(1).getErrors()).extracting("field").contains("email");
+        assertThat(report.getResults().get(2).getErrors()).extracting("message")
+                .containsExactly("User must be at least 18 years old to register.");
+        assertThat(report.getResults().get(3).getErrors()).hasSize(1);
+        assertThat(report.getResults().get(4).getId()).isEqualTo(2L);
+    }
+
+    @Test
+    void testImportReportsFailedBatch() throws IOException {
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(userRepository).flush();
+
+        UserImportReportDto report = userImportService.importUsers(stream(ADULT.formatted("a")));
+
+        assertThat(report.getImported()).isZero();
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(report.getResults().get(0).getErrors()).extracting("message")
+                .containsExactly("Batch insert failed: connection lost");
+    }
+
+    @Test
+    void testImportRetriesConflictingBatchOneRecordAtATime() throws IOException {
+        AtomicReference<List<UserEntity>> saved = new AtomicReference<>();
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<UserEntity> users = invocation.getArgument(0);
+            users.forEach(user -> user.setId(100L + users.indexOf(user)));
+            saved.set(users);
+            return users;
+        });
+        doAnswer(invocation -> {
+            if (saved.get().stream().anyMatch(user -> user.getEmail().startsWith("taken"))) {
+                throw new DataIntegrityViolationException("Unique index or primary key violation: \"PUBLIC."
+                        + UserEntity.EMAIL_UNIQUE_CONSTRAINT.toUpperCase() + "\"");
+            }
+            return null;
+        }).when(userRepository).flush();
+
+        UserImportReportDto report = userImportService.importUsers(stream(ADULT.formatted("a") + "\n" + ADULT.formatted("taken")));
+
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(report.getResults().get(0).getId()).isEqualTo(100L);
+        assertThat(report.getResults().get(1).getId()).isNull();
+        assertThat(report.getResults().get(1).getErrors()).extracting("field", "message")
+                .containsExactly(tuple("email", "Email is already registered"));
+        verify(userRepository, times(3)).saveAll(anyList());
+        verify(userChangeLog).recordAll(UserChangeDto.Type.CREATED, List.of(100L));
+    }
+
+    @Test
+    void testImportStopsOnMalformedInput() throws IOException {
+        UserImportReportDto report = userImportService.importUsers(stream(ADULT.formatted("a") + "\n{\"email\":"));
+
+        assertThat(report.getTotal()).isEqualTo(2);
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getResults().get(1).getErrors()).hasSize(1);
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
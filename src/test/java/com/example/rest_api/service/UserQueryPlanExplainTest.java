@@ -0,0 +1,90 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.config.UserQueryConfig;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs planned filters against H2 and checks the index each plan reports against the one {@code EXPLAIN}
+ * shows for the executed query. Statements are taken from H2's query statistics, which cannot be switched
+ * inside a test transaction, so the test commits and deletes its users afterwards.
+ */
+@DataJpaTest
+@Import({UserQueryPlanner.class, UserQueryConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserQueryPlanExplainTest {
+
+    private static final LocalDate FROM = LocalDate.of(1990, 1, 1);
+    private static final LocalDate TO = LocalDate.of(1990, 12, 31);
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserQueryPlanner userQueryPlanner;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // Two users born in 1990 and four Smiths, so the birth date index reads fewer rows than the last name one
+        for (int i = 0; i < 4; i++) {
+            userRepository.save(new UserEntity(null, "smith" + i + "@example.com", "firstName", "Smith",
+                    LocalDate.of(1980 + i * 5, 6, 1), null, i % 2 == 0 ? "phoneNumber" : null, null, null, null, null));
+        }
+        userRepository.save(new UserEntity(null, "jones@other.com", "firstName", "Jones",
+                LocalDate.of(1990, 3, 1), "address", null, null, null, null, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SET QUERY_STATISTICS FALSE");
+        userRepository.deleteAll();
+    }
+
+    private void assertExplainedIndex(UserFilter filter) {
+        UserQueryPlan plan = userQueryPlanner.plan(filter, 2);
+        String expected = UserQueryPlanner.PRIMARY_KEY.equals(plan.index())
+                ? "/* PUBLIC.PRIMARY_KEY_"
+                : "/* PUBLIC." + plan.index().toUpperCase();
+        assertThat(explain(plan)).as(plan.describe()).contains(expected);
+    }
+
+    private String explain(UserQueryPlan plan) {
+        // Switching the statistics off and on again clears them
+        jdbcTemplate.execute("SET QUERY_STATISTICS FALSE");
+        jdbcTemplate.execute("SET QUERY_STATISTICS TRUE");
+        userRepository.findDtoPage(plan.where(), plan.index(), plan.sort(), 2);
+        List<String> statements = jdbcTemplate.queryForList("SELECT SQL_STATEMENT FROM INFORMATION_SCHEMA.QUERY_STATISTICS " +
+                "WHERE SQL_STATEMENT LIKE 'select%'", String.class);
+        assertThat(statements).hasSize(1);
+        return jdbcTemplate.query(connection -> connection.prepareStatement("EXPLAIN " + statements.get(0)),
+                resultSet -> resultSet.next() ? resultSet.getString(1) : null);
+    }
+
+    @Test
+    void testReportedIndexIsTheOneH2Uses() {
+        UserFilter smithsIn1990 = new UserFilter(FROM, TO, "smith", null, null, null, null);
+        assertThat(userQueryPlanner.plan(smithsIn1990, 2).index()).isEqualTo(UserQueryPlanner.BIRTH_DATE_INDEX);
+
+        assertExplainedIndex(smithsIn1990);
+        assertExplainedIndex(new UserFilter(FROM, TO, "smith", null, null, null, "id"));
+        assertExplainedIndex(new UserFilter(null, null, "Smith", "example.com", true, null, null));
+        assertExplainedIndex(new UserFilter(null, null, null, "other.com", null, null, "birthDate"));
+        assertExplainedIndex(new UserFilter(null, null, null, null, true, null, null));
+        assertExplainedIndex(new UserFilter(null, null, null, null, null, null, "birthDate"));
+    }
+}
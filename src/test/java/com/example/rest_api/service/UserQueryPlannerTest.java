@@ -0,0 +1,98 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.config.UserQueryConfig;
+import com.example.rest_api.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class UserQueryPlannerTest {
+
+    private static final LocalDate FROM = LocalDate.of(1990, 1, 1);
+    private static final LocalDate TO = LocalDate.of(1999, 12, 31);
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserQueryPlanner userQueryPlanner;
+    AutoCloseable autoCloseable;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        UserQueryConfig userQueryConfig = new UserQueryConfig();
+        ReflectionTestUtils.setField(userQueryConfig, "maxScanRows", 100);
+        userQueryPlanner = new UserQueryPlanner(userRepository, userQueryConfig);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void testIndexInRequestedOrderOnlyReadsThePage() {
+        UserQueryPlan range = userQueryPlanner.plan(new UserFilter(FROM, TO, null, null, null, null, null), 20);
+        assertThat(range.index()).isEqualTo(UserQueryPlanner.BIRTH_DATE_INDEX);
+        assertThat(range.estimatedRows()).isEqualTo(20);
+        assertThat(range.sort()).isEqualTo(Sort.by("birthDate", "id"));
+
+        UserQueryPlan all = userQueryPlanner.plan(new UserFilter(null, null, null, null, null, null, null), 20);
+        assertThat(all.index()).isEqualTo(UserQueryPlanner.PRIMARY_KEY);
+        assertThat(all.sort()).isEqualTo(Sort.by("id"));
+
+        UserQueryPlan allByBirthDate = userQueryPlanner.plan(new UserFilter(null, null, null, null, null, null, "birthDate"), 20);
+        assertThat(allByBirthDate.index()).isEqualTo(UserQueryPlanner.BIRTH_DATE_INDEX);
+        assertThat(allByBirthDate.estimatedRows()).isEqualTo(20);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testMostSelectiveIndexDrivesCombinedFilters() {
+        when(userRepository.countUpTo(any(), any(), eq(101))).thenReturn(101, 7);
+
+        UserQueryPlan plan = userQueryPlanner.plan(new UserFilter(FROM, TO, "Smith", null, true, null, null), 20);
+
+        assertThat(plan.index()).isEqualTo(UserQueryPlanner.LAST_NAME_INDEX);
+        assertThat(plan.estimatedRows()).isEqualTo(7);
+        assertThat(plan.sort()).isEqualTo(Sort.by("birthDate", "id"));
+        assertThat(plan.describe()).isEqualTo("index=idx_users_last_name_id; estimated-rows=7");
+    }
+
+    @Test
+    void testFiltersWithoutBoundedIndexAreRejected() {
+        when(userRepository.countUpTo(any(), any(), eq(101))).thenReturn(101);
+
+        assertThrows(ResponseStatusException.class,
+                () -> userQueryPlanner.plan(new UserFilter(null, null, null, null, null, false, null), 20));
+        assertThrows(ResponseStatusException.class,
+                () -> userQueryPlanner.plan(new UserFilter(FROM, null, null, null, null, null, "id"), 20));
+        assertThrows(ResponseStatusException.class,
+                () -> userQueryPlanner.plan(new UserFilter(null, null, null, null, null, null, "-id"), 20));
+    }
+
+    @Test
+    void testUnpagedRangeIsRejectedBeyondMaxScanRows() {
+        when(userRepository.countUpTo(any(), eq(UserQueryPlanner.BIRTH_DATE_INDEX), eq(101))).thenReturn(100);
+        userQueryPlanner.requireBoundedRange(FROM, TO);
+
+        when(userRepository.countUpTo(any(), eq(UserQueryPlanner.BIRTH_DATE_INDEX), eq(101))).thenReturn(101);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userQueryPlanner.requireBoundedRange(FROM, TO));
+        assertThat(exception.getReason()).startsWith("Birth date range matches more than 100 users");
+    }
+}
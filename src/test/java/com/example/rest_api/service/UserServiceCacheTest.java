@@ -0,0 +1,90 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.config.CacheConfig;
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class UserServiceCacheTest {
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private UserRepository userRepository;
+
+    private Cache cache;
+    private UserDto created;
+
+    @BeforeEach
+    void setUp() {
+        cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+        cache.clear();
+        created = userService.createUser(new UserDto(null, "cached@example.com",
+                "firstName", "lastName", LocalDate.of(2000, 1, 1), "address", "phoneNumber", null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Emails are unique, so each test's user must go before the next setUp creates it again
+        userRepository.deleteById(created.getId());
+    }
+
+    @Test
+    void testCreateAndGetUserPopulateCache() {
+        assertThat(cache.get(created.getId(), UserDto.class)).isEqualTo(created);
+        cache.evict(created.getId());
+
+        UserDto loaded = userService.getUser(created.getId());
+
+        assertThat(loaded).isEqualTo(created);
+        assertThat(cache.get(created.getId(), UserDto.class)).isSameAs(loaded);
+        assertThat(userService.getUser(created.getId())).isSameAs(loaded);
+    }
+
+    @Test
+    void testUpdatesRefreshOrEvictCache() {
+        UserDto replacement = new UserDto(null, "replaced@example.com",
+                "newFirstName", "newLastName", LocalDate.of(1999, 1, 1), null, null, null);
+        userService.updateAllFields(created.getId(), replacement);
+        assertThat(cache.get(created.getId(), UserDto.class).getEmail()).isEqualTo("replaced@example.com");
+
+        UserPatchDto patch = new UserPatchDto();
+        patch.setEmail(Optional.of("patched@example.com"));
+        userService.updateUser(created.getId(), patch);
+        assertThat(cache.get(created.getId())).isNull();
+        assertThat(userService.getUser(created.getId()).getEmail()).isEqualTo("patched@example.com");
+    }
+
+    @Test
+    void testDeletedUserIsNeverServedFromCache() {
+        userService.getUser(created.getId());
+
+        userService.deleteUser(created.getId());
+
+        assertThat(cache.get(created.getId())).isNull();
+        assertThrows(ResponseStatusException.class, () -> userService.getUser(created.getId()));
+    }
+
+    @Test
+    void testMissingUserIsNotCached() {
+        assertThrows(ResponseStatusException.class, () -> userService.getUser(-1L));
+        assertThat(cache.get(-1L)).isNull();
+    }
+}
@@ -1,22 +1,38 @@
 package com.example.rest_api.service;
 
+import com.example.rest_api.changes.UserChangeLog;
 import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.dto.UserChangeDto;
 import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.dto.UserFilterPageDto;
+import com.example.rest_api.dto.UserPageDto;
+import com.example.rest_api.dto.UserPatchDto;
+import com.example.rest_api.dto.UserSearchPageDto;
 import com.example.rest_api.dto.UserUpdateDto;
 import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.mapper.UserMapper;
+import com.example.rest_api.monitoring.UserMetrics;
 import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.search.UserSearchIndex;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -27,13 +43,22 @@ import static org.mockito.Mockito.*;
 class UserServiceTest {
 
     @Mock
-    private ModelMapper mapper;
+    private UserMapper mapper;
     @Mock
     private UserRegistrationConfig userRegistrationConfig;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private UserSearchIndex userSearchIndex;
+    @Mock
+    private UserQueryPlanner userQueryPlanner;
+    @Mock
+    private UserStatsService userStatsService;
+    @Mock
+    private UserChangeLog userChangeLog;
 
     private UserService userService;
+    private SimpleMeterRegistry meterRegistry;
     AutoCloseable autoCloseable;
     UserEntity userEntity;
     UserDto userDto;
@@ -41,13 +66,15 @@ class UserServiceTest {
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        userService = new UserService(userRepository, mapper, userRegistrationConfig);
+        meterRegistry = new SimpleMeterRegistry();
+        userService = new UserService(userRepository, mapper, userRegistrationConfig, new UserMetrics(meterRegistry),
+                userSearchIndex, userQueryPlanner, userStatsService, userChangeLog, Optional.empty());
         userEntity = new UserEntity(1L, "email@gmail.com",
                 "firstName", "lastName", LocalDate.of(2000, 1, 1),
-                "address", "phoneNumber");
+                "address", "phoneNumber", 0L, null, null, null);
         userDto = new UserDto(1L, "email@gmail.com",
                 "firstName", "lastName", LocalDate.of(2000, 1, 1),
-                "address", "phoneNumber");
+                "address", "phoneNumber", 0L);
     }
 
     @AfterEach
@@ -62,6 +89,7 @@ class UserServiceTest {
         when(userRegistrationConfig.getMinAge()).thenReturn(18);
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> userService.createUser(userDto));
         assertEquals("User must be at least 18 years old to register.", exception.getMessage());
+        assertThat(exception.getStackTrace()).isEmpty();
         verifyNoInteractions(userRepository);
     }
 
@@ -86,36 +114,59 @@ class UserServiceTest {
         userDto1.setPhoneNumber("phoneNumber");
         when(userRegistrationConfig.getMinAge()).thenReturn(18);
 
-        when(userRepository.save(any(UserEntity.class))).thenReturn(userEntity);
+        when(mapper.toEntity(userDto1)).thenReturn(new UserEntity());
+        when(userRepository.save(argThat(entity -> entity.getId() == null))).thenReturn(userEntity);
 
-        when(mapper.map(any(UserEntity.class), eq(UserDto.class))).thenReturn(userDto1);
-        when(userService.createUser(userDto1)).thenReturn(userDto1);
+        when(mapper.toDto(any(UserEntity.class))).thenReturn(userDto1);
         UserDto createdUserDto = userService.createUser(userDto1);
 
         assertThat(createdUserDto.getId()).isEqualTo(userEntity.getId());
+        verify(userSearchIndex).index(userDto1);
+        verify(userStatsService).addUsers(List.of(1L));
+        verify(userChangeLog).record(UserChangeDto.Type.CREATED, 1L, null);
     }
 
     @Test
     void testUpdateNonExistentUser() {
-        UserUpdateDto nonExistentUserDto = new UserUpdateDto();
-        nonExistentUserDto.setId(100L);
+        UserPatchDto patch = new UserPatchDto();
+        patch.setEmail(Optional.of("test@example.com"));
 
-        assertThrows(ResponseStatusException.class, () -> userService.updateUser(100L, nonExistentUserDto));
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.updateUser(100L, patch));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        verify(userRepository, never()).existsById(anyLong());
     }
 
     @Test
     void testUpdateUser() {
+        UserPatchDto patch = new UserPatchDto();
+        patch.setEmail(Optional.of("test@example.com"));
+        patch.setAddress(Optional.empty());
         UserUpdateDto updatedUserDto = new UserUpdateDto();
         updatedUserDto.setId(1L);
         updatedUserDto.setEmail("test@example.com");
-        updatedUserDto.setAddress("new address");
-        updatedUserDto.setPhoneNumber("new phoneNumber");
+        updatedUserDto.setPhoneNumber("phoneNumber");
 
-        when(userRepository.findById(anyLong())).thenReturn(Optional.of(userEntity));
-        when(userRepository.save(any(UserEntity.class))).thenReturn(userEntity);
-        when(mapper.map(any(UserEntity.class), eq(UserUpdateDto.class))).thenReturn(updatedUserDto);
+        when(userRepository.patch(1L, patch)).thenReturn(Optional.of(updatedUserDto));
 
-        assertThat(userService.updateUser(updatedUserDto.getId(), updatedUserDto)).isEqualTo(updatedUserDto);
+        assertThat(userService.updateUser(1L, patch)).isEqualTo(updatedUserDto);
+        verify(userRepository, never()).findById(anyLong());
+        verify(userRepository, never()).saveAndFlush(any(UserEntity.class));
+        verify(userSearchIndex).reindex(List.of(1L));
+        verify(userStatsService).removeUsers(List.of(1L));
+        verify(userStatsService).addUsers(List.of(1L));
+        verify(userChangeLog).record(UserChangeDto.Type.UPDATED, 1L, null);
+    }
+
+    @Test
+    void testUpdateUserWithEmptyPatch() {
+        UserUpdateDto userUpdateDto = new UserUpdateDto();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(userEntity));
+        when(mapper.toUpdateDto(userEntity)).thenReturn(userUpdateDto);
+
+        assertThat(userService.updateUser(1L, new UserPatchDto())).isEqualTo(userUpdateDto);
+        verify(userRepository, never()).patch(anyLong(), any(UserPatchDto.class));
+        verifyNoInteractions(userChangeLog);
     }
 
     @Test
@@ -130,12 +181,25 @@ class UserServiceTest {
         updatedUserDto.setPhoneNumber("new phoneNumber");
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userEntity));
-        when(userRepository.save(any(UserEntity.class))).thenReturn(userEntity);
-        when(mapper.map(any(UserEntity.class), eq(UserDto.class))).thenReturn(updatedUserDto);
+        when(userRepository.saveAndFlush(any(UserEntity.class))).thenReturn(userEntity);
+        when(mapper.toDto(any(UserEntity.class))).thenReturn(updatedUserDto);
 
         assertThat(userService.updateAllFields(updatedUserDto.getId(), updatedUserDto)).isEqualTo(updatedUserDto);
     }
 
+    @Test
+    void testUpdateUserWithStaleVersion() {
+        UserPatchDto patch = new UserPatchDto();
+        patch.setEmail(Optional.of("test@example.com"));
+        patch.setVersion(1L);
+
+        when(userRepository.existsById(1L)).thenReturn(true);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.updateUser(1L, patch));
+        assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatusCode());
+    }
+
     @Test
     void testUpdateAllFieldsWithInvalidAge() {
         UserDto userDto = new UserDto();
@@ -148,12 +212,29 @@ class UserServiceTest {
         assertEquals("User must be at least 18 years old to register.", exception.getMessage());
     }
 
+    @Test
+    void testGetUser() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(userEntity));
+        when(mapper.toDto(userEntity)).thenReturn(userDto);
+        assertThat(userService.getUser(1L)).isEqualTo(userDto);
+    }
+
+    @Test
+    void testGetNonExistentUser() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> userService.getUser(100L));
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(exception.getStackTrace()).isEmpty();
+    }
+
     @Test
     void testDeleteUser() {
 
         when(userRepository.findById(anyLong())).thenReturn(Optional.of(userEntity));
         userService.deleteUser(userEntity.getId());
         verify(userRepository, times(1)).delete(userEntity);
+        verify(userSearchIndex).remove(List.of(userEntity.getId()));
+        verify(userStatsService).removeUsers(List.of(userEntity.getId()));
+        verify(userChangeLog).record(UserChangeDto.Type.DELETED, userEntity.getId(), userEntity.getVersion());
     }
 
     @Test
@@ -164,40 +245,191 @@ class UserServiceTest {
 
     @Test
     void testSearchUsersByBirthDateRange() {
-        List<UserEntity> users = new ArrayList<>();
-        users.add(userEntity);
         LocalDate startDate = LocalDate.of(1990, 1, 1);
         LocalDate endDate = LocalDate.of(2010, 1, 2);
-        when(userRepository.findByBirthDateBetween(startDate, endDate)).thenReturn(users);
-        when(mapper.map(any(UserEntity.class), eq(UserDto.class))).thenReturn(userDto);
-        List<UserDto> expectedUserDtos = users.stream().map(el -> mapper.map(el, UserDto.class)).toList();
+        when(userRepository.findDtoByBirthDateBetween(startDate, endDate)).thenReturn(List.of(userDto));
         List<UserDto> actualUserDtos = userService.searchUsersByBirthDateRange(startDate, endDate);
-        assertEquals(expectedUserDtos.size(), actualUserDtos.size());
-        assertEquals(expectedUserDtos.get(0), actualUserDtos.get(0));
+        assertEquals(1, actualUserDtos.size());
+        assertEquals(userDto, actualUserDtos.get(0));
+        verifyNoInteractions(mapper);
+        assertEquals(1, meterRegistry.get(UserMetrics.RANGE_SEARCH_RESULTS).summary().count());
+        assertEquals(1.0, meterRegistry.get(UserMetrics.RANGE_SEARCH_LAST_SIZE).gauge().value());
     }
 
     @Test
     void testSearchUsersByBirthDateRange_EmptyList() {
-        List<UserEntity> users = new ArrayList<>();
-        users.add(userEntity);
         LocalDate startDate = LocalDate.of(2001, 1, 1);
         LocalDate endDate = LocalDate.of(2010, 1, 2);
-        when(userRepository.findByBirthDateBetween(startDate, endDate)).thenReturn(users);
-        List<UserDto> expectedUserDtos = users.stream().map(el -> mapper.map(el, UserDto.class)).toList();
+        when(userRepository.findDtoByBirthDateBetween(startDate, endDate)).thenReturn(List.of());
         List<UserDto> actualUserDtos = userService.searchUsersByBirthDateRange(startDate, endDate);
-        assertEquals(expectedUserDtos.size(), actualUserDtos.size());
+        assertEquals(0, actualUserDtos.size());
     }
 
     @Test
     void testToEntity() {
-        when(mapper.map(any(UserDto.class), eq(UserEntity.class))).thenReturn(userEntity);
+        when(mapper.toEntity(any(UserDto.class))).thenReturn(userEntity);
         assertThat(userService.toEntity(userDto)).isEqualTo(userEntity);
     }
 
     @Test
     void testToDto() {
-        when(mapper.map(any(UserEntity.class), eq(UserDto.class))).thenReturn(userDto);
+        when(mapper.toDto(any(UserEntity.class))).thenReturn(userDto);
         assertThat(userService.toDto(userEntity)).isEqualTo(userDto);
+        assertEquals(1, meterRegistry.get(UserMetrics.MAPPING).tag("operation", "toDto").timer().count());
     }
-}
 
+    @Test
+    void testSearchUsersByBirthDateRangeFirstPage() {
+        LocalDate startDate = LocalDate.of(1990, 1, 1);
+        LocalDate endDate = LocalDate.of(2010, 1, 2);
+        when(userRepository.findPageByBirthDateAfter(startDate, Long.MIN_VALUE, endDate, PageRequest.ofSize(1)))
+                .thenReturn(List.of(userDto));
+
+        UserPageDto page = userService.searchUsersByBirthDateRange(startDate, endDate, 1, null);
+
+        assertEquals(List.of(userDto), page.getUsers());
+        assertEquals(new UserCursor(userDto.getBirthDate(), userDto.getId()), UserCursor.decode(page.getNext()));
+    }
+
+    @Test
+    void testSearchUsersByBirthDateRangeLastPage() {
+        LocalDate startDate = LocalDate.of(1990, 1, 1);
+        LocalDate endDate = LocalDate.of(2010, 1, 2);
+        String next = new UserCursor(LocalDate.of(2000, 1, 1), 1L).encode();
+        when(userRepository.findPageByBirthDateAfter(LocalDate.of(2000, 1, 1), 1L, endDate,
+                PageRequest.ofSize(UserService.DEFAULT_PAGE_SIZE))).thenReturn(List.of());
+
+        UserPageDto page = userService.searchUsersByBirthDateRange(startDate, endDate, null, next);
+
+        assertThat(page.getUsers().isEmpty()).isTrue();
+        assertThat(page.getNext()).isNull();
+    }
+
+    @Test
+    void testSearchUsersByBirthDateRangeInvalidLimit() {
+        LocalDate startDate = LocalDate.of(1990, 1, 1);
+        LocalDate endDate = LocalDate.of(2010, 1, 2);
+        assertThrows(ResponseStatusException.class,
+                () -> userService.searchUsersByBirthDateRange(startDate, endDate, UserService.MAX_PAGE_SIZE + 1, null));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testSearchUsersByBirthDateRangeInvalidCursor() {
+        LocalDate startDate = LocalDate.of(1990, 1, 1);
+        LocalDate endDate = LocalDate.of(2010, 1, 2);
+        assertThrows(ResponseStatusException.class,
+                () -> userService.searchUsersByBirthDateRange(startDate, endDate, 10, "not-a-cursor"));
+    }
+
+    @Test
+    void testFilterUsersReadsThePlannedPage() {
+        UserFilter filter = new UserFilter(null, null, "Smith", null, true, null, null);
+        Specification<UserEntity> where = Specification.where(null);
+        UserQueryPlan plan = new UserQueryPlan(UserQueryPlanner.LAST_NAME_INDEX, 3, UserQueryPlan.ID, where);
+        when(userQueryPlanner.plan(filter, 1)).thenReturn(plan);
+        when(userRepository.findDtoPage(where, UserQueryPlanner.LAST_NAME_INDEX, Sort.by("id"), 1)).thenReturn(List.of(userDto));
+
+        UserFilterPageDto page = userService.filterUsers(filter, 1, null);
+
+        assertEquals(List.of(userDto), page.getUsers());
+        assertEquals(new UserCursor(userDto.getBirthDate(), userDto.getId()), UserCursor.decode(page.getNext()));
+        assertEquals("index=idx_users_last_name_id; estimated-rows=3", page.getPlan());
+    }
+
+    @Test
+    void testFilterUsersInvalidLimit() {
+        UserFilter filter = new UserFilter(null, null, "Smith", null, null, null, null);
+        assertThrows(ResponseStatusException.class,
+                () -> userService.filterUsers(filter, UserService.MAX_PAGE_SIZE + 1, null));
+        verifyNoInteractions(userQueryPlanner, userRepository);
+    }
+
+    @Test
+    void testSearchUsersKeepsRanking() {
+        UserDto second = new UserDto(2L, "second@gmail.com", "firstName", "lastName",
+                LocalDate.of(2000, 1, 1), null, null, 0L);
+        when(userSearchIndex.getMaxResults()).thenReturn(1000);
+        when(userSearchIndex.search("first", 20, 20)).thenReturn(new UserSearchIndex.Hits(List.of(2L, 3L, 1L), 23));
+        when(userRepository.findDtoByIdIn(List.of(2L, 3L, 1L))).thenReturn(List.of(userDto, second));
+
+        UserSearchPageDto page = userService.searchUsers("first", 1, 20);
+
+        assertEquals(List.of(second, userDto), page.getUsers());
+        assertEquals(23, page.getTotal());
+    }
+
+    @Test
+    void testSearchUsersBeyondMaxResults() {
+        when(userSearchIndex.getMaxResults()).thenReturn(1000);
+        assertThrows(ResponseStatusException.class, () -> userService.searchUsers("first", 50, 20));
+        assertThrows(ResponseStatusException.class, () -> userService.searchUsers("first", Integer.MAX_VALUE, 20));
+        assertThrows(ResponseStatusException.class, () -> userService.searchUsers("first", 0, UserService.MAX_SEARCH_PAGE_SIZE + 1));
+        assertThrows(ResponseStatusException.class, () -> userService.searchUsers(" ", 0, 20));
+        verify(userSearchIndex, never()).search(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testStreamUsersByBirthDateRange() {
+        LocalDate startDate = LocalDate.of(1990, 1, 1);
+        LocalDate endDate = LocalDate.of(2010, 1, 2);
+        when(userRepository.streamByBirthDateBetween(startDate, endDate)).thenReturn(Stream.of(userDto));
+        List<UserDto> streamed = new ArrayList<>();
+
+        userService.streamUsersByBirthDateRange(startDate, endDate, streamed::add);
+
+        assertEquals(List.of(userDto), streamed);
+    }
+
+    private UserService shardedUserService(ShardedUserRepository shards) {
+        return new UserService(userRepository, mapper, userRegistrationConfig, new UserMetrics(meterRegistry),
+                userSearchIndex, userQueryPlanner, userStatsService, userChangeLog, Optional.of(shards));
+    }
+
+    @Test
+    void testShardedUsersAreWrittenToTheirShards() {
+        ShardedUserRepository shards = mock(ShardedUserRepository.class);
+        UserService shardedService = shardedUserService(shards);
+        when(userRegistrationConfig.getMinAge()).thenReturn(18);
+        when(shards.insert(userDto)).thenReturn(userDto);
+        when(shards.update(eq(1L), isNull(), any())).thenAnswer(invocation -> Optional.of(
+                invocation.<UnaryOperator<UserDto>>getArgument(2).apply(new UserDto(1L, "email@gmail.com",
+                        "firstName", "lastName", LocalDate.of(2000, 1, 1), "address", "phoneNumber", 0L))));
+        when(shards.deleteById(1L)).thenReturn(Optional.of(userDto));
+        UserPatchDto patch = new UserPatchDto();
+        patch.setEmail(Optional.of("moved@example.com"));
+
+        assertThat(shardedService.createUser(userDto)).isEqualTo(userDto);
+        shardedService.updateUser(1L, patch);
+        shardedService.deleteUser(1L);
+
+        verify(userSearchIndex).index(userDto);
+        verify(userSearchIndex).index(argThat((UserDto user) -> user.getEmail().equals("moved@example.com")
+                && user.getAddress().equals("address")));
+        verify(userSearchIndex).remove(List.of(1L));
+        verify(userChangeLog).record(UserChangeDto.Type.CREATED, 1L, 0L);
+        verify(userChangeLog).record(UserChangeDto.Type.UPDATED, 1L, 0L);
+        verify(userChangeLog).record(UserChangeDto.Type.DELETED, 1L, 0L);
+        verifyNoInteractions(userRepository, userStatsService);
+    }
+
+    @Test
+    void testShardedUpdateWithStaleVersionAndFiltersAreRejected() {
+        ShardedUserRepository shards = mock(ShardedUserRepository.class);
+        UserService shardedService = shardedUserService(shards);
+        when(shards.update(eq(1L), eq(0L), any())).thenReturn(Optional.empty());
+        when(shards.findById(1L)).thenReturn(Optional.of(userDto));
+        UserPatchDto patch = new UserPatchDto();
+        patch.setAddress(Optional.of("new address"));
+        patch.setVersion(0L);
+
+        ResponseStatusException modified = assertThrows(ResponseStatusException.class,
+                () -> shardedService.updateUser(1L, patch));
+        ResponseStatusException filtered = assertThrows(ResponseStatusException.class,
+                () -> shardedService.filterUsers(new UserFilter(null, null, "Smith", null, null, null, null), null, null));
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, modified.getStatusCode());
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, filtered.getStatusCode());
+        verifyNoInteractions(userRepository, userChangeLog);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.rest_api.service;
+
+import com.example.rest_api.config.UserRegistrationConfig;
+import com.example.rest_api.config.UserStatsConfig;
+import com.example.rest_api.dto.UserStatsBucketDto;
+import com.example.rest_api.dto.UserStatsDto;
+import com.example.rest_api.repository.UserRepository;
+import com.example.rest_api.repository.UserStatsDelta;
+import com.example.rest_api.sharding.ShardedUserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class UserStatsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private UserStatsConfig userStatsConfig;
+    @Mock
+    private UserRegistrationConfig userRegistrationConfig;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserStatsService userStatsService;
+    AutoCloseable autoCloseable;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        userStatsService = new UserStatsService(userRepository, userStatsConfig, userRegistrationConfig,
+                transactionManager, Optional.empty());
+        when(userStatsConfig.isSummaryEnabled()).thenReturn(true);
+        when(userRegistrationConfig.getMinAge()).thenReturn(18);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAgeBracketsStartAtMinimumAge() {
+        ArgumentCaptor<Map<String, LocalDate>> brackets = ArgumentCaptor.forClass(Map.class);
+        when(userRepository.countByBirthDateBrackets(anyMap(), eq(true)))
+                .thenReturn(List.of(new UserStatsBucketDto("25-34", 3), new UserStatsBucketDto("65+", 1)));
+        when(userRepository.countUsers(true)).thenReturn(4L);
+
+        UserStatsDto stats = userStatsService.getStats(UserStatsService.AGE_BRACKET, null);
+
+        assertThat(stats.getTotal()).isEqualTo(4);
+        assertThat(stats.getBuckets()).extracting(UserStatsBucketDto::getKey)
+                .containsExactly("0-17", "18-24", "25-34", "35-44", "45-54", "55-64", "65+");
+        assertThat(stats.getBuckets()).extracting(UserStatsBucketDto::getCount)
+                .containsExactly(0L, 0L, 3L, 0L, 0L, 0L, 1L);
+        verify(userRepository).countByBirthDateBrackets(brackets.capture(), eq(true));
+        assertThat(brackets.getValue()).containsEntry("18-24", LocalDate.now().minusYears(18))
+                .containsEntry("0-17", null);
+    }
+
+    @Test
+    void testInvalidGroupingAndLimit() {
+        assertThrows(ResponseStatusException.class, () -> userStatsService.getStats("lastName", null));
+        assertThrows(ResponseStatusException.class,
+                () -> userStatsService.getStats(UserStatsService.EMAIL_DOMAIN, UserStatsService.MAX_DOMAIN_LIMIT + 1));
+    }
+
+    @Test
+    void testDisabledSummaryIsNeitherMaintainedNorRead() {
+        when(userStatsConfig.isSummaryEnabled()).thenReturn(false);
+
+        userStatsService.addUsers(List.of(1L));
+        userStatsService.getStats(UserStatsService.BIRTH_YEAR, null);
+
+        verify(userRepository, never()).addToStatsDelta(any(), any(), anyInt());
+        verify(userRepository).countByBirthYear(false);
+    }
+
+    @Test
+    void testSummaryChangesAreAppliedOnceAfterCommit() {
+        doAnswer(invocation -> {
+            UserStatsDelta delta = invocation.getArgument(0);
+            int sign = invocation.getArgument(2);
+            delta.add(LocalDate.of(1990, 1, 1), sign < 0 ? "old.com" : "new.com", sign);
+            return null;
+        }).when(userRepository).addToStatsDelta(any(), eq(List.of(1L)), anyInt());
+        ArgumentCaptor<UserStatsDelta> applied = ArgumentCaptor.forClass(UserStatsDelta.class);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userStatsService.removeUsers(List.of(1L));
+            userStatsService.addUsers(List.of(1L));
+            verify(userRepository, never()).applyStatsDelta(any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(userRepository).applyStatsDelta(applied.capture());
+        assertThat(applied.getValue().getBirthDates()).isEmpty();
+        assertThat(applied.getValue().getEmailDomains()).containsOnly(Map.entry("new.com", 1L), Map.entry("old.com", -1L));
+    }
+
+    @Test
+    void testStartupOnlyRebuildsSummaryMissingUsers() {
+        when(userRepository.countUsers(false)).thenReturn(3L);
+        when(userRepository.countUsers(true)).thenReturn(3L, 2L);
+
+        userStatsService.rebuildSummaryIfStale();
+        verify(userRepository, never()).rebuildStatsSummary();
+
+        userStatsService.rebuildSummaryIfStale();
+        verify(userRepository).rebuildStatsSummary();
+    }
+
+    @Test
+    void testStatsAreRejectedWhileUsersAreSharded() {
+        UserStatsService shardedStatsService = new UserStatsService(userRepository, userStatsConfig,
+                userRegistrationConfig, transactionManager, Optional.of(mock(ShardedUserRepository.class)));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> shardedStatsService.getStats(UserStatsService.BIRTH_YEAR, null));
+
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_IMPLEMENTED);
+        verifyNoInteractions(userRepository);
+    }
+}
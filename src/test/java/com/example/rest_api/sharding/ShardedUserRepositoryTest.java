@@ -0,0 +1,221 @@
+package com.example.rest_api.sharding;
+
+import com.example.rest_api.dto.UserDto;
+import com.example.rest_api.entity.UserEntity;
+import com.example.rest_api.service.UserCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardedUserRepositoryTest {
+
+    private static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+
+    private final List<DataSource> shards = IntStream.rangeClosed(1, 3)
+            .mapToObj(ShardedUserRepositoryTest::shard)
+            .toList();
+    private final ShardedUserRepository repository = new ShardedUserRepository(shards);
+
+    private static DataSource shard(int number) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:sharded-users-" + number + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/shard/users.sql")).execute(dataSource);
+        return dataSource;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        repository.close();
+        shards.forEach(shard -> new JdbcTemplate(shard).execute("DROP ALL OBJECTS"));
+    }
+
+    private List<UserDto> insertUsers(int count) {
+        List<UserDto> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Ten birth dates, so that users on different shards share them and are ordered by id
+            users.add(repository.insert(new UserDto(null, "sharded" + i + "@example.com", "First" + i, "Last" + i,
+                    FIRST_BIRTH_DATE.plusDays(i % 10), null, null, null)));
+        }
+        return users;
+    }
+
+    private static Integer countUsers(DataSource shard) {
+        return new JdbcTemplate(shard).queryForObject("SELECT COUNT(*) FROM users", Integer.class);
+    }
+
+    @Test
+    void testPlacesUsersByEmailWithIdsNamingTheirShard() {
+        List<UserDto> users = insertUsers(30);
+        UserShardRouter router = repository.getRouter();
+
+        assertThat(users).extracting(UserDto::getId).doesNotHaveDuplicates();
+        for (UserDto user : users) {
+            assertThat(router.shardOf(user.getId())).isEqualTo(router.shardOf(user.getEmail()));
+            assertThat(repository.findById(user.getId())).contains(user);
+        }
+        assertThat(shards).allSatisfy(shard -> assertThat(countUsers(shard)).isPositive());
+        assertThat(repository.findByEmail(users.get(7).getEmail().toUpperCase())).contains(users.get(7));
+        assertThat(repository.findById(users.size() * 1000L)).isEmpty();
+
+        List<UserDto> byId = users.stream().sorted(Comparator.comparing(UserDto::getId)).toList();
+        assertThat(repository.count()).isEqualTo(users.size());
+        assertThat(repository.findPageAfterId(byId.get(9).getId(), 10)).containsExactlyElementsOf(byId.subList(10, 20));
+    }
+
+    @Test
+    void testRangeSearchesMergeAllShardsInBirthDateOrder() {
+        List<UserDto> users = insertUsers(60);
+        LocalDate fromDate = FIRST_BIRTH_DATE.plusDays(2);
+        LocalDate toDate = FIRST_BIRTH_DATE.plusDays(7);
+        List<UserDto> expected = users.stream()
+                .filter(user -> !user.getBirthDate().isBefore(fromDate) && !user.getBirthDate().isAfter(toDate))
+                .sorted(Comparator.comparing(UserDto::getBirthDate).thenComparing(UserDto::getId))
+                .toList();
+
+        assertThat(repository.findByBirthDateBetween(fromDate, toDate)).containsExactlyElementsOf(expected);
+        assertThat(repository.findVersionTagByBirthDateBetween(fromDate, toDate)).isEqualTo(expected.size() + "-"
+                + expected.stream().mapToLong(UserDto::getId).sum() + "-0-"
+                + expected.stream().mapToLong(UserDto::getId).max().orElseThrow());
+        assertThat(repository.countByBirthDateBetweenUpTo(fromDate, toDate, 100)).isEqualTo(expected.size());
+        assertThat(repository.countByBirthDateBetweenUpTo(fromDate, toDate, 5)).isEqualTo(5);
+
+        List<UserDto> paged = new ArrayList<>();
+        UserCursor cursor = UserCursor.start(fromDate);
+        List<UserDto> page;
+        do {
+            page = repository.findPageByBirthDateAfter(cursor.birthDate(), cursor.id(), toDate, 7);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                UserDto last = page.get(page.size() - 1);
+                cursor = new UserCursor(last.getBirthDate(), last.getId());
+            }
+        } while (page.size() == 7);
+        assertThat(paged).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void testStreamingStopsWhenTheConsumerFails() {
+        insertUsers(30);
+        List<UserDto> seen = new ArrayList<>();
+
+        assertThrows(IllegalStateException.class, () -> repository.streamByBirthDateBetween(
+                FIRST_BIRTH_DATE, FIRST_BIRTH_DATE.plusDays(9), user -> {
+                    if (seen.size() == 5) {
+                        throw new IllegalStateException("Enough");
+                    }
+                    seen.add(user);
+                }));
+
+        assertThat(seen).hasSize(5);
+        assertThat(repository.findByBirthDateBetween(FIRST_BIRTH_DATE, FIRST_BIRTH_DATE.plusDays(9))).hasSize(30);
+    }
+
+    @Test
+    void testUpdatesAndDeletesGoToTheUsersShard() {
+        UserDto user = insertUsers(1).get(0);
+
+        assertThat(repository.update(user.getId(), 0L, current -> withAddress(current, "Kyiv")))
+                .get().extracting(UserDto::getAddress).isEqualTo("Kyiv");
+        assertThat(repository.update(user.getId(), 0L, current -> withAddress(current, "Lviv"))).as("stale version")
+                .isEmpty();
+        assertThat(repository.update(user.getId(), null, current -> withAddress(current, null))).isPresent();
+        assertThat(repository.findById(user.getId())).get()
+                .satisfies(updated -> assertThat(updated.getAddress()).isNull())
+                .extracting(UserDto::getVersion).isEqualTo(2L);
+
+        assertThat(repository.deleteById(user.getId())).get().extracting(UserDto::getVersion).isEqualTo(2L);
+        assertThat(repository.findById(user.getId())).isEmpty();
+        assertThat(repository.deleteById(user.getId())).isEmpty();
+        assertThat(repository.update(user.getId(), null, current -> withAddress(current, "Kyiv"))).isEmpty();
+    }
+
+    private static UserDto withAddress(UserDto user, String address) {
+        user.setAddress(address);
+        return user;
+    }
+
+    private static UserDto withEmail(UserDto user, String email) {
+        user.setEmail(email);
+        return user;
+    }
+
+    @Test
+    void testEmailsStayUniqueAcrossShards() {
+        List<UserDto> users = insertUsers(10);
+        UserShardRouter router = repository.getRouter();
+        UserDto user = users.get(0);
+        UserDto elsewhere = users.stream()
+                .filter(other -> router.shardOf(other.getId()) != router.shardOf(user.getId()))
+                .findFirst()
+                .orElseThrow();
+
+        assertThrows(DuplicateKeyException.class, () -> repository.insert(new UserDto(null,
+                user.getEmail().toUpperCase(), "Other", "User", FIRST_BIRTH_DATE, null, null, null)));
+        assertThrows(DuplicateKeyException.class,
+                () -> repository.update(user.getId(), null, current -> withEmail(current, elsewhere.getEmail())));
+        assertThat(repository.findById(user.getId())).contains(user);
+
+        assertThat(repository.update(user.getId(), null, current -> withEmail(current, "moved@example.com")))
+                .isPresent();
+        assertThat(repository.findByEmail("MOVED@example.com")).get()
+                .extracting(UserDto::getId).isEqualTo(user.getId());
+        assertThat(repository.findByEmail(user.getEmail())).isEmpty();
+    }
+
+    @Test
+    void testEmailTakenByAnUpdateCannotBeRegisteredOnItsShard() {
+        UserShardRouter router = repository.getRouter();
+        UserDto user = insertUsers(1).get(0);
+        // An email stored on another shard than the user's, as no registration of it would be
+        String email = IntStream.range(0, 100)
+                .mapToObj(i -> "taken" + i + "@example.com")
+                .filter(candidate -> router.shardOf(candidate) != router.shardOf(user.getId()))
+                .findFirst()
+                .orElseThrow();
+        assertThat(repository.update(user.getId(), null, current -> withEmail(current, email))).isPresent();
+
+        DuplicateKeyException exception = assertThrows(DuplicateKeyException.class, () -> repository.insert(
+                new UserDto(null, email, "Other", "User", FIRST_BIRTH_DATE, null, null, null)));
+        assertThat(exception.getMessage()).contains(UserEntity.EMAIL_UNIQUE_CONSTRAINT);
+        assertThat(countUsers(shards.get(router.shardOf(email)))).as("the failed registration rolled back")
+                .isEqualTo(router.shardOf(email) == router.shardOf(user.getId()) ? 1 : 0);
+
+        // The email given up is free again, and so is this one once the user is deleted
+        assertThat(repository.insert(new UserDto(null, user.getEmail(), "Other", "User", FIRST_BIRTH_DATE,
+                null, null, null))).isNotNull();
+        repository.deleteById(user.getId());
+        assertThat(repository.insert(new UserDto(null, email, "Other", "User", FIRST_BIRTH_DATE,
+                null, null, null))).isNotNull();
+    }
+
+    @Test
+    void testStaleClaimsAreTakenOver() {
+        UserShardRouter router = repository.getRouter();
+        String email = "abandoned@example.com";
+        JdbcTemplate home = new JdbcTemplate(shards.get(router.shardOf(email)));
+        // Left by an email change that never reached its user, which does not exist
+        home.update("INSERT INTO user_emails (emailNormalized, userId, claimedAt) VALUES (?, ?, LOCALTIMESTAMP)",
+                email, 1000L);
+
+        assertThrows(DuplicateKeyException.class, () -> repository.insert(
+                new UserDto(null, email, "First", "Last", FIRST_BIRTH_DATE, null, null, null)));
+
+        home.update("UPDATE user_emails SET claimedAt = DATEADD(SECOND, ?, claimedAt)",
+                -ShardedUserRepository.CLAIM_TIMEOUT.toSeconds() - 1);
+        UserDto user = repository.insert(new UserDto(null, email, "First", "Last", FIRST_BIRTH_DATE, null, null, null));
+        assertThat(repository.findByEmail(email)).contains(user);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.rest_api.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(100);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 2, 100, WINDOW, nanos::get);
+
+    /**
+     * Admits up to {@code concurrency} requests, which all take {@code latency} and end after the window.
+     */
+    private void runWindow(int concurrency, Duration latency) {
+        int admitted = 0;
+        while (admitted < concurrency && limiter.tryAcquire()) {
+            admitted++;
+        }
+        nanos.addAndGet(WINDOW.toNanos());
+        for (int i = 0; i < admitted; i++) {
+            limiter.release(latency.toNanos());
+        }
+    }
+
+    @Test
+    void testRejectsOverLimit() {
+        for (int i = 0; i < 20; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(20);
+
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void testGrowsWhileLatencyHoldsAndShrinksAsItRises() {
+        for (int i = 0; i < 10; i++) {
+            runWindow(100, Duration.ofMillis(10));
+        }
+        int grown = limiter.getLimit();
+        assertThat(grown).isGreaterThan(20);
+
+        for (int i = 0; i < 20; i++) {
+            runWindow(100, Duration.ofMillis(100));
+        }
+        assertThat(limiter.getLimit()).isLessThan(grown / 2).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void testDoesNotGrowWithoutLoad() {
+        for (int i = 0; i < 10; i++) {
+            runWindow(10, Duration.ofMillis(10));
+        }
+        assertThat(limiter.getLimit()).isEqualTo(20);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.rest_api.web;
+
+import com.example.rest_api.config.UserAdmissionConfig;
+import com.example.rest_api.monitoring.UserMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class AdmissionControlFilterTest {
+
+    private static final String PROXY = "10.0.0.1";
+
+    private final AdmissionControlFilter filter = new AdmissionControlFilter(config(),
+            new UserMetrics(new SimpleMeterRegistry()), mock(HandlerExceptionResolver.class));
+
+    private static UserAdmissionConfig config() {
+        UserAdmissionConfig config = new UserAdmissionConfig();
+        ReflectionTestUtils.setField(config, "enabled", true);
+        ReflectionTestUtils.setField(config, "clientHeader", "X-Client-Id");
+        ReflectionTestUtils.setField(config, "trustedProxies", List.of(PROXY));
+        ReflectionTestUtils.setField(config, "requestsPerSecond", 50.0);
+        ReflectionTestUtils.setField(config, "burst", 100);
+        ReflectionTestUtils.setField(config, "searchDaysPerToken", 3650);
+        ReflectionTestUtils.setField(config, "bulkCost", 20);
+        ReflectionTestUtils.setField(config, "importBytesPerToken", 1000L);
+        ReflectionTestUtils.setField(config, "maxClients", 100L);
+        ReflectionTestUtils.setField(config, "initialConcurrency", 64);
+        ReflectionTestUtils.setField(config, "minConcurrency", 8);
+        ReflectionTestUtils.setField(config, "maxConcurrency", 200);
+        ReflectionTestUtils.setField(config, "sampleWindow", Duration.ofMillis(200));
+        return config;
+    }
+
+    private static MockHttpServletRequest request(String method, String path, String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+
+    @Test
+    void testClientHeaderIsOnlyTrustedFromProxies() {
+        MockHttpServletRequest direct = request("GET", "/users/1", "192.0.2.7");
+        direct.addHeader("X-Client-Id", "made-up");
+        MockHttpServletRequest proxied = request("GET", "/users/1", PROXY);
+        proxied.addHeader("X-Client-Id", "client-a");
+
+        assertThat(filter.clientKey(direct)).isEqualTo("192.0.2.7");
+        assertThat(filter.clientKey(proxied)).isEqualTo("client-a");
+        assertThat(filter.clientKey(request("GET", "/users/1", PROXY))).isEqualTo(PROXY);
+    }
+
+    @Test
+    void testBulkOperationsImportsAndExportsCostMore() {
+        MockHttpServletRequest smallImport = request("POST", "/users/bulk", PROXY);
+        smallImport.setContent(new byte[5_000]);
+        MockHttpServletRequest largeImport = request("POST", "/users/bulk", PROXY);
+        largeImport.setContent(new byte[500_000]);
+        MockHttpServletRequest streamedImport = request("POST", "/users/bulk", PROXY);
+        streamedImport.addHeader("Transfer-Encoding", "chunked");
+
+        assertThat(filter.cost(request("POST", "/users", PROXY))).isEqualTo(1);
+        assertThat(filter.cost(request("POST", "/users/bulk/delete", PROXY))).isEqualTo(20);
+        assertThat(filter.cost(request("POST", "/users/bulk/patch", PROXY))).isEqualTo(20);
+        assertThat(filter.cost(request("POST", "/users/exports", PROXY))).isEqualTo(20);
+        assertThat(filter.cost(smallImport)).isEqualTo(25);
+        assertThat(filter.cost(largeImport)).isEqualTo(100);
+        assertThat(filter.cost(streamedImport)).isEqualTo(100);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.rest_api.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    void testBurstThenRefillAtRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(1, 0)).isZero();
+        }
+        assertThat(bucket.tryAcquire(1, 0)).isEqualTo(100 * MILLIS);
+        assertThat(bucket.tryAcquire(1, 50 * MILLIS)).isEqualTo(50 * MILLIS);
+        assertThat(bucket.tryAcquire(1, 100 * MILLIS)).isZero();
+
+        // Refilling stops at the capacity however long the bucket is idle
+        assertThat(bucket.tryAcquire(5, 10_000 * MILLIS)).isZero();
+        assertThat(bucket.tryAcquire(1, 10_000 * MILLIS)).isEqualTo(100 * MILLIS);
+    }
+
+    @Test
+    void testCostlyRequestsWaitForEnoughTokens() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+        assertThat(bucket.tryAcquire(2, 0)).isZero();
+        assertThat(bucket.tryAcquire(4, 0)).isEqualTo(100 * MILLIS);
+        assertThat(bucket.tryAcquire(3, 0)).isZero();
+    }
+
+    @Test
+    void testConcurrentAcquiresNeverExceedCapacity() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1000, 0);
+        AtomicInteger acquired = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (bucket.tryAcquire(1, 0) == 0) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(acquired).hasValue(1000);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.rest_api.web;
+
+import com.github.luben.zstd.ZstdInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ZstdCompressionFilterTest {
+
+    private final ZstdCompressionFilter filter = new ZstdCompressionFilter(serverProperties());
+
+    private static ServerProperties serverProperties() {
+        ServerProperties serverProperties = new ServerProperties();
+        serverProperties.getCompression().setEnabled(true);
+        serverProperties.getCompression().setMinResponseSize(DataSize.ofBytes(64));
+        serverProperties.getCompression().setMimeTypes(new String[]{MediaType.APPLICATION_JSON_VALUE});
+        return serverProperties;
+    }
+
+    private MockHttpServletResponse respond(String contentType, String body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "zstd");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (servletRequest, servletResponse) -> {
+            HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+            httpResponse.setContentType(contentType);
+            httpResponse.setContentLength(body.length());
+            httpResponse.getWriter().write(body);
+        });
+        return response;
+    }
+
+    @Test
+    void testCompressesBodiesOfListedTypesAboveThreshold() throws Exception {
+        String body = "[" + "{\"email\":\"user@example.com\"},".repeat(20) + "{}]";
+
+        MockHttpServletResponse response = respond(MediaType.APPLICATION_JSON_VALUE, body);
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo(ZstdCompressionFilter.ZSTD);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_LENGTH)).isNull();
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        try (InputStream in = new ZstdInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertThat(new String(in.readAllBytes())).isEqualTo(body);
+        }
+    }
+
+    @Test
+    void testPassesThroughSmallBodiesAndOtherTypes() throws Exception {
+        MockHttpServletResponse small = respond(MediaType.APPLICATION_JSON_VALUE, "{}");
+        assertThat(small.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(small.getContentLength()).isEqualTo(2);
+        assertThat(small.getContentAsString()).isEqualTo("{}");
+
+        String events = "data: {}\n\n".repeat(20);
+        MockHttpServletResponse stream = respond(MediaType.TEXT_EVENT_STREAM_VALUE, events);
+        assertThat(stream.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(stream.getContentAsString()).isEqualTo(events);
+    }
+
+    @Test
+    void testNonBlockingWritesPassThroughUncompressed() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "zstd");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        List<WriteListener> listeners = new ArrayList<>();
+        ServletOutputStream containerStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return false;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                listeners.add(writeListener);
+            }
+        };
+        HttpServletResponse container = new HttpServletResponseWrapper(response) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return containerStream;
+            }
+        };
+        WriteListener listener = mock(WriteListener.class);
+        String body = "[" + "{\"email\":\"user@example.com\"},".repeat(20) + "{}]";
+
+        filter.doFilter(request, container, (servletRequest, servletResponse) -> {
+            servletResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            ServletOutputStream out = servletResponse.getOutputStream();
+            out.setWriteListener(listener);
+            assertThat(out.isReady()).isFalse();
+            out.write(body.getBytes());
+        });
+
+        assertThat(listeners).containsExactly(listener);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(written.toString()).isEqualTo(body);
+    }
+
+    @Test
+    void testAcceptsZstd() {
+        assertThat(ZstdCompressionFilter.acceptsZstd("gzip, zstd")).isTrue();
+        assertThat(ZstdCompressionFilter.acceptsZstd("zstd;q=0.5")).isTrue();
+        assertThat(ZstdCompressionFilter.acceptsZstd("zstd;q=0")).isFalse();
+        assertThat(ZstdCompressionFilter.acceptsZstd("gzip")).isFalse();
+        assertThat(ZstdCompressionFilter.acceptsZstd(null)).isFalse();
+    }
+}